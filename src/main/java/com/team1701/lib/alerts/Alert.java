@@ -1,47 +1,45 @@
 package com.team1701.lib.alerts;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import edu.wpi.first.util.sendable.Sendable;
-import edu.wpi.first.util.sendable.SendableBuilder;
 import edu.wpi.first.wpilibj.DriverStation;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Persistent alert published to the dashboard. Enabled alerts are kept in an ordered set per type, newest first, so
+ * toggling an alert is O(log n) and only the message array for its type is rebuilt. Console logging is rate-limited
+ * per alert so that a flapping alert does not flood the console; changes within the interval are counted and reported
+ * with the next logged change. Alerts created by the static factories belong to the default {@link AlertGroup}.
+ */
 public class Alert {
-    private static SendableAlerts mSendableAlerts = null;
+    private static final long kMinConsoleLogIntervalMicros = 1_000_000;
 
-    private AlertType mType;
-    private String mMessage;
+    private final AlertGroup mGroup;
+    final long mId;
+    final AlertType mType;
+    String mMessage;
     private boolean mEnabled;
-    private long mLastEnabledTimestamp;
+    long mLastEnabledTimestamp;
     private boolean mLogResolution;
+    private long mLastConsoleLogTimestamp = -kMinConsoleLogIntervalMicros;
+    private int mSuppressedLogCount = 0;
 
     public static Alert info(String message) {
-        return new Alert(AlertType.INFO, message);
+        return AlertGroup.getDefault().info(message);
     }
 
     public static Alert warning(String message) {
-        return new Alert(AlertType.WARNING, message);
+        return AlertGroup.getDefault().warning(message);
     }
 
     public static Alert error(String message) {
-        return new Alert(AlertType.ERROR, message);
+        return AlertGroup.getDefault().error(message);
     }
 
-    Alert(AlertType type, String message) {
+    Alert(AlertGroup group, AlertType type, String message) {
+        mGroup = group;
         mType = type;
         mMessage = message;
         mLogResolution = type != AlertType.INFO;
-
-        synchronized (Alert.class) {
-            if (mSendableAlerts == null) {
-                mSendableAlerts = new SendableAlerts();
-                SmartDashboard.putData("Alerts", mSendableAlerts);
-            }
-        }
-
-        mSendableAlerts.add(this);
+        mId = group.nextId();
     }
 
     public Alert withResolutionLogging(boolean shouldLogResolution) {
@@ -58,7 +56,7 @@ public class Alert {
 
         if (mEnabled) {
             logToConsole();
-            mSendableAlerts.invalidateCache();
+            mGroup.invalidate(mType);
         }
     }
 
@@ -68,12 +66,16 @@ public class Alert {
         }
 
         mEnabled = enabled;
-        mSendableAlerts.invalidateCache();
 
         if (enabled) {
+            mLastEnabledTimestamp = RobotController.getFPGATime();
+            mGroup.add(this);
             logToConsole();
-        } else if (mLogResolution) {
-            System.out.println("INFO: [RESOLVED] " + mMessage);
+        } else {
+            mGroup.remove(this);
+            if (mLogResolution) {
+                logResolutionToConsole();
+            }
         }
     }
 
@@ -85,75 +87,48 @@ public class Alert {
         setEnabled(false);
     }
 
+    private boolean shouldLogToConsole() {
+        var timestamp = RobotController.getFPGATime();
+        if (timestamp - mLastConsoleLogTimestamp < kMinConsoleLogIntervalMicros) {
+            mSuppressedLogCount++;
+            return false;
+        }
+
+        mLastConsoleLogTimestamp = timestamp;
+        return true;
+    }
+
+    private String getConsoleMessage() {
+        if (mSuppressedLogCount == 0) {
+            return mMessage;
+        }
+
+        var message = mMessage + " (" + mSuppressedLogCount + " changes suppressed)";
+        mSuppressedLogCount = 0;
+        return message;
+    }
+
     private void logToConsole() {
+        if (!shouldLogToConsole()) {
+            return;
+        }
+
         switch (mType) {
             case INFO:
-                System.out.println("INFO: " + mMessage);
+                System.out.println("INFO: " + getConsoleMessage());
                 break;
             case WARNING:
-                DriverStation.reportWarning(mMessage, false);
+                DriverStation.reportWarning(getConsoleMessage(), false);
                 break;
             case ERROR:
-                DriverStation.reportError(mMessage, false);
+                DriverStation.reportError(getConsoleMessage(), false);
                 break;
         }
     }
 
-    private static class SendableAlerts implements Sendable {
-        private final List<Alert> mAlerts = new ArrayList<>();
-        private String[] mInfoMessages = new String[] {};
-        private String[] mWarningMessages = new String[] {};
-        private String[] mErrorMessages = new String[] {};
-        private boolean mCacheValid = true;
-
-        private void add(Alert alert) {
-            mAlerts.add(alert);
-        }
-
-        private void invalidateCache() {
-            mCacheValid = false;
-        }
-
-        @Override
-        public void initSendable(SendableBuilder builder) {
-            builder.setSmartDashboardType("Alerts");
-            builder.addStringArrayProperty("infos", () -> getCachedMessages(AlertType.INFO), null);
-            builder.addStringArrayProperty("warnings", () -> getCachedMessages(AlertType.WARNING), null);
-            builder.addStringArrayProperty("errors", () -> getCachedMessages(AlertType.ERROR), null);
-        }
-
-        private String[] getCachedMessages(AlertType alertType) {
-            updateCache();
-            switch (alertType) {
-                case INFO:
-                    return mInfoMessages;
-                case WARNING:
-                    return mWarningMessages;
-                case ERROR:
-                    return mErrorMessages;
-                default:
-                    return new String[] {};
-            }
-        }
-
-        private void updateCache() {
-            if (mCacheValid) {
-                return;
-            }
-
-            mInfoMessages = getMessages(AlertType.INFO);
-            mWarningMessages = getMessages(AlertType.WARNING);
-            mErrorMessages = getMessages(AlertType.ERROR);
-
-            mCacheValid = true;
-        }
-
-        private String[] getMessages(AlertType type) {
-            return mAlerts.stream()
-                    .filter(alert -> alert.mType == type && alert.mEnabled)
-                    .sorted((alert1, alert2) -> (int) (alert1.mLastEnabledTimestamp - alert2.mLastEnabledTimestamp))
-                    .map(alert -> alert.mMessage)
-                    .toArray(String[]::new);
+    private void logResolutionToConsole() {
+        if (shouldLogToConsole()) {
+            System.out.println("INFO: [RESOLVED] " + getConsoleMessage());
         }
     }
 
@@ -0,0 +1,132 @@
+package com.team1701.lib.alerts;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import com.team1701.lib.alerts.Alert.AlertType;
+import edu.wpi.first.util.sendable.Sendable;
+import edu.wpi.first.util.sendable.SendableBuilder;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * Set of alerts published together as one dashboard widget. Each robot instance owns a group, so that robots sharing a
+ * JVM do not show each other's alerts; the default group is published under "Alerts" and backs the static
+ * {@link Alert} factories. Each group also polls the conditions of its own {@link TriggeredAlert}s.
+ */
+public class AlertGroup implements Sendable {
+    private static final String[] kNoMessages = new String[] {};
+    private static final int kTriggeredPollPeriodCycles = 10;
+
+    // Newest first, with the creation order breaking ties so that distinct alerts are never equal
+    private static final Comparator<Alert> kOrder = Comparator.comparingLong(
+                    (Alert alert) -> -alert.mLastEnabledTimestamp)
+            .thenComparingLong(alert -> alert.mId);
+
+    private static AlertGroup mDefault = null;
+
+    private final Map<AlertType, TreeSet<Alert>> mEnabledAlerts = new EnumMap<>(AlertType.class);
+    private final Map<AlertType, String[]> mMessages = new EnumMap<>(AlertType.class);
+    private long mNextId = 0;
+
+    // Only touched on the main thread
+    private final ArrayList<TriggeredAlert> mTriggeredAlerts = new ArrayList<>();
+    private int mCyclesUntilPoll = 0;
+
+    public static AlertGroup getDefault() {
+        if (mDefault == null) {
+            synchronized (AlertGroup.class) {
+                if (mDefault == null) {
+                    mDefault = new AlertGroup("Alerts");
+                }
+            }
+        }
+
+        return mDefault;
+    }
+
+    /** Creates a group and publishes it to the dashboard under the key. */
+    public AlertGroup(String dashboardKey) {
+        for (var type : AlertType.values()) {
+            mEnabledAlerts.put(type, new TreeSet<>(kOrder));
+            mMessages.put(type, kNoMessages);
+        }
+
+        SmartDashboard.putData(dashboardKey, this);
+    }
+
+    public Alert info(String message) {
+        return new Alert(this, AlertType.INFO, message);
+    }
+
+    public Alert warning(String message) {
+        return new Alert(this, AlertType.WARNING, message);
+    }
+
+    public Alert error(String message) {
+        return new Alert(this, AlertType.ERROR, message);
+    }
+
+    /** Polls the conditions of the group's triggered alerts once every few calls. Should be called once per cycle. */
+    public void pollTriggered() {
+        if (--mCyclesUntilPoll > 0) {
+            return;
+        }
+
+        mCyclesUntilPoll = kTriggeredPollPeriodCycles;
+        for (var i = 0; i < mTriggeredAlerts.size(); i++) {
+            var triggeredAlert = mTriggeredAlerts.get(i);
+            triggeredAlert.mAlert.setEnabled(triggeredAlert.mCondition.getAsBoolean());
+        }
+    }
+
+    /** Returns the messages of the group's enabled alerts of the type, newest first. */
+    public List<String> getEnabledMessages(AlertType type) {
+        return List.of(getMessages(type));
+    }
+
+    void addTriggered(TriggeredAlert alert) {
+        mTriggeredAlerts.add(alert);
+    }
+
+    synchronized long nextId() {
+        return mNextId++;
+    }
+
+    synchronized void add(Alert alert) {
+        mEnabledAlerts.get(alert.mType).add(alert);
+        invalidate(alert.mType);
+    }
+
+    synchronized void remove(Alert alert) {
+        mEnabledAlerts.get(alert.mType).remove(alert);
+        invalidate(alert.mType);
+    }
+
+    synchronized void invalidate(AlertType type) {
+        mMessages.put(type, null);
+    }
+
+    @Override
+    public void initSendable(SendableBuilder builder) {
+        builder.setSmartDashboardType("Alerts");
+        builder.addStringArrayProperty("infos", () -> getMessages(AlertType.INFO), null);
+        builder.addStringArrayProperty("warnings", () -> getMessages(AlertType.WARNING), null);
+        builder.addStringArrayProperty("errors", () -> getMessages(AlertType.ERROR), null);
+    }
+
+    private synchronized String[] getMessages(AlertType type) {
+        var messages = mMessages.get(type);
+        if (messages == null) {
+            messages = mEnabledAlerts.get(type).stream()
+                    .map(alert -> alert.mMessage)
+                    .toArray(String[]::new);
+            mMessages.put(type, messages);
+        }
+
+        return messages;
+    }
+}
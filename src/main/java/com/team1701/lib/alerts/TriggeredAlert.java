@@ -3,40 +3,57 @@ package com.team1701.lib.alerts;
 import java.util.function.BooleanSupplier;
 
 import com.team1701.lib.alerts.Alert.AlertType;
-import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
 
+/**
+ * Alert that is enabled while a condition is true. Conditions are polled by {@link AlertGroup#pollTriggered()} every
+ * few cycles rather than bound to the command scheduler, since alerts do not need to react within a single loop.
+ * Alerts created without a group belong to the default {@link AlertGroup}.
+ */
 public class TriggeredAlert {
-    private final Alert mAlert;
+    final Alert mAlert;
+    final BooleanSupplier mCondition;
 
     public static TriggeredAlert info(String message, BooleanSupplier trigger) {
-        return info(message, new Trigger(trigger));
+        return info(AlertGroup.getDefault(), message, trigger);
     }
 
     public static TriggeredAlert info(String message, Trigger trigger) {
-        return new TriggeredAlert(AlertType.INFO, message, trigger);
+        return info(message, (BooleanSupplier) trigger);
+    }
+
+    public static TriggeredAlert info(AlertGroup group, String message, BooleanSupplier trigger) {
+        return new TriggeredAlert(group, AlertType.INFO, message, trigger);
     }
 
     public static TriggeredAlert warning(String message, BooleanSupplier trigger) {
-        return warning(message, new Trigger(trigger));
+        return warning(AlertGroup.getDefault(), message, trigger);
     }
 
     public static TriggeredAlert warning(String message, Trigger trigger) {
-        return new TriggeredAlert(AlertType.WARNING, message, trigger);
+        return warning(message, (BooleanSupplier) trigger);
+    }
+
+    public static TriggeredAlert warning(AlertGroup group, String message, BooleanSupplier trigger) {
+        return new TriggeredAlert(group, AlertType.WARNING, message, trigger);
     }
 
     public static TriggeredAlert error(String message, BooleanSupplier trigger) {
-        return error(message, new Trigger(trigger));
+        return error(AlertGroup.getDefault(), message, trigger);
     }
 
     public static TriggeredAlert error(String message, Trigger trigger) {
-        return new TriggeredAlert(AlertType.ERROR, message, trigger);
+        return error(message, (BooleanSupplier) trigger);
+    }
+
+    public static TriggeredAlert error(AlertGroup group, String message, BooleanSupplier trigger) {
+        return new TriggeredAlert(group, AlertType.ERROR, message, trigger);
     }
 
-    private TriggeredAlert(AlertType type, String message, Trigger trigger) {
-        mAlert = new Alert(type, message);
-        trigger.onTrue(Commands.runOnce(mAlert::enable).ignoringDisable(true).withName("EnableAlert"));
-        trigger.onFalse(Commands.runOnce(mAlert::disable).ignoringDisable(true).withName("DisableAlert"));
-        mAlert.setEnabled(trigger.getAsBoolean());
+    private TriggeredAlert(AlertGroup group, AlertType type, String message, BooleanSupplier condition) {
+        mAlert = new Alert(group, type, message);
+        mCondition = condition;
+        mAlert.setEnabled(condition.getAsBoolean());
+        group.addTriggered(this);
     }
 }
@@ -1,25 +1,51 @@
 package com.team1701.lib.commands;
 
-import java.util.ArrayList;
+import java.lang.ref.Cleaner;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
-import org.littletonrobotics.junction.Logger;
 
+/**
+ * Logs command lifecycle events. A command has its key and event strings built the first time it is logged and kept
+ * for as long as the command is reachable, so rescheduling a command does not allocate. The command's key is released
+ * once the command is collected, so that commands created per use can be freed. Active counts and their keys are kept
+ * per command name.
+ */
 public class CommandLogger {
+    private static final LogKey kEventsKey = LoggingUtil.key("Command/Events", Level.MATCH);
+    private static final int kMaxEventsPerCycle = 64;
+    private static final int kInitialized = 0;
+    private static final int kFinished = 1;
+    private static final int kInterrupted = 2;
+    private static final String[] kEventNames = new String[] {"Initialized", "Finished", "Interrupted"};
+    private static final String[] kNoEvents = new String[] {};
+    private static final Cleaner kCleaner = Cleaner.create();
     private static CommandLogger mInstance = null;
 
-    private final Map<String, Integer> commandCounts = new HashMap<>(100);
-    private final List<String> commandEvents = new ArrayList<>(100);
+    // Commands do not override equals, so the weakly held keys are compared by identity
+    private final Map<Command, CommandEntry> mCommands = new WeakHashMap<>(100);
+    private final Map<String, NameEntry> mNames = new HashMap<>(100);
+
+    // Events since the last periodic, oldest first. Overwrites the oldest events if a cycle has too many.
+    private final String[] mEvents = new String[kMaxEventsPerCycle];
+    private int mEventStart = 0;
+    private int mEventCount = 0;
 
     public static CommandLogger getInstance() {
         if (mInstance == null) {
             synchronized (CommandLogger.class) {
                 if (mInstance == null) {
-                    mInstance = new CommandLogger();
+                    var instance = new CommandLogger();
+                    CommandScheduler.getInstance().onCommandInitialize(instance::logInitialized);
+                    CommandScheduler.getInstance().onCommandFinish(instance::logFinished);
+                    CommandScheduler.getInstance().onCommandInterrupt(instance::logInterrupted);
+                    mInstance = instance;
                 }
             }
         }
@@ -27,38 +53,116 @@ public class CommandLogger {
         return mInstance;
     }
 
-    private CommandLogger() {
-        CommandScheduler.getInstance().onCommandInitialize(this::logInitialized);
-        CommandScheduler.getInstance().onCommandFinish(this::logFinished);
-        CommandScheduler.getInstance().onCommandInterrupt(this::logInterrupted);
-    }
+    /**
+     * Creates a logger that only logs the commands wrapped with it by {@link LoggedCommands}. Only the logger from
+     * {@link #getInstance()}, used by the deployed robot, is registered with the command scheduler, since the scheduler
+     * is shared by the whole JVM and would report every robot's commands to every logger.
+     */
+    public CommandLogger() {}
 
     public void logInitialized(Command command) {
-        logCommand(command, true, "Initialized");
+        logCommand(command, true, kInitialized);
     }
 
     public void logFinished(Command command) {
-        logCommand(command, false, "Finished");
+        logCommand(command, false, kFinished);
     }
 
     public void logInterrupted(Command command) {
-        logCommand(command, false, "Interrupted");
+        logCommand(command, false, kInterrupted);
+    }
+
+    /** Returns the number of logged commands with the name that have been initialized and not yet ended. */
+    public int getActiveCount(String name) {
+        var nameEntry = mNames.get(name);
+        return nameEntry == null ? 0 : nameEntry.mActiveCount;
     }
 
     public void periodic() {
-        Logger.recordOutput("Command/Events", commandEvents.toArray(String[]::new));
-        commandEvents.clear();
+        if (kEventsKey.isEnabled()) {
+            LoggingUtil.record(kEventsKey, drainEvents());
+        }
+
+        mEventStart = 0;
+        mEventCount = 0;
+    }
+
+    private String[] drainEvents() {
+        if (mEventCount == 0) {
+            return kNoEvents;
+        }
+
+        // The logger holds on to the array, so each cycle with events needs its own copy
+        var events = new String[mEventCount];
+        for (var i = 0; i < mEventCount; i++) {
+            events[i] = mEvents[(mEventStart + i) % kMaxEventsPerCycle];
+        }
+
+        return events;
+    }
+
+    private void logCommand(Command command, boolean active, int event) {
+        var entry = mCommands.get(command);
+        if (entry == null) {
+            entry = createEntry(command);
+            mCommands.put(command, entry);
+        }
+
+        var name = entry.mName;
+        name.mActiveCount += active ? 1 : -1;
+
+        LoggingUtil.record(entry.mActiveKey, active);
+        LoggingUtil.record(name.mActiveCountKey, name.mActiveCount);
+
+        addEvent(entry.mEvents[event]);
+    }
+
+    private void addEvent(String event) {
+        if (mEventCount == kMaxEventsPerCycle) {
+            mEventStart = (mEventStart + 1) % kMaxEventsPerCycle;
+            mEventCount--;
+        }
+
+        mEvents[(mEventStart + mEventCount) % kMaxEventsPerCycle] = event;
+        mEventCount++;
     }
 
-    private void logCommand(Command command, boolean active, String event) {
+    private CommandEntry createEntry(Command command) {
         var name = command.getName();
-        var count = commandCounts.getOrDefault(name, 0) + (active ? 1 : -1);
-        commandCounts.put(name, count);
+        var nameEntry = mNames.get(name);
+        if (nameEntry == null) {
+            nameEntry = new NameEntry(name);
+            mNames.put(name, nameEntry);
+        }
+
+        var entry = new CommandEntry(nameEntry, name, Integer.toHexString(command.hashCode()));
 
-        var hash = Integer.toHexString(command.hashCode());
-        Logger.recordOutput("Command/" + name + "/Active/" + hash, active);
-        Logger.recordOutput("Command/" + name + "/ActiveCount", count);
+        // The cleanup must not capture the command or the entry, or the command would never be collected
+        var activeKey = entry.mActiveKey;
+        kCleaner.register(command, () -> LoggingUtil.release(activeKey));
+        return entry;
+    }
+
+    private static class NameEntry {
+        private final LogKey mActiveCountKey;
+        private int mActiveCount = 0;
+
+        private NameEntry(String name) {
+            mActiveCountKey = LoggingUtil.key("Command/" + name + "/ActiveCount", Level.MATCH);
+        }
+    }
+
+    private static class CommandEntry {
+        private final NameEntry mName;
+        private final LogKey mActiveKey;
+        private final String[] mEvents = new String[kEventNames.length];
 
-        commandEvents.add(name + "_" + hash + "_" + event);
+        private CommandEntry(NameEntry nameEntry, String name, String hash) {
+            mName = nameEntry;
+            mActiveKey = LoggingUtil.key("Command/" + name + "/Active/" + hash, Level.DEBUG);
+            for (var i = 0; i < kEventNames.length; i++) {
+                mEvents[i] = name + "_" + hash + "_" + kEventNames[i];
+            }
+        }
     }
 }
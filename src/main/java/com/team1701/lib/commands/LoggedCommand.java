@@ -5,25 +5,27 @@ import edu.wpi.first.wpilibj2.command.WrapperCommand;
 
 public class LoggedCommand extends WrapperCommand {
     private final Command mCommand;
+    private final CommandLogger mLogger;
 
-    LoggedCommand(Command command) {
+    LoggedCommand(Command command, CommandLogger logger) {
         super(command);
         mCommand = command;
+        mLogger = logger;
     }
 
     @Override
     public void initialize() {
         super.initialize();
-        CommandLogger.getInstance().logInitialized(mCommand);
+        mLogger.logInitialized(mCommand);
     }
 
     @Override
     public void end(boolean interrupted) {
         super.end(interrupted);
         if (interrupted) {
-            CommandLogger.getInstance().logInterrupted(mCommand);
+            mLogger.logInterrupted(mCommand);
         } else {
-            CommandLogger.getInstance().logFinished(mCommand);
+            mLogger.logFinished(mCommand);
         }
     }
 }
@@ -7,10 +7,18 @@ import edu.wpi.first.wpilibj2.command.Commands;
 
 public class LoggedCommands {
     public static Command logged(Command command) {
-        return (command instanceof LoggedCommand) ? command : new LoggedCommand(command);
+        return logged(CommandLogger.getInstance(), command);
+    }
+
+    public static Command logged(CommandLogger logger, Command command) {
+        return (command instanceof LoggedCommand) ? command : new LoggedCommand(command, logger);
     }
 
     public static Command loggedSequence(Command... commands) {
-        return Commands.sequence(Stream.of(commands).map(LoggedCommands::logged).toArray(Command[]::new));
+        return loggedSequence(CommandLogger.getInstance(), commands);
+    }
+
+    public static Command loggedSequence(CommandLogger logger, Command... commands) {
+        return Commands.sequence(Stream.of(commands).map(command -> logged(logger, command)).toArray(Command[]::new));
     }
 }
@@ -1,13 +1,17 @@
 package com.team1701.lib.drivers.cameras;
 
 import java.util.ArrayList;
+import java.util.Optional;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 import com.team1701.lib.alerts.Alert;
+import com.team1701.lib.alerts.AlertGroup;
 import com.team1701.lib.drivers.cameras.AprilTagCameraIO.PhotonCameraInputs;
-import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Transform3d;
@@ -21,17 +25,30 @@ import org.photonvision.targeting.PhotonPipelineResult;
 import org.photonvision.targeting.PhotonTrackedTarget;
 
 public class AprilTagCamera {
+    private final String mName;
     private final AprilTagCameraIO mCameraIO;
     private final PhotonCameraInputs mCameraInputs;
     private final String mLoggingPrefix;
     private final PhotonPoseEstimator mPoseEstimator;
     private final Transform3d mRobotToCamPose;
-    private final Supplier<AprilTagFieldLayout> mFieldLayoutSupplier;
+    private final AprilTagFieldGeometry mFieldGeometry;
     private final Supplier<Pose3d> mRobotPoseSupplier;
     private final ArrayList<Consumer<EstimatedRobotPose>> mEstimatedPoseConsumers = new ArrayList<>();
     private final ArrayList<Predicate<PhotonTrackedTarget>> mTargetFilters = new ArrayList<>();
     private final ArrayList<Predicate<Pose3d>> mPoseFilters = new ArrayList<>();
     private final Alert mDisconnectedAlert;
+    private final PipelineLatencyTracker mLatencyTracker;
+    private final LogKey mTargetPosesKey;
+    private final LogKey mFilteredTargetPosesKey;
+    private final LogKey mRobotPoseKey;
+    private final LogKey mFilteredRobotPoseKey;
+
+    private PhotonPipelineResult mFilteredPipelineResult = new PhotonPipelineResult();
+    private Optional<EstimatedRobotPose> mEstimatedRobotPose = Optional.empty();
+    private boolean mIsFreshFrame;
+    private boolean mSkipDuplicateFrames = false;
+    private double mCaptureTimestamp;
+    private double mProcessedTimestamp;
 
     public AprilTagCamera(
             String cameraName,
@@ -39,51 +56,102 @@ public class AprilTagCamera {
             Transform3d robotToCamPose,
             PoseStrategy poseStrategy,
             PoseStrategy fallbackPoseStrategy,
-            Supplier<AprilTagFieldLayout> fieldLayoutSupplier,
-            Supplier<Pose3d> robotPoseSupplier) {
+            AprilTagFieldGeometry fieldGeometry,
+            Supplier<Pose3d> robotPoseSupplier,
+            AlertGroup alerts) {
+        mName = cameraName;
         mCameraIO = cameraIO;
         mCameraInputs = new PhotonCameraInputs();
         mLoggingPrefix = "Camera/" + cameraName + "/";
-        mPoseEstimator = new PhotonPoseEstimator(fieldLayoutSupplier.get(), poseStrategy, null, robotToCamPose);
+        mPoseEstimator = new PhotonPoseEstimator(fieldGeometry.getFieldLayout(), poseStrategy, null, robotToCamPose);
         mPoseEstimator.setMultiTagFallbackStrategy(fallbackPoseStrategy);
         mRobotToCamPose = robotToCamPose;
-        mFieldLayoutSupplier = fieldLayoutSupplier;
+        mFieldGeometry = fieldGeometry;
         mRobotPoseSupplier = robotPoseSupplier;
-        mDisconnectedAlert = Alert.error("Camera " + cameraName + " disconnected");
+        mDisconnectedAlert = alerts.error("Camera " + cameraName + " disconnected");
+        mLatencyTracker = new PipelineLatencyTracker(cameraName, mLoggingPrefix, alerts);
+        mTargetPosesKey = LoggingUtil.key(mLoggingPrefix + "TargetPoses", Level.VERBOSE);
+        mFilteredTargetPosesKey = LoggingUtil.key(mLoggingPrefix + "FilteredTargetPoses", Level.DEBUG);
+        mRobotPoseKey = LoggingUtil.key(mLoggingPrefix + "RobotPose", Level.DEBUG);
+        mFilteredRobotPoseKey = LoggingUtil.key(mLoggingPrefix + "FilteredRobotPose", Level.MATCH);
     }
 
     public void periodic() {
+        updateInputs();
+        processFrame(mRobotPoseSupplier.get());
+        consumeEstimate();
+    }
+
+    /** Reads and logs the camera inputs. Must be called from the main thread. */
+    public void updateInputs() {
+        // Publish latency statistics first so that fusions recorded after the previous periodic are included
+        mLatencyTracker.periodic();
+
         mCameraIO.updateInputs(mCameraInputs);
         Logger.processInputs(mLoggingPrefix, mCameraInputs);
+        mDisconnectedAlert.setEnabled(!mCameraInputs.isConnected);
+
+        var pipelineResult = mCameraInputs.pipelineResult;
+
+        // PhotonCamera derives the capture timestamp by subtracting the pipeline latency from the arrival time. The
+        // processing stamp is wall-clock time, which the tracker ignores in replay.
+        mCaptureTimestamp = pipelineResult.getTimestampSeconds();
+        mProcessedTimestamp = Logger.getRealTimestamp() / 1e6;
+        mIsFreshFrame = mLatencyTracker.recordFrame(
+                mCaptureTimestamp,
+                mCaptureTimestamp + pipelineResult.getLatencyMillis() / 1000.0,
+                mProcessedTimestamp);
+    }
+
+    /**
+     * Filters the targets from the latest inputs and estimates the robot pose from them. The estimate is held until
+     * {@link #consumeEstimate()} is called. Only touches this camera's state, so cameras can be processed concurrently.
+     *
+     * @param robotPose Robot pose used to log field-relative target poses
+     */
+    public void processFrame(Pose3d robotPose) {
+        mEstimatedRobotPose = Optional.empty();
+        if (mSkipDuplicateFrames && !mIsFreshFrame) {
+            return;
+        }
 
         var pipelineResult = mCameraInputs.pipelineResult;
         var filteredPipelineResult = filterTargets(pipelineResult);
-        var robotPose = mRobotPoseSupplier.get();
+        mFilteredPipelineResult = filteredPipelineResult;
 
-        mDisconnectedAlert.setEnabled(!mCameraInputs.isConnected);
-        Logger.recordOutput(mLoggingPrefix + "TargetPoses", getFieldRelativeTargetPoses(pipelineResult, robotPose));
-        Logger.recordOutput(
-                mLoggingPrefix + "FilteredTargetPoses", getFieldRelativeTargetPoses(filteredPipelineResult, robotPose));
+        LoggingUtil.recordArray(mTargetPosesKey, () -> getFieldRelativeTargetPoses(pipelineResult, robotPose));
+        LoggingUtil.recordArray(
+                mFilteredTargetPosesKey, () -> getFieldRelativeTargetPoses(filteredPipelineResult, robotPose));
 
         if (!filteredPipelineResult.hasTargets()) {
             return;
         }
 
-        mPoseEstimator.setFieldTags(mFieldLayoutSupplier.get());
         var estimatedRobotPose = mPoseEstimator.update(filteredPipelineResult);
         if (estimatedRobotPose.isEmpty()) {
             return;
         }
 
-        Logger.recordOutput(mLoggingPrefix + "RobotPose", estimatedRobotPose.get().estimatedPose);
+        LoggingUtil.record(mRobotPoseKey, estimatedRobotPose.get().estimatedPose);
 
         var estimatedPose = estimatedRobotPose.get().estimatedPose;
         if (!mPoseFilters.stream().allMatch(filter -> filter.test(estimatedPose))) {
             return;
         }
 
-        mEstimatedPoseConsumers.forEach(consumer -> consumer.accept(estimatedRobotPose.get()));
-        Logger.recordOutput(mLoggingPrefix + "FilteredRobotPose", estimatedRobotPose.get().estimatedPose);
+        mEstimatedRobotPose = estimatedRobotPose;
+        LoggingUtil.record(mFilteredRobotPoseKey, estimatedPose);
+    }
+
+    /** Passes the estimate from the last processed frame, if any, to the estimated pose consumers. */
+    public void consumeEstimate() {
+        if (mEstimatedRobotPose.isEmpty() || mEstimatedPoseConsumers.isEmpty()) {
+            return;
+        }
+
+        var estimatedRobotPose = mEstimatedRobotPose.get();
+        mEstimatedPoseConsumers.forEach(consumer -> consumer.accept(estimatedRobotPose));
+        recordFusion();
     }
 
     private PhotonPipelineResult filterTargets(PhotonPipelineResult pipelineResult) {
@@ -104,6 +172,45 @@ public class AprilTagCamera {
                 .toArray(Pose2d[]::new);
     }
 
+    /**
+     * Records that the current frame has been fused into the pose estimate. Called automatically after the estimated
+     * pose consumers run, and by callers that fuse the frame themselves.
+     */
+    public void recordFusion() {
+        if (mIsFreshFrame) {
+            mLatencyTracker.recordFusion(mCaptureTimestamp, mProcessedTimestamp, Logger.getRealTimestamp() / 1e6);
+        }
+    }
+
+    /** Sets whether frames that have already been processed are skipped rather than processed again. */
+    public void setSkipDuplicateFrames(boolean skip) {
+        mSkipDuplicateFrames = skip;
+    }
+
+    public void setLatencyBudget(double latencyBudgetSeconds) {
+        mLatencyTracker.setLatencyBudget(latencyBudgetSeconds);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public PhotonPipelineResult getFilteredPipelineResult() {
+        return mFilteredPipelineResult;
+    }
+
+    public double[] getCameraMatrix() {
+        return mCameraInputs.cameraMatrix;
+    }
+
+    public AprilTagFieldGeometry getFieldGeometry() {
+        return mFieldGeometry;
+    }
+
+    public Transform3d getRobotToCamPose() {
+        return mRobotToCamPose;
+    }
+
     public void addEstimatedPoseConsumer(Consumer<EstimatedRobotPose> consumer) {
         mEstimatedPoseConsumers.add(consumer);
     }
@@ -19,10 +19,12 @@ public interface AprilTagCameraIO {
     public class PhotonCameraInputs implements LoggableInputs {
         public PhotonPipelineResult pipelineResult = new PhotonPipelineResult();
         public boolean isConnected;
+        public double[] cameraMatrix = new double[] {};
 
         @Override
         public void toLog(LogTable table) {
             table.put("IsConnected", isConnected);
+            table.put("CameraMatrix", cameraMatrix);
 
             var targets = pipelineResult.targets;
             var targetCount = targets.size();
@@ -129,6 +131,7 @@ public interface AprilTagCameraIO {
             pipelineResult.setTimestampSeconds(timestamp);
 
             isConnected = table.get("IsConnected", false);
+            cameraMatrix = table.get("CameraMatrix", new double[] {});
         }
     }
 
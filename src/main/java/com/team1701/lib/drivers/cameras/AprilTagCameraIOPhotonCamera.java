@@ -17,6 +17,9 @@ public class AprilTagCameraIOPhotonCamera implements AprilTagCameraIO {
     public void updateInputs(PhotonCameraInputs inputs) {
         inputs.isConnected = mCamera.isConnected();
         inputs.pipelineResult = mCamera.getLatestResult();
+        inputs.cameraMatrix = mCamera.getCameraMatrix()
+                .map(cameraMatrix -> cameraMatrix.getData())
+                .orElse(new double[] {});
     }
 
     @Override
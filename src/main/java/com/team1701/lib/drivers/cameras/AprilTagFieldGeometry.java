@@ -0,0 +1,136 @@
+package com.team1701.lib.drivers.cameras;
+
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.util.Units;
+
+/**
+ * Immutable, precomputed geometry for every tag in an AprilTag field layout, indexed directly by fiducial ID. Intended to
+ * be created once at startup and shared by all cameras, filters and solvers so that the layout is only parsed once and
+ * tag lookups do not go through the layout's Optional-returning queries.
+ */
+public final class AprilTagFieldGeometry {
+    public static final double kTagSizeMeters = Units.inchesToMeters(6.5);
+    public static final int kCornersPerTag = 4;
+
+    private final AprilTagFieldLayout mFieldLayout;
+    private final int[] mTagIds;
+    private final Pose3d[] mTagPoses;
+    private final Transform3d[] mFieldToTagTransforms;
+    private final double[][] mCorners;
+
+    public AprilTagFieldGeometry(AprilTagFieldLayout fieldLayout) {
+        mFieldLayout = fieldLayout;
+
+        var tags = fieldLayout.getTags();
+        mTagIds = tags.stream().mapToInt(tag -> tag.ID).sorted().toArray();
+
+        var maxId = mTagIds.length == 0 ? 0 : mTagIds[mTagIds.length - 1];
+        mTagPoses = new Pose3d[maxId + 1];
+        mFieldToTagTransforms = new Transform3d[maxId + 1];
+        mCorners = new double[maxId + 1][];
+
+        for (var tag : tags) {
+            var corners = new double[kCornersPerTag * 3];
+            for (var i = 0; i < kCornersPerTag; i++) {
+                var corner = getTagRelativeCorner(i)
+                        .rotateBy(tag.pose.getRotation())
+                        .plus(tag.pose.getTranslation());
+                corners[i * 3] = corner.getX();
+                corners[i * 3 + 1] = corner.getY();
+                corners[i * 3 + 2] = corner.getZ();
+            }
+
+            mTagPoses[tag.ID] = tag.pose;
+            mFieldToTagTransforms[tag.ID] = new Transform3d(tag.pose.getTranslation(), tag.pose.getRotation());
+            mCorners[tag.ID] = corners;
+        }
+    }
+
+    /**
+     * Returns the position of a tag corner in the tag frame, in the order PhotonVision reports detected corners
+     * (bottom-left, bottom-right, top-right, top-left as seen facing the tag).
+     */
+    public static Translation3d getTagRelativeCorner(int corner) {
+        var halfSize = kTagSizeMeters / 2.0;
+        switch (corner) {
+            case 0:
+                return new Translation3d(0, -halfSize, -halfSize);
+            case 1:
+                return new Translation3d(0, halfSize, -halfSize);
+            case 2:
+                return new Translation3d(0, halfSize, halfSize);
+            case 3:
+                return new Translation3d(0, -halfSize, halfSize);
+            default:
+                throw new IllegalArgumentException("Invalid tag corner " + corner);
+        }
+    }
+
+    public AprilTagFieldLayout getFieldLayout() {
+        return mFieldLayout;
+    }
+
+    public boolean hasTag(int id) {
+        return id >= 0 && id < mTagPoses.length && mTagPoses[id] != null;
+    }
+
+    public int getTagCount() {
+        return mTagIds.length;
+    }
+
+    /**
+     * @param index Index between 0 and {@link #getTagCount()}
+     * @return The fiducial ID of the tag at the index, in ascending ID order
+     */
+    public int getTagId(int index) {
+        return mTagIds[index];
+    }
+
+    /**
+     * @return The field-relative pose of the tag, or null if the tag is not in the layout
+     */
+    public Pose3d getTagPose(int id) {
+        return hasTag(id) ? mTagPoses[id] : null;
+    }
+
+    /**
+     * @return The transform from the field origin to the tag, or null if the tag is not in the layout
+     */
+    public Transform3d getFieldToTag(int id) {
+        return hasTag(id) ? mFieldToTagTransforms[id] : null;
+    }
+
+    /**
+     * Copies the field-relative corners of a tag as consecutive (x, y, z) triples.
+     *
+     * @param id Fiducial ID of the tag
+     * @param destination Array to copy into, with room for {@link #kCornersPerTag} * 3 values from the offset
+     * @param offset Index of the destination to start copying at
+     * @return False if the tag is not in the layout
+     */
+    public boolean copyCorners(int id, double[] destination, int offset) {
+        if (!hasTag(id)) {
+            return false;
+        }
+
+        System.arraycopy(mCorners[id], 0, destination, offset, kCornersPerTag * 3);
+        return true;
+    }
+
+    /**
+     * Copies a single field-relative tag corner as an (x, y, z) triple.
+     *
+     * @return False if the tag is not in the layout
+     */
+    public boolean copyCorner(int id, int corner, double[] destination, int offset) {
+        if (!hasTag(id)) {
+            return false;
+        }
+
+        System.arraycopy(mCorners[id], corner * 3, destination, offset, 3);
+        return true;
+    }
+}
@@ -0,0 +1,120 @@
+package com.team1701.lib.drivers.cameras;
+
+import com.team1701.lib.alerts.Alert;
+import com.team1701.lib.alerts.AlertGroup;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
+import com.team1701.lib.util.RollingPercentiles;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Tracks how old camera frames are as they move through the vision pipeline. Each fresh frame is stamped when it was
+ * captured, when it was received, when the robot code processed it and when its estimate was fused, and rolling
+ * percentiles are published for each stage. All timestamps are in FPGA seconds. PhotonLib derives the capture time by
+ * subtracting the camera's reported latency from the receive time, so the first stage is the camera's own latency
+ * figure, and network transport cannot be separated from it.
+ *
+ * <p>The robot code's timestamps are wall-clock times, which have no relation to the logged capture times in replay, so
+ * nothing is published or alerted while replaying. Fresh frames are still detected.
+ */
+public class PipelineLatencyTracker {
+    private static final int kWindowSize = 100;
+
+    private final Stage mCamera;
+    private final Stage mQueue;
+    private final Stage mFusion;
+    private final Stage mPipeline;
+    private final Stage mEndToEnd;
+    private final Alert mLatencyAlert;
+    private final String mCameraName;
+
+    private double mLatencyBudgetSeconds = Double.POSITIVE_INFINITY;
+    private double mLastCaptureTimestamp = Double.NaN;
+
+    public PipelineLatencyTracker(String cameraName, String loggingPrefix, AlertGroup alerts) {
+        var prefix = loggingPrefix + "Latency/";
+        mCamera = new Stage(prefix + "Camera");
+        mQueue = new Stage(prefix + "Queue");
+        mFusion = new Stage(prefix + "Fusion");
+        mPipeline = new Stage(prefix + "Pipeline");
+        mEndToEnd = new Stage(prefix + "EndToEnd");
+        mCameraName = cameraName;
+        mLatencyAlert = alerts.warning("Camera " + cameraName + " pipeline latency exceeds budget");
+    }
+
+    public void setLatencyBudget(double latencyBudgetSeconds) {
+        mLatencyBudgetSeconds = latencyBudgetSeconds;
+        mLatencyAlert.setMessage(String.format(
+                "Camera %s pipeline latency exceeds %.0f ms budget", mCameraName, latencyBudgetSeconds * 1000.0));
+    }
+
+    /**
+     * Records a frame as it is processed by the robot code. Frames that have already been recorded are ignored.
+     *
+     * @param captureTimestamp Time the frame was captured by the camera
+     * @param receivedTimestamp Time the frame was received from the camera
+     * @param processedTimestamp Time the frame was processed by the robot code
+     * @return True if this is a new frame
+     */
+    public boolean recordFrame(double captureTimestamp, double receivedTimestamp, double processedTimestamp) {
+        if (captureTimestamp == mLastCaptureTimestamp || captureTimestamp <= 0.0) {
+            return false;
+        }
+
+        mLastCaptureTimestamp = captureTimestamp;
+        if (!Logger.hasReplaySource()) {
+            mCamera.add(receivedTimestamp - captureTimestamp);
+            mQueue.add(processedTimestamp - receivedTimestamp);
+            mPipeline.add(processedTimestamp - captureTimestamp);
+        }
+
+        return true;
+    }
+
+    public void recordFusion(double captureTimestamp, double processedTimestamp, double fusedTimestamp) {
+        if (Logger.hasReplaySource()) {
+            return;
+        }
+
+        mFusion.add(fusedTimestamp - processedTimestamp);
+        mEndToEnd.add(fusedTimestamp - captureTimestamp);
+    }
+
+    public void periodic() {
+        if (Logger.hasReplaySource()) {
+            return;
+        }
+
+        mCamera.log();
+        mQueue.log();
+        mFusion.log();
+        mPipeline.log();
+        mEndToEnd.log();
+
+        mLatencyAlert.setEnabled(mPipeline.mPercentiles.getPercentile(0.95) > mLatencyBudgetSeconds);
+    }
+
+    private static class Stage {
+        private final RollingPercentiles mPercentiles = new RollingPercentiles(kWindowSize);
+        private final LogKey mP50Key;
+        private final LogKey mP95Key;
+        private final LogKey mMaxKey;
+
+        private Stage(String prefix) {
+            mP50Key = LoggingUtil.key(prefix + "/P50Ms", Level.DEBUG);
+            mP95Key = LoggingUtil.key(prefix + "/P95Ms", Level.MATCH);
+            mMaxKey = LoggingUtil.key(prefix + "/MaxMs", Level.DEBUG);
+        }
+
+        private void add(double latencySeconds) {
+            mPercentiles.add(latencySeconds);
+        }
+
+        private void log() {
+            LoggingUtil.record(mP50Key, () -> mPercentiles.getPercentile(0.5) * 1000.0);
+            LoggingUtil.record(mP95Key, () -> mPercentiles.getPercentile(0.95) * 1000.0);
+            LoggingUtil.record(mMaxKey, () -> mPercentiles.getMax() * 1000.0);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.team1701.lib.drivers.cameras;
+
+import java.util.Random;
+
+import org.opencv.core.Point;
+import org.photonvision.simulation.SimCameraProperties;
+
+/**
+ * Simulated camera properties whose pixel noise and latency are drawn from a seeded random number generator, so that a
+ * simulation can be reproduced from its seed. {@link SimCameraProperties} draws from its own unseeded generator. Each
+ * camera should have its own instance, since the generator is not shared safely between camera simulation threads.
+ */
+public class SeededSimCameraProperties extends SimCameraProperties {
+    private final Random mRandom;
+
+    public SeededSimCameraProperties(long seed) {
+        mRandom = new Random(seed);
+    }
+
+    @Override
+    public Point[] estPixelNoise(Point[] points) {
+        if (getAvgErrorPx() == 0 && getErrorStdDevPx() == 0) {
+            return points;
+        }
+
+        // Offset each point by a random error in a random direction
+        var noisyPoints = new Point[points.length];
+        for (var i = 0; i < points.length; i++) {
+            var error = getAvgErrorPx() + mRandom.nextGaussian() * getErrorStdDevPx();
+            var errorAngle = mRandom.nextDouble() * 2.0 * Math.PI - Math.PI;
+            noisyPoints[i] =
+                    new Point(points[i].x + error * Math.cos(errorAngle), points[i].y + error * Math.sin(errorAngle));
+        }
+
+        return noisyPoints;
+    }
+
+    @Override
+    public double estLatencyMs() {
+        return Math.max(getAvgLatencyMs() + mRandom.nextGaussian() * getLatencyStdDevMs(), 0.0);
+    }
+}
@@ -0,0 +1,597 @@
+package com.team1701.lib.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.team1701.lib.alerts.Alert;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
+import edu.wpi.first.wpilibj.RobotBase;
+import org.littletonrobotics.junction.LogDataReceiver;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.LogTable.LogValue;
+
+/**
+ * WPILOG receiver that serializes each cycle's changed values into a bounded pool of preallocated direct buffers, which
+ * a dedicated I/O thread drains to the file with large gathering writes. Records are never split across buffers, so
+ * when the pool is exhausted under {@link OverflowPolicy#DROP_OLDEST} whole buffers of records are discarded, and the
+ * entries they started are started again with full values on the next cycle.
+ *
+ * <p>The file is created under a temporary name and renamed after the date once the system time is valid, as
+ * AdvantageKit's WPILOG writer does, since the roboRIO's clock is not set until the driver station connects.
+ *
+ * <p>Queue depth, write throughput, stall time and drops are published by {@link #outputTelemetry()}, which must be
+ * called from the main thread.
+ */
+public class BufferedWPILOGWriter implements LogDataReceiver {
+    private static final int kBlockSizeBytes = 128 * 1024;
+    private static final int kMaxGatheredBlocks = 16;
+    private static final String kExtraHeader = "AdvantageKit";
+    // AdvantageKit's reader skips entries without this metadata
+    private static final byte[] kEntryMetadata = "{\"source\":\"AdvantageKit\"}".getBytes(StandardCharsets.UTF_8);
+    private static final double kRenameDelaySeconds = 5.0;
+    private static final DateTimeFormatter kFileDateFormat = DateTimeFormatter.ofPattern("yy-MM-dd_HH-mm-ss");
+    private static final String kTimestampKey = "/Timestamp";
+    private static final byte kControlStart = 0;
+    private static final String kLoggingPrefix = "LogWriter/";
+    private static final LogKey kQueueDepthKey = LoggingUtil.key(kLoggingPrefix + "QueueDepth", Level.MATCH);
+    private static final LogKey kQueueFractionKey = LoggingUtil.key(kLoggingPrefix + "QueueFraction", Level.DEBUG);
+    private static final LogKey kBytesPerSecondKey = LoggingUtil.key(kLoggingPrefix + "BytesPerSecond", Level.MATCH);
+    private static final LogKey kStallMsKey = LoggingUtil.key(kLoggingPrefix + "StallMs", Level.MATCH);
+    private static final LogKey kMaxWriteMsKey = LoggingUtil.key(kLoggingPrefix + "MaxWriteMs", Level.DEBUG);
+    private static final LogKey kDroppedBlocksKey = LoggingUtil.key(kLoggingPrefix + "DroppedBlocks", Level.MATCH);
+    private static final LogKey kOversizedRecordsKey =
+            LoggingUtil.key(kLoggingPrefix + "OversizedRecords", Level.DEBUG);
+
+    public static enum OverflowPolicy {
+        /** Wait for the I/O thread to free a buffer, holding up the logger until it does */
+        BLOCK,
+        /** Discard the oldest buffer that has not started writing */
+        DROP_OLDEST
+    }
+
+    private final Path mFolder;
+    private final OverflowPolicy mPolicy;
+    private final int mBlockCount;
+    private final BlockingQueue<Block> mFreeBlocks;
+    private final BlockingQueue<Block> mFullBlocks;
+
+    // Producer state, only touched on the logger's receiver thread
+    private final Map<String, Integer> mEntryIds = new HashMap<>();
+    private final Map<String, LogValue> mLastValues = new HashMap<>();
+    private boolean[] mStarted = new boolean[256];
+    private ByteBuffer mPayload = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+    private Block mBlock;
+    private int mTimestampEntryId;
+    private Path mPath;
+    private long mTimeValidTimestamp = -1;
+    private boolean mRenamed = false;
+
+    // Metrics, written on the receiver and I/O threads and read on the main thread
+    private final AtomicLong mBytesWritten = new AtomicLong();
+    private final AtomicLong mStallNanos = new AtomicLong();
+    private final AtomicLong mMaxWriteNanos = new AtomicLong();
+    private final AtomicLong mDroppedBlocks = new AtomicLong();
+    private final AtomicLong mOversizedRecords = new AtomicLong();
+    private long mLastTelemetryNanos = -1;
+    private long mLastTelemetryBytes;
+    private long mLastTelemetryStallNanos;
+
+    private FileChannel mChannel;
+    private Thread mThread;
+    private volatile boolean mRunning = false;
+
+    // Lets tests hold full blocks in the queue, guarded by mDrainLock
+    private final Object mDrainLock = new Object();
+    private boolean mDrainPaused = false;
+
+    /**
+     * @param folder Folder to create the log file in
+     * @param bufferSizeBytes Total off-heap buffer size, rounded up to a whole number of 128 KiB blocks
+     * @param policy What to do when the buffer is full
+     */
+    public BufferedWPILOGWriter(String folder, int bufferSizeBytes, OverflowPolicy policy) {
+        mFolder = Path.of(folder);
+        mPolicy = policy;
+        mBlockCount = Math.max(2, (bufferSizeBytes + kBlockSizeBytes - 1) / kBlockSizeBytes);
+        mFreeBlocks = new ArrayBlockingQueue<>(mBlockCount);
+        mFullBlocks = new ArrayBlockingQueue<>(mBlockCount);
+        for (var i = 0; i < mBlockCount; i++) {
+            mFreeBlocks.add(new Block());
+        }
+    }
+
+    @Override
+    public void start() {
+        var fileName = "akit_" + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".wpilog";
+        mPath = mFolder.resolve(fileName);
+        try {
+            Files.createDirectories(mFolder);
+            mChannel = FileChannel.open(mPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            writeHeader();
+        } catch (IOException e) {
+            Alert.error("Failed to open log file " + mPath + ", nothing will be logged: " + e.getMessage())
+                    .enable();
+            return;
+        }
+
+        System.out.println("Logging to " + mPath);
+        mTimestampEntryId = getEntryId(kTimestampKey);
+
+        mRunning = true;
+        mThread = new Thread(this::run, "BufferedWPILOGWriter");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    @Override
+    public void end() {
+        if (mThread == null) {
+            return;
+        }
+
+        submitBlock();
+        mRunning = false;
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void putTable(LogTable table) {
+        if (!mRunning) {
+            return;
+        }
+
+        var timestamp = table.getTimestamp();
+        if (!mRenamed) {
+            updateFileName(table);
+        }
+
+        mPayload.clear();
+        mPayload.putLong(timestamp);
+        writeData(mTimestampEntryId, kTimestampKey, "int64", timestamp);
+
+        for (var entry : table.getAll(false).entrySet()) {
+            var key = entry.getKey();
+            var value = entry.getValue();
+            if (value.equals(mLastValues.get(key))) {
+                continue;
+            }
+
+            mPayload.clear();
+            if (!encode(value)) {
+                continue;
+            }
+
+            if (writeData(getEntryId(key), key, value.getWPILOGType(), timestamp)) {
+                mLastValues.put(key, value);
+            }
+        }
+
+        submitBlock();
+    }
+
+    /** Publishes the writer metrics. Must be called from the main thread. */
+    public void outputTelemetry() {
+        var now = System.nanoTime();
+        var bytes = mBytesWritten.get();
+        var stallNanos = mStallNanos.get();
+        if (mLastTelemetryNanos >= 0) {
+            var elapsedSeconds = (now - mLastTelemetryNanos) / 1e9;
+            LoggingUtil.record(kBytesPerSecondKey, (bytes - mLastTelemetryBytes) / elapsedSeconds);
+            LoggingUtil.record(kStallMsKey, (stallNanos - mLastTelemetryStallNanos) / 1e6);
+        }
+
+        mLastTelemetryNanos = now;
+        mLastTelemetryBytes = bytes;
+        mLastTelemetryStallNanos = stallNanos;
+
+        var queueDepth = mFullBlocks.size();
+        LoggingUtil.record(kQueueDepthKey, queueDepth);
+        LoggingUtil.record(kQueueFractionKey, (double) queueDepth / mBlockCount);
+        LoggingUtil.record(kMaxWriteMsKey, mMaxWriteNanos.getAndSet(0) / 1e6);
+        LoggingUtil.record(kDroppedBlocksKey, mDroppedBlocks.get());
+        LoggingUtil.record(kOversizedRecordsKey, mOversizedRecords.get());
+    }
+
+    /** Stops the I/O thread from taking more blocks until resumed. Blocks already being written are still written. */
+    void setDrainPaused(boolean paused) {
+        synchronized (mDrainLock) {
+            mDrainPaused = paused;
+            mDrainLock.notifyAll();
+        }
+    }
+
+    long getDroppedBlocks() {
+        return mDroppedBlocks.get();
+    }
+
+    long getStallNanos() {
+        return mStallNanos.get();
+    }
+
+    /** Renames the file after the date once the system time has been valid for a few seconds. */
+    private void updateFileName(LogTable table) {
+        var timeValid = RobotBase.isSimulation()
+                || (table.get("DriverStation/DSAttached", false) && table.get("SystemStats/SystemTimeValid", false));
+        if (!timeValid) {
+            mTimeValidTimestamp = -1;
+            return;
+        }
+
+        var timestamp = table.getTimestamp();
+        if (mTimeValidTimestamp < 0) {
+            mTimeValidTimestamp = timestamp;
+            return;
+        }
+
+        if (timestamp - mTimeValidTimestamp < kRenameDelaySeconds * 1e6) {
+            return;
+        }
+
+        // The I/O thread keeps writing through its open channel while the file is renamed
+        mRenamed = true;
+        var baseName = "Log_" + LocalDateTime.now().format(kFileDateFormat);
+        for (var suffix = 0; suffix < 10; suffix++) {
+            var path = mFolder.resolve(baseName + (suffix == 0 ? "" : "_" + suffix) + ".wpilog");
+            try {
+                Files.move(mPath, path);
+                System.out.println("Renamed log file to " + path);
+                mPath = path;
+                return;
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            } catch (IOException e) {
+                break;
+            }
+        }
+
+        System.err.println("Failed to rename log file, still logging to " + mPath);
+    }
+
+    private int getEntryId(String key) {
+        var id = mEntryIds.get(key);
+        if (id == null) {
+            id = mEntryIds.size() + 1;
+            mEntryIds.put(key, id);
+            if (id >= mStarted.length) {
+                mStarted = Arrays.copyOf(mStarted, mStarted.length * 2);
+            }
+        }
+
+        return id;
+    }
+
+    /** Writes the encoded payload, preceded by a start record if the entry has not been started in the file. */
+    private boolean writeData(int entryId, String key, String type, long timestamp) {
+        mPayload.flip();
+        var payloadSize = mPayload.remaining();
+        var dataSize = recordSize(entryId, payloadSize, timestamp);
+
+        // Reserving may drop the block that started the entry, in which case it has to be started again
+        if (mStarted[entryId] && !reserve(dataSize)) {
+            return false;
+        }
+
+        if (!mStarted[entryId]) {
+            var name = key.getBytes(StandardCharsets.UTF_8);
+            var typeBytes = type.getBytes(StandardCharsets.UTF_8);
+            var startSize = 1 + 4 + 4 + name.length + 4 + typeBytes.length + 4 + kEntryMetadata.length;
+
+            // Keep the start record in the same block as the data so that dropping a block drops both
+            if (!reserve(recordSize(0, startSize, timestamp) + dataSize)) {
+                return false;
+            }
+
+            var buffer = mBlock.mBuffer;
+            writeRecordHeader(buffer, 0, startSize, timestamp);
+            buffer.put(kControlStart);
+            buffer.putInt(entryId);
+            buffer.putInt(name.length);
+            buffer.put(name);
+            buffer.putInt(typeBytes.length);
+            buffer.put(typeBytes);
+            buffer.putInt(kEntryMetadata.length);
+            buffer.put(kEntryMetadata);
+            mStarted[entryId] = true;
+            mBlock.addStartedEntry(entryId);
+        }
+
+        writeRecordHeader(mBlock.mBuffer, entryId, payloadSize, timestamp);
+        mBlock.mBuffer.put(mPayload);
+        return true;
+    }
+
+    private boolean encode(LogValue value) {
+        switch (value.type) {
+            case Raw:
+                var raw = value.getRaw();
+                ensurePayloadCapacity(raw.length);
+                mPayload.put(raw);
+                return true;
+            case Boolean:
+                mPayload.put((byte) (value.getBoolean() ? 1 : 0));
+                return true;
+            case Integer:
+                mPayload.putLong(value.getInteger());
+                return true;
+            case Float:
+                mPayload.putFloat(value.getFloat());
+                return true;
+            case Double:
+                mPayload.putDouble(value.getDouble());
+                return true;
+            case String:
+                var string = value.getString().getBytes(StandardCharsets.UTF_8);
+                ensurePayloadCapacity(string.length);
+                mPayload.put(string);
+                return true;
+            case BooleanArray:
+                var booleans = value.getBooleanArray();
+                ensurePayloadCapacity(booleans.length);
+                for (var element : booleans) {
+                    mPayload.put((byte) (element ? 1 : 0));
+                }
+                return true;
+            case IntegerArray:
+                var integers = value.getIntegerArray();
+                ensurePayloadCapacity(integers.length * 8);
+                for (var element : integers) {
+                    mPayload.putLong(element);
+                }
+                return true;
+            case FloatArray:
+                var floats = value.getFloatArray();
+                ensurePayloadCapacity(floats.length * 4);
+                for (var element : floats) {
+                    mPayload.putFloat(element);
+                }
+                return true;
+            case DoubleArray:
+                var doubles = value.getDoubleArray();
+                ensurePayloadCapacity(doubles.length * 8);
+                for (var element : doubles) {
+                    mPayload.putDouble(element);
+                }
+                return true;
+            case StringArray:
+                var strings = value.getStringArray();
+                ensurePayloadCapacity(4);
+                mPayload.putInt(strings.length);
+                for (var element : strings) {
+                    var bytes = element.getBytes(StandardCharsets.UTF_8);
+                    ensurePayloadCapacity(4 + bytes.length);
+                    mPayload.putInt(bytes.length);
+                    mPayload.put(bytes);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void ensurePayloadCapacity(int additionalBytes) {
+        if (mPayload.remaining() >= additionalBytes) {
+            return;
+        }
+
+        var capacity = mPayload.capacity();
+        while (capacity - mPayload.position() < additionalBytes) {
+            capacity *= 2;
+        }
+
+        mPayload.flip();
+        mPayload = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN).put(mPayload);
+    }
+
+    /** Makes room for a record in the current block, acquiring a new block if needed. */
+    private boolean reserve(int size) {
+        if (size > kBlockSizeBytes) {
+            mOversizedRecords.incrementAndGet();
+            return false;
+        }
+
+        if (mBlock != null && mBlock.mBuffer.remaining() >= size) {
+            return true;
+        }
+
+        submitBlock();
+        mBlock = acquireBlock();
+        return true;
+    }
+
+    private Block acquireBlock() {
+        var block = mFreeBlocks.poll();
+        if (block != null) {
+            return block;
+        }
+
+        if (mPolicy == OverflowPolicy.DROP_OLDEST) {
+            block = mFullBlocks.poll();
+            if (block != null) {
+                dropBlock(block);
+                return block;
+            }
+        }
+
+        // Every block is being written, so the only option is to wait for one
+        var stallStart = System.nanoTime();
+        while (true) {
+            try {
+                block = mFreeBlocks.take();
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        mStallNanos.addAndGet(System.nanoTime() - stallStart);
+        return block;
+    }
+
+    private void dropBlock(Block block) {
+        mDroppedBlocks.incrementAndGet();
+        for (var i = 0; i < block.mStartedEntryCount; i++) {
+            mStarted[block.mStartedEntries[i]] = false;
+        }
+
+        // Values in the dropped block were never written, so write every value again
+        mLastValues.clear();
+        block.reset();
+    }
+
+    private void submitBlock() {
+        if (mBlock != null && mBlock.mBuffer.position() > 0) {
+            mBlock.mBuffer.flip();
+            mFullBlocks.add(mBlock);
+            mBlock = null;
+        }
+    }
+
+    // Written directly rather than through a block so that it can never be dropped
+    private void writeHeader() throws IOException {
+        var extraHeader = kExtraHeader.getBytes(StandardCharsets.UTF_8);
+        var header = ByteBuffer.allocate(6 + 2 + 4 + extraHeader.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("WPILOG".getBytes(StandardCharsets.US_ASCII));
+        header.putShort((short) 0x0100);
+        header.putInt(extraHeader.length);
+        header.put(extraHeader);
+        header.flip();
+
+        while (header.hasRemaining()) {
+            mChannel.write(header);
+        }
+    }
+
+    private static int recordSize(int entryId, int payloadSize, long timestamp) {
+        return 1 + byteCount(entryId) + byteCount(payloadSize) + byteCount(timestamp) + payloadSize;
+    }
+
+    private static void writeRecordHeader(ByteBuffer buffer, int entryId, int payloadSize, long timestamp) {
+        var entryIdBytes = byteCount(entryId);
+        var payloadSizeBytes = byteCount(payloadSize);
+        var timestampBytes = byteCount(timestamp);
+        buffer.put((byte) ((entryIdBytes - 1) | ((payloadSizeBytes - 1) << 2) | ((timestampBytes - 1) << 4)));
+        writeLittleEndian(buffer, entryId, entryIdBytes);
+        writeLittleEndian(buffer, payloadSize, payloadSizeBytes);
+        writeLittleEndian(buffer, timestamp, timestampBytes);
+    }
+
+    private static int byteCount(long value) {
+        var count = 1;
+        while (count < 8 && (value >>> (count * 8)) != 0) {
+            count++;
+        }
+
+        return count;
+    }
+
+    private static void writeLittleEndian(ByteBuffer buffer, long value, int byteCount) {
+        for (var i = 0; i < byteCount; i++) {
+            buffer.put((byte) (value >>> (i * 8)));
+        }
+    }
+
+    private void run() {
+        var blocks = new Block[kMaxGatheredBlocks];
+        var buffers = new ByteBuffer[kMaxGatheredBlocks];
+        try {
+            while (mRunning || !mFullBlocks.isEmpty()) {
+                synchronized (mDrainLock) {
+                    while (mDrainPaused) {
+                        mDrainLock.wait();
+                    }
+                }
+
+                var block = mFullBlocks.poll(100, TimeUnit.MILLISECONDS);
+                if (block == null) {
+                    continue;
+                }
+
+                // Gather everything that is ready into one large sequential write
+                var count = 0;
+                do {
+                    blocks[count] = block;
+                    buffers[count] = block.mBuffer;
+                    count++;
+                } while (count < kMaxGatheredBlocks && (block = mFullBlocks.poll()) != null);
+
+                var writeStart = System.nanoTime();
+                var bytes = 0L;
+                while (buffers[count - 1].hasRemaining()) {
+                    bytes += mChannel.write(buffers, 0, count);
+                }
+
+                var writeNanos = System.nanoTime() - writeStart;
+                mMaxWriteNanos.accumulateAndGet(writeNanos, Math::max);
+                mBytesWritten.addAndGet(bytes);
+
+                for (var i = 0; i < count; i++) {
+                    blocks[i].reset();
+                    mFreeBlocks.add(blocks[i]);
+                    blocks[i] = null;
+                    buffers[i] = null;
+                }
+            }
+
+            mChannel.close();
+        } catch (IOException e) {
+            System.err.println("Log writing failed: " + e.getMessage());
+            mRunning = false;
+
+            // Release every block so that a logger waiting for a free block is not stuck
+            for (var i = 0; i < kMaxGatheredBlocks && blocks[i] != null; i++) {
+                blocks[i].reset();
+                mFreeBlocks.add(blocks[i]);
+            }
+
+            Block block;
+            while ((block = mFullBlocks.poll()) != null) {
+                block.reset();
+                mFreeBlocks.add(block);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Block {
+        private final ByteBuffer mBuffer = ByteBuffer.allocateDirect(kBlockSizeBytes).order(ByteOrder.LITTLE_ENDIAN);
+        private int[] mStartedEntries = new int[64];
+        private int mStartedEntryCount = 0;
+
+        private void addStartedEntry(int entryId) {
+            if (mStartedEntryCount == mStartedEntries.length) {
+                mStartedEntries = Arrays.copyOf(mStartedEntries, mStartedEntries.length * 2);
+            }
+
+            mStartedEntries[mStartedEntryCount++] = entryId;
+        }
+
+        private void reset() {
+            mBuffer.clear();
+            mStartedEntryCount = 0;
+        }
+    }
+}
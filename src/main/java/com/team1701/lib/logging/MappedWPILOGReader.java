@@ -0,0 +1,416 @@
+package com.team1701.lib.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-only WPILOG file backed by a memory map. The file is indexed when opened, storing each record's offset,
+ * timestamp and entry, and grouping records by entry so that reading one key never decodes the records of others.
+ * Records are counted in a first pass so that the index arrays are allocated at their exact size, and entries only
+ * store record indices, reading timestamps through the shared index. Payloads are returned as views of the mapped
+ * file rather than copies. Files are limited to 2 GiB.
+ *
+ * <p>Records are addressed by their index in the file. Seeking by timestamp assumes that records are written in
+ * timestamp order, as AdvantageKit does. An entry that is started again with the same name and type, such as after a
+ * writer restarts it, is merged into the first entry with that name.
+ */
+public class MappedWPILOGReader {
+    private static final byte[] kHeader = "WPILOG".getBytes(StandardCharsets.UTF_8);
+    private static final int kMinVersion = 0x0100;
+    private static final int kControlEntry = 0;
+    private static final int kControlStart = 0;
+    private static final int kControlFinish = 1;
+    private static final int kControlSetMetadata = 2;
+    private static final int kNoEntry = -1;
+
+    private final ByteBuffer mBuffer;
+    private final List<Entry> mEntries = new ArrayList<>();
+    private final Map<String, Entry> mEntriesByName = new HashMap<>();
+    private int mRecordCount = 0;
+    private int[] mRecordOffsets;
+    private long[] mTimestamps;
+    private int[] mRecordEntries;
+
+    public MappedWPILOGReader(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Log is too large to map: " + path);
+            }
+
+            // The mapping remains valid after the channel is closed
+            mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        buildIndex(path);
+    }
+
+    private void buildIndex(Path path) throws IOException {
+        if (mBuffer.capacity() < 12 || !mBuffer.slice(0, kHeader.length).equals(ByteBuffer.wrap(kHeader))) {
+            throw new IOException("Not a WPILOG file: " + path);
+        }
+
+        var version = mBuffer.getShort(6) & 0xffff;
+        if (version < kMinVersion) {
+            throw new IOException("Unsupported WPILOG version " + Integer.toHexString(version) + ": " + path);
+        }
+
+        // The first pass creates the entries and counts the records, so that the second fills exactly sized arrays
+        var firstOffset = 12 + mBuffer.getInt(8);
+        var startedEntries = new ArrayList<Entry>();
+        scanRecords(firstOffset, startedEntries, false);
+
+        mRecordOffsets = new int[mRecordCount];
+        mTimestamps = new long[mRecordCount];
+        mRecordEntries = new int[mRecordCount];
+        for (var entry : mEntries) {
+            entry.mRecords = new int[entry.mRecordCount];
+            entry.mRecordCount = 0;
+        }
+
+        mRecordCount = 0;
+        scanRecords(firstOffset, startedEntries, true);
+    }
+
+    /**
+     * Walks the records from the offset. Without indexing, entries are created as they are started and added to the
+     * started entries. When indexing, the started entries are reused in the same order and each record is stored.
+     */
+    private void scanRecords(int offset, List<Entry> startedEntries, boolean index) {
+        var activeEntries = new HashMap<Integer, Entry>();
+        var restartedEntries = index ? startedEntries.iterator() : null;
+        while (offset < mBuffer.capacity()) {
+            var headerByte = mBuffer.get(offset) & 0xff;
+            var idLength = (headerByte & 0x3) + 1;
+            var sizeLength = ((headerByte >> 2) & 0x3) + 1;
+            var timestampLength = ((headerByte >> 4) & 0x7) + 1;
+            var headerLength = 1 + idLength + sizeLength + timestampLength;
+            if (offset + headerLength > mBuffer.capacity()) {
+                break;
+            }
+
+            var entryId = (int) readLittleEndian(offset + 1, idLength);
+            var payloadSize = (int) readLittleEndian(offset + 1 + idLength, sizeLength);
+            var payloadOffset = offset + headerLength;
+            if (payloadSize < 0 || payloadOffset + payloadSize > mBuffer.capacity()) {
+                // Truncated final record, such as from a log that was not closed
+                break;
+            }
+
+            var entry = entryId == kControlEntry ? null : activeEntries.get(entryId);
+            if (index) {
+                mRecordOffsets[mRecordCount] = offset;
+                mTimestamps[mRecordCount] = readLittleEndian(offset + 1 + idLength + sizeLength, timestampLength);
+                mRecordEntries[mRecordCount] = entry == null ? kNoEntry : entry.mIndex;
+                if (entry != null) {
+                    entry.mRecords[entry.mRecordCount] = mRecordCount;
+                }
+            }
+
+            mRecordCount++;
+            if (entry != null) {
+                entry.mRecordCount++;
+            } else if (entryId == kControlEntry) {
+                readControlRecord(payloadOffset, payloadSize, activeEntries, startedEntries, restartedEntries);
+            }
+
+            offset = payloadOffset + payloadSize;
+        }
+    }
+
+    /**
+     * Applies a control record to the active entries
+     *
+     * @param restartedEntries Entries to start in order when indexing, or null to create entries as they are started
+     */
+    private void readControlRecord(
+            int offset,
+            int size,
+            Map<Integer, Entry> activeEntries,
+            List<Entry> startedEntries,
+            Iterator<Entry> restartedEntries) {
+        if (size < 5) {
+            return;
+        }
+
+        var entryId = mBuffer.getInt(offset + 1);
+        switch (mBuffer.get(offset)) {
+            case kControlStart:
+                if (restartedEntries != null) {
+                    activeEntries.put(entryId, restartedEntries.next());
+                } else {
+                    var entry = startEntry(offset + 5);
+                    startedEntries.add(entry);
+                    activeEntries.put(entryId, entry);
+                }
+                break;
+            case kControlFinish:
+                activeEntries.remove(entryId);
+                break;
+            case kControlSetMetadata:
+                var activeEntry = activeEntries.get(entryId);
+                if (activeEntry != null && restartedEntries == null) {
+                    activeEntry.mMetadata = readString(offset + 5);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private Entry startEntry(int position) {
+        var name = readString(position);
+        position += 4 + mBuffer.getInt(position);
+        var type = readString(position);
+        position += 4 + mBuffer.getInt(position);
+        var metadata = readString(position);
+
+        var entry = mEntriesByName.get(name);
+        if (entry == null || !entry.mType.equals(type)) {
+            entry = new Entry(mEntries.size(), name, type, metadata);
+            mEntries.add(entry);
+            mEntriesByName.putIfAbsent(name, entry);
+        } else {
+            entry.mMetadata = metadata;
+        }
+
+        return entry;
+    }
+
+    private long readLittleEndian(int offset, int length) {
+        var value = 0L;
+        for (var i = 0; i < length; i++) {
+            value |= (mBuffer.get(offset + i) & 0xffL) << (8 * i);
+        }
+
+        return value;
+    }
+
+    private String readString(int lengthOffset) {
+        var length = mBuffer.getInt(lengthOffset);
+        return StandardCharsets.UTF_8
+                .decode(mBuffer.slice(lengthOffset + 4, length))
+                .toString();
+    }
+
+    /** Returns all entries in the order they were first started. */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(mEntries);
+    }
+
+    /** Returns the first entry started with the name. */
+    public Optional<Entry> getEntry(String name) {
+        return Optional.ofNullable(mEntriesByName.get(name));
+    }
+
+    public int getRecordCount() {
+        return mRecordCount;
+    }
+
+    /** Returns the entry of the record, or empty for control records and records of entries that were not started. */
+    public Optional<Entry> getRecordEntry(int record) {
+        var entryIndex = mRecordEntries[record];
+        return entryIndex == kNoEntry ? Optional.empty() : Optional.of(mEntries.get(entryIndex));
+    }
+
+    /** Returns the index used by {@link #getEntries()} of the record's entry, or -1 if it has none. */
+    public int getRecordEntryIndex(int record) {
+        return mRecordEntries[record];
+    }
+
+    /** Returns the timestamp of the record in microseconds. */
+    public long getTimestamp(int record) {
+        return mTimestamps[record];
+    }
+
+    /**
+     * Finds the first record at or after the timestamp
+     *
+     * @param timestamp Timestamp in microseconds
+     * @return Record index, or the record count if all records are earlier
+     */
+    public int findRecord(long timestamp) {
+        return lowerBound(mTimestamps, 0, mRecordCount, timestamp);
+    }
+
+    /** Returns a read-only little-endian view of the record's payload, without copying it. */
+    public ByteBuffer getPayload(int record) {
+        var offset = mRecordOffsets[record];
+        var headerByte = mBuffer.get(offset) & 0xff;
+        var idLength = (headerByte & 0x3) + 1;
+        var sizeLength = ((headerByte >> 2) & 0x3) + 1;
+        var timestampLength = ((headerByte >> 4) & 0x7) + 1;
+        var size = (int) readLittleEndian(offset + 1 + idLength, sizeLength);
+        return mBuffer.slice(offset + 1 + idLength + sizeLength + timestampLength, size)
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public boolean getBoolean(int record) {
+        return getPayload(record).get(0) != 0;
+    }
+
+    public long getInteger(int record) {
+        return getPayload(record).getLong(0);
+    }
+
+    public float getFloat(int record) {
+        return getPayload(record).getFloat(0);
+    }
+
+    public double getDouble(int record) {
+        return getPayload(record).getDouble(0);
+    }
+
+    public String getString(int record) {
+        return StandardCharsets.UTF_8.decode(getPayload(record)).toString();
+    }
+
+    /** Returns a copy of the record's payload. Use {@link #getPayload(int)} to avoid the copy. */
+    public byte[] getRaw(int record) {
+        var payload = getPayload(record);
+        var value = new byte[payload.remaining()];
+        payload.get(value);
+        return value;
+    }
+
+    public boolean[] getBooleanArray(int record) {
+        var payload = getPayload(record);
+        var value = new boolean[payload.remaining()];
+        for (var i = 0; i < value.length; i++) {
+            value[i] = payload.get(i) != 0;
+        }
+
+        return value;
+    }
+
+    public long[] getIntegerArray(int record) {
+        var payload = getPayload(record);
+        var value = new long[payload.remaining() / Long.BYTES];
+        payload.asLongBuffer().get(value);
+        return value;
+    }
+
+    public float[] getFloatArray(int record) {
+        var payload = getPayload(record);
+        var value = new float[payload.remaining() / Float.BYTES];
+        payload.asFloatBuffer().get(value);
+        return value;
+    }
+
+    public double[] getDoubleArray(int record) {
+        var payload = getPayload(record);
+        var value = new double[payload.remaining() / Double.BYTES];
+        payload.asDoubleBuffer().get(value);
+        return value;
+    }
+
+    public String[] getStringArray(int record) {
+        var payload = getPayload(record);
+        var value = new String[payload.getInt(0)];
+        var position = 4;
+        for (var i = 0; i < value.length; i++) {
+            var length = payload.getInt(position);
+            value[i] = StandardCharsets.UTF_8
+                    .decode(payload.slice(position + 4, length))
+                    .toString();
+            position += 4 + length;
+        }
+
+        return value;
+    }
+
+    private static int lowerBound(long[] values, int fromIndex, int toIndex, long value) {
+        var low = fromIndex;
+        var high = toIndex;
+        while (low < high) {
+            var mid = (low + high) >>> 1;
+            if (values[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /** Log entry with the indices of its records, in file order. */
+    public final class Entry {
+        private final int mIndex;
+        private final String mName;
+        private final String mType;
+        private String mMetadata;
+        private int[] mRecords;
+        private int mRecordCount = 0;
+
+        private Entry(int index, String name, String type, String metadata) {
+            mIndex = index;
+            mName = name;
+            mType = type;
+            mMetadata = metadata;
+        }
+
+        public int getIndex() {
+            return mIndex;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public String getType() {
+            return mType;
+        }
+
+        public String getMetadata() {
+            return mMetadata;
+        }
+
+        public int getRecordCount() {
+            return mRecordCount;
+        }
+
+        /** Returns the file record index of the entry's nth record. */
+        public int getRecord(int n) {
+            return mRecords[n];
+        }
+
+        public long getTimestamp(int n) {
+            return mTimestamps[mRecords[n]];
+        }
+
+        /**
+         * Finds the record holding the entry's value at the timestamp
+         *
+         * @param timestamp Timestamp in microseconds
+         * @return Index of the entry's last record at or before the timestamp, or -1 if there is none
+         */
+        public int findRecord(long timestamp) {
+            // Search the entry's records through the shared timestamps rather than keeping a copy per entry
+            var low = 0;
+            var high = mRecordCount;
+            while (low < high) {
+                var mid = (low + high) >>> 1;
+                if (mTimestamps[mRecords[mid]] <= timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low - 1;
+        }
+    }
+}
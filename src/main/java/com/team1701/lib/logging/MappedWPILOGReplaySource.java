@@ -0,0 +1,132 @@
+package com.team1701.lib.logging;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+import org.littletonrobotics.junction.LogReplaySource;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.LogTable.LogValue;
+
+/**
+ * Replay source that reads a log through {@link MappedWPILOGReader}. Each cycle starts at a record of the timestamp
+ * entry and includes the records with that cycle's timestamp, matching AdvantageKit's WPILOG reader. As in that reader,
+ * only entries written by AdvantageKit are replayed, so entries from other sources such as NetworkTables or the data
+ * log manager are skipped.
+ */
+public class MappedWPILOGReplaySource implements LogReplaySource {
+    private static final String kTimestampKey = "/Timestamp";
+    private static final String kEntryMetadata = "{\"source\":\"AdvantageKit\"}";
+
+    private final Path mPath;
+    private MappedWPILOGReader mReader;
+    private String[] mKeys;
+    private String[] mTypes;
+    private int mTimestampEntryIndex = -1;
+    private int mNextRecord = 0;
+    private long mTimestamp = -1;
+
+    public MappedWPILOGReplaySource(String path) {
+        mPath = Path.of(path);
+    }
+
+    @Override
+    public void start() {
+        try {
+            mReader = new MappedWPILOGReader(mPath);
+        } catch (IOException e) {
+            // Fail the replay rather than run the robot without inputs
+            throw new UncheckedIOException("Failed to open replay log " + mPath, e);
+        }
+
+        // Table keys do not have the leading slash used in the log
+        var entries = mReader.getEntries();
+        mKeys = new String[entries.size()];
+        mTypes = new String[entries.size()];
+        for (var entry : entries) {
+            if (!kEntryMetadata.equals(entry.getMetadata())) {
+                continue;
+            }
+
+            var name = entry.getName();
+            mTypes[entry.getIndex()] = entry.getType();
+            mKeys[entry.getIndex()] = name.startsWith("/") ? name.substring(1) : name;
+            if (name.equals(kTimestampKey) && mTimestampEntryIndex < 0) {
+                mTimestampEntryIndex = entry.getIndex();
+            }
+        }
+    }
+
+    @Override
+    public boolean updateTable(LogTable table) {
+        if (mReader == null) {
+            return false;
+        }
+
+        if (mTimestamp >= 0) {
+            table.setTimestamp(mTimestamp);
+        }
+
+        var recordCount = mReader.getRecordCount();
+        while (mNextRecord < recordCount) {
+            var record = mNextRecord++;
+            var entryIndex = mReader.getRecordEntryIndex(record);
+            if (entryIndex < 0 || mKeys[entryIndex] == null) {
+                continue;
+            }
+
+            if (entryIndex == mTimestampEntryIndex) {
+                var firstTimestamp = mTimestamp < 0;
+                mTimestamp = mReader.getInteger(record);
+                if (!firstTimestamp) {
+                    return true;
+                }
+
+                table.setTimestamp(mTimestamp);
+            } else if (mTimestamp >= 0 && mReader.getTimestamp(record) == mTimestamp) {
+                putValue(table, mKeys[entryIndex], mTypes[entryIndex], record);
+            }
+        }
+
+        return false;
+    }
+
+    private void putValue(LogTable table, String key, String type, int record) {
+        switch (type) {
+            case "boolean":
+                table.put(key, mReader.getBoolean(record));
+                break;
+            case "int64":
+                table.put(key, mReader.getInteger(record));
+                break;
+            case "float":
+                table.put(key, mReader.getFloat(record));
+                break;
+            case "double":
+                table.put(key, mReader.getDouble(record));
+                break;
+            case "string":
+                table.put(key, mReader.getString(record));
+                break;
+            case "boolean[]":
+                table.put(key, mReader.getBooleanArray(record));
+                break;
+            case "int64[]":
+                table.put(key, mReader.getIntegerArray(record));
+                break;
+            case "float[]":
+                table.put(key, mReader.getFloatArray(record));
+                break;
+            case "double[]":
+                table.put(key, mReader.getDoubleArray(record));
+                break;
+            case "string[]":
+                table.put(key, mReader.getStringArray(record));
+                break;
+            default:
+                // Raw and custom types such as structs keep their type string
+                table.put(key, new LogValue(mReader.getRaw(record), type));
+                break;
+        }
+    }
+}
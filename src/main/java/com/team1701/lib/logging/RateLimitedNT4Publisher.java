@@ -0,0 +1,121 @@
+package com.team1701.lib.logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.littletonrobotics.junction.LogDataReceiver;
+import org.littletonrobotics.junction.LogTable;
+import org.littletonrobotics.junction.networktables.NT4Publisher;
+
+/**
+ * Publishes a configured subset of log keys to NetworkTables at limited rates. Each cycle's table is filtered down to
+ * the keys whose rate is due and handed to a background thread that publishes it, so publishing never holds up the
+ * other data receivers. Keys are matched to rates by the longest configured prefix, and keys without a rate are not
+ * published. If the publishing thread falls behind, the oldest pending tables are dropped.
+ */
+public class RateLimitedNT4Publisher implements LogDataReceiver {
+    private static final int kQueueCapacity = 4;
+    private static final int kExcluded = -1;
+
+    // Publish when most of the period has elapsed so that loop jitter does not skip cycles
+    private static final double kPeriodTolerance = 0.9;
+
+    private final ArrayList<String> mPrefixes = new ArrayList<>();
+    private final Map<String, Integer> mKeyRates = new HashMap<>();
+    private final BlockingQueue<LogTable> mQueue = new ArrayBlockingQueue<>(kQueueCapacity);
+    private final NT4Publisher mPublisher = new NT4Publisher();
+    private long[] mPeriodsMicros = new long[] {};
+    private long[] mLastPublishMicros = new long[] {};
+    private boolean[] mDue = new boolean[] {};
+    private Thread mThread;
+
+    /**
+     * Publishes keys starting with the prefix at the rate. The longest matching prefix determines a key's rate.
+     *
+     * @param prefix Log key prefix without a leading slash, such as "RealOutputs/Drive/"
+     * @param rateHz Maximum publishing rate
+     */
+    public RateLimitedNT4Publisher withRate(String prefix, double rateHz) {
+        if (mThread != null) {
+            throw new IllegalStateException("Rates cannot be added after the publisher has started");
+        }
+
+        mPrefixes.add(prefix);
+        mPeriodsMicros = Arrays.copyOf(mPeriodsMicros, mPrefixes.size());
+        mPeriodsMicros[mPrefixes.size() - 1] = (long) (1e6 / rateHz * kPeriodTolerance);
+        mLastPublishMicros = new long[mPrefixes.size()];
+        mDue = new boolean[mPrefixes.size()];
+        return this;
+    }
+
+    @Override
+    public void start() {
+        Arrays.fill(mLastPublishMicros, Long.MIN_VALUE / 2);
+        mThread = new Thread(this::run, "RateLimitedNT4Publisher");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    @Override
+    public void end() {
+        mThread.interrupt();
+    }
+
+    @Override
+    public void putTable(LogTable table) {
+        var timestamp = table.getTimestamp();
+        var anyDue = false;
+        for (var i = 0; i < mDue.length; i++) {
+            mDue[i] = timestamp - mLastPublishMicros[i] >= mPeriodsMicros[i];
+            if (mDue[i]) {
+                mLastPublishMicros[i] = timestamp;
+                anyDue = true;
+            }
+        }
+
+        if (!anyDue) {
+            return;
+        }
+
+        var filteredTable = new LogTable(timestamp);
+        for (var entry : table.getAll(false).entrySet()) {
+            var key = entry.getKey().substring(1);
+            var rate = mKeyRates.computeIfAbsent(key, this::resolveRate);
+            if (rate != kExcluded && mDue[rate]) {
+                filteredTable.put(key, entry.getValue());
+            }
+        }
+
+        while (!mQueue.offer(filteredTable)) {
+            mQueue.poll();
+        }
+    }
+
+    private int resolveRate(String key) {
+        var rate = kExcluded;
+        var prefixLength = -1;
+        for (var i = 0; i < mPrefixes.size(); i++) {
+            var prefix = mPrefixes.get(i);
+            if (key.startsWith(prefix) && prefix.length() > prefixLength) {
+                rate = i;
+                prefixLength = prefix.length();
+            }
+        }
+
+        return rate;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                mPublisher.putTable(mQueue.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
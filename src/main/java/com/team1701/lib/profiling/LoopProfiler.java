@@ -0,0 +1,326 @@
+package com.team1701.lib.profiling;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
+import com.team1701.lib.util.RollingPercentiles;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import org.littletonrobotics.junction.LoggedRobot;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Attributes main loop time to named sections with nanosecond timers. Each cycle's breakdown is logged as an array
+ * aligned with the section names, rolling percentiles for each section are published once a second, and the last
+ * several seconds of cycles are kept so that the worst cycle can be dumped on demand. Sections may be nested, in which
+ * case the outer section's time includes the inner sections.
+ *
+ * <p>Command execution is measured between consecutive scheduler execute callbacks, so a command's time also includes
+ * the scheduler bookkeeping that precedes it. AdvantageKit's work before user code is measured exactly; its work after
+ * user code cannot be wrapped, and is estimated from the gap before the next cycle, which is exact whenever the loop is
+ * overrunning.
+ *
+ * <p>The profiler is not thread-safe and must only be used from the main robot thread.
+ */
+public class LoopProfiler {
+    private static final String kLoggingPrefix = "LoopProfiler/";
+    private static final int kMaxSections = 64;
+    private static final int kPercentileWindowCycles = 250;
+    private static final int kPercentilePublishCycles = 50;
+    private static final double kHistorySeconds = 10.0;
+    private static final LogKey kSectionNamesKey = LoggingUtil.key(kLoggingPrefix + "SectionNames", Level.MATCH);
+    private static final LogKey kSectionMsKey = LoggingUtil.key(kLoggingPrefix + "SectionMs", Level.MATCH);
+    private static final LogKey kCycleMsKey = LoggingUtil.key(kLoggingPrefix + "CycleMs", Level.MATCH);
+    private static final LogKey kCycleP95MsKey = LoggingUtil.key(kLoggingPrefix + "CycleP95Ms", Level.MATCH);
+    private static final LogKey kSectionP50MsKey = LoggingUtil.key(kLoggingPrefix + "SectionP50Ms", Level.DEBUG);
+    private static final LogKey kSectionP95MsKey = LoggingUtil.key(kLoggingPrefix + "SectionP95Ms", Level.MATCH);
+    private static final LogKey kSectionMaxMsKey = LoggingUtil.key(kLoggingPrefix + "SectionMaxMs", Level.DEBUG);
+    private static final LogKey kWorstCycleMsKey = LoggingUtil.key(kLoggingPrefix + "WorstCycle/CycleMs", Level.MATCH);
+    private static final LogKey kWorstCycleSectionMsKey =
+            LoggingUtil.key(kLoggingPrefix + "WorstCycle/SectionMs", Level.MATCH);
+    private static final LogKey kWorstCycleTimestampKey =
+            LoggingUtil.key(kLoggingPrefix + "WorstCycle/Timestamp", Level.MATCH);
+
+    private static LoopProfiler mInstance = null;
+
+    private final double mLoopPeriodSeconds;
+    private final int mHistoryLength;
+    private final ArrayList<Section> mSections = new ArrayList<>();
+    private final Map<String, Section> mCommandSections = new HashMap<>();
+    private final long[] mCycleNanos = new long[kMaxSections];
+
+    // Ring buffer of recent cycles for worst cycle capture
+    private final long[][] mHistorySectionNanos;
+    private final long[] mHistoryCycleNanos;
+    private final double[] mHistoryTimestamps;
+    private int mHistoryIndex = 0;
+    private int mHistoryCount = 0;
+
+    private final Section mAdvantageKitBeforeUser;
+    private final Section mAdvantageKitAfterUser;
+    private final Section mButtons;
+    private final RollingPercentiles mCyclePercentiles = new RollingPercentiles(kPercentileWindowCycles);
+
+    private String[] mSectionNames = new String[] {};
+    private boolean mSectionNamesChanged = true;
+    private double[] mSectionMs = new double[] {};
+    private double[] mSectionP50Ms = new double[] {};
+    private double[] mSectionP95Ms = new double[] {};
+    private double[] mSectionMaxMs = new double[] {};
+    private long mCycleStartNanos;
+    private long mLastMarkNanos;
+    private long mLastCycleNanos;
+    private long mUserCodeStartMicros;
+    private long mPreviousUserCodeEndMicros = -1;
+    private long mPreviousCycleStartMicros = -1;
+    private int mCycleCount = 0;
+    private boolean mInCycle = false;
+
+    public static LoopProfiler getInstance() {
+        if (mInstance == null) {
+            synchronized (LoopProfiler.class) {
+                if (mInstance == null) {
+                    mInstance = new LoopProfiler(LoggedRobot.defaultPeriodSecs);
+                }
+            }
+        }
+
+        return mInstance;
+    }
+
+    private LoopProfiler(double loopPeriodSeconds) {
+        mLoopPeriodSeconds = loopPeriodSeconds;
+        mHistoryLength = (int) Math.ceil(kHistorySeconds / loopPeriodSeconds);
+        mHistorySectionNanos = new long[mHistoryLength][kMaxSections];
+        mHistoryCycleNanos = new long[mHistoryLength];
+        mHistoryTimestamps = new double[mHistoryLength];
+
+        mAdvantageKitBeforeUser = section("AdvantageKit/BeforeUser");
+        mAdvantageKitAfterUser = section("AdvantageKit/AfterUser");
+        mButtons = section("Scheduler/Buttons");
+    }
+
+    /**
+     * Hooks command execution into the profiler. Should be called once all startup triggers have been bound so that
+     * the button loop marker runs after them.
+     */
+    public void install() {
+        var scheduler = CommandScheduler.getInstance();
+        scheduler.getDefaultButtonLoop().bind(this::markButtonsPolled);
+        scheduler.onCommandExecute(this::markCommandExecuted);
+    }
+
+    /**
+     * Gets or creates a named section. Sections should be created once and stored; if the maximum number of sections
+     * has been reached, the time is attributed to a shared overflow section.
+     */
+    public Section section(String name) {
+        for (var section : mSections) {
+            if (section.mName.equals(name)) {
+                return section;
+            }
+        }
+
+        if (mSections.size() == kMaxSections - 1) {
+            name = "Other";
+        } else if (mSections.size() == kMaxSections) {
+            return mSections.get(kMaxSections - 1);
+        }
+
+        var section = new Section(mSections.size(), name);
+        mSections.add(section);
+        mSectionNames = mSections.stream().map(s -> s.mName).toArray(String[]::new);
+        mSectionMs = new double[mSections.size()];
+        mSectionP50Ms = new double[mSections.size()];
+        mSectionP95Ms = new double[mSections.size()];
+        mSectionMaxMs = new double[mSections.size()];
+        mSectionNamesChanged = true;
+        return section;
+    }
+
+    public void startCycle() {
+        mInCycle = true;
+        mCycleStartNanos = System.nanoTime();
+        mLastMarkNanos = mCycleStartNanos;
+        mUserCodeStartMicros = Logger.getRealTimestamp();
+
+        for (var i = 0; i < mSections.size(); i++) {
+            mCycleNanos[i] = 0;
+        }
+
+        if (Logger.hasReplaySource()) {
+            return;
+        }
+
+        // Logger timestamps are taken at the start of the cycle, before AdvantageKit's periodic work
+        var cycleStartMicros = Logger.getTimestamp();
+        mAdvantageKitBeforeUser.add((mUserCodeStartMicros - cycleStartMicros) * 1000L);
+
+        if (mPreviousUserCodeEndMicros >= 0) {
+            // Exclude the time spent waiting for the next cycle, which only happens if the previous cycle was on time
+            var nominalCycleStartMicros = mPreviousCycleStartMicros + (long) (mLoopPeriodSeconds * 1e6);
+            var afterUserStartMicros = Math.max(mPreviousUserCodeEndMicros, nominalCycleStartMicros);
+            mAdvantageKitAfterUser.add(Math.max(0L, cycleStartMicros - afterUserStartMicros) * 1000L);
+        }
+
+        mPreviousCycleStartMicros = cycleStartMicros;
+    }
+
+    public void endCycle() {
+        if (!mInCycle) {
+            return;
+        }
+
+        mInCycle = false;
+        var endNanos = System.nanoTime();
+        mPreviousUserCodeEndMicros = Logger.getRealTimestamp();
+
+        // Include AdvantageKit's measured time in the cycle so that the total reflects the full loop
+        var cycleNanos = endNanos - mCycleStartNanos + mCycleNanos[mAdvantageKitBeforeUser.mIndex]
+                + mCycleNanos[mAdvantageKitAfterUser.mIndex];
+        mLastCycleNanos = cycleNanos;
+        mCyclePercentiles.add(cycleNanos / 1e6);
+
+        var sectionCount = mSections.size();
+        var history = mHistorySectionNanos[mHistoryIndex];
+        System.arraycopy(mCycleNanos, 0, history, 0, sectionCount);
+        for (var i = sectionCount; i < kMaxSections; i++) {
+            history[i] = 0;
+        }
+
+        mHistoryCycleNanos[mHistoryIndex] = cycleNanos;
+        mHistoryTimestamps[mHistoryIndex] = Logger.getTimestamp() / 1e6;
+        mHistoryIndex = (mHistoryIndex + 1) % mHistoryLength;
+        mHistoryCount = Math.min(mHistoryCount + 1, mHistoryLength);
+
+        for (var i = 0; i < sectionCount; i++) {
+            var section = mSections.get(i);
+            var sectionMs = mCycleNanos[i] / 1e6;
+            mSectionMs[i] = sectionMs;
+            section.mPercentiles.add(sectionMs);
+        }
+
+        if (mSectionNamesChanged) {
+            LoggingUtil.record(kSectionNamesKey, mSectionNames);
+            mSectionNamesChanged = false;
+        }
+
+        LoggingUtil.record(kSectionMsKey, mSectionMs);
+        LoggingUtil.record(kCycleMsKey, cycleNanos / 1e6);
+
+        if (++mCycleCount % kPercentilePublishCycles == 0) {
+            publishPercentiles();
+        }
+    }
+
+    /** Returns the time of the last completed cycle in seconds, including AdvantageKit's measured time. */
+    public double getLastCycleSeconds() {
+        return mLastCycleNanos / 1e9;
+    }
+
+    public double getCyclePercentileMs(double percentile) {
+        return mCyclePercentiles.getPercentile(percentile);
+    }
+
+    /** Logs and prints the breakdown of the slowest cycle in the last several seconds. */
+    public void dumpWorstCycle() {
+        if (mHistoryCount == 0) {
+            return;
+        }
+
+        var worstIndex = 0;
+        for (var i = 1; i < mHistoryCount; i++) {
+            if (mHistoryCycleNanos[i] > mHistoryCycleNanos[worstIndex]) {
+                worstIndex = i;
+            }
+        }
+
+        var sectionNanos = mHistorySectionNanos[worstIndex];
+        var sectionMs = new double[mSections.size()];
+        var report = new StringBuilder(String.format(
+                "Worst loop cycle in the last %.0f s: %.3f ms at %.3f s%n",
+                kHistorySeconds, mHistoryCycleNanos[worstIndex] / 1e6, mHistoryTimestamps[worstIndex]));
+        for (var i = 0; i < sectionMs.length; i++) {
+            sectionMs[i] = sectionNanos[i] / 1e6;
+            if (sectionNanos[i] > 0) {
+                report.append(String.format("  %-40s %8.3f ms%n", mSections.get(i).mName, sectionMs[i]));
+            }
+        }
+
+        System.out.print(report);
+        LoggingUtil.record(kWorstCycleMsKey, mHistoryCycleNanos[worstIndex] / 1e6);
+        LoggingUtil.record(kWorstCycleSectionMsKey, sectionMs);
+        LoggingUtil.record(kWorstCycleTimestampKey, mHistoryTimestamps[worstIndex]);
+    }
+
+    private void publishPercentiles() {
+        for (var i = 0; i < mSections.size(); i++) {
+            var percentiles = mSections.get(i).mPercentiles;
+            mSectionP50Ms[i] = percentiles.getPercentile(0.5);
+            mSectionP95Ms[i] = percentiles.getPercentile(0.95);
+            mSectionMaxMs[i] = percentiles.getMax();
+        }
+
+        LoggingUtil.record(kSectionP50MsKey, mSectionP50Ms);
+        LoggingUtil.record(kSectionP95MsKey, mSectionP95Ms);
+        LoggingUtil.record(kSectionMaxMsKey, mSectionMaxMs);
+        LoggingUtil.record(kCycleP95MsKey, mCyclePercentiles.getPercentile(0.95));
+    }
+
+    private void markButtonsPolled() {
+        var now = System.nanoTime();
+        mButtons.add(now - mLastMarkNanos);
+        mLastMarkNanos = now;
+    }
+
+    private void markCommandExecuted(Command command) {
+        var section = mCommandSections.get(command.getName());
+        if (section == null) {
+            section = section("Commands/" + command.getName());
+            mCommandSections.put(command.getName(), section);
+        }
+
+        var now = System.nanoTime();
+        section.add(now - mLastMarkNanos);
+        mLastMarkNanos = now;
+    }
+
+    public final class Section {
+        private final int mIndex;
+        private final String mName;
+        private final RollingPercentiles mPercentiles = new RollingPercentiles(kPercentileWindowCycles);
+        private long mStartNanos;
+
+        private Section(int index, String name) {
+            mIndex = index;
+            mName = name;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        public void start() {
+            mStartNanos = System.nanoTime();
+        }
+
+        public void stop() {
+            var now = System.nanoTime();
+            add(now - mStartNanos);
+            mLastMarkNanos = now;
+        }
+
+        /** Adds time measured elsewhere, such as on another thread, to the section for the current cycle. */
+        public void addNanos(long nanos) {
+            add(nanos);
+        }
+
+        private void add(long nanos) {
+            mCycleNanos[mIndex] += nanos;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.team1701.lib.profiling;
+
+import java.util.ArrayList;
+
+import com.team1701.lib.alerts.Alert;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
+import edu.wpi.first.util.function.BooleanConsumer;
+import org.littletonrobotics.junction.AutoLog;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Sheds non-critical work while the main loop is overrunning. When the rolling average cycle time rises above the shed
+ * threshold, stages are shed one at a time in the order they were added, and once the average stays below the lower
+ * restore threshold they are restored in reverse order. Each change waits for the rolling window to reflect the
+ * previous one, so the governor does not oscillate around a threshold.
+ *
+ * <p>The number of shed stages is processed as an input, so replay sheds the same work on the same cycles as the
+ * original run regardless of how long the replayed cycles take.
+ */
+public class OverrunGovernor {
+    private static final String kLoggingPrefix = "OverrunGovernor";
+    private static final int kWindowCycles = 25;
+    private static final double kShedThreshold = 0.9;
+    private static final double kRestoreThreshold = 0.7;
+    private static final int kRestoreCycles = 100;
+    private static final LogKey kAverageCycleMsKey = LoggingUtil.key(kLoggingPrefix + "/AverageCycleMs", Level.DEBUG);
+    private static final LogKey kShedStagesKey = LoggingUtil.key(kLoggingPrefix + "/ShedStages", Level.MATCH);
+
+    @AutoLog
+    public static class OverrunGovernorInputs {
+        public int shedStageCount;
+    }
+
+    private final LoopProfiler mLoopProfiler;
+    private final double mShedThresholdSeconds;
+    private final double mRestoreThresholdSeconds;
+    private final ArrayList<Stage> mStages = new ArrayList<>();
+    private final double[] mCycleSeconds = new double[kWindowCycles];
+    private final OverrunGovernorInputsAutoLogged mInputs = new OverrunGovernorInputsAutoLogged();
+    private final Alert mAlert = Alert.warning("Loop overrunning");
+
+    private double mCycleSecondsSum = 0.0;
+    private int mCycleIndex = 0;
+    private int mCycleCount = 0;
+    private int mCyclesSinceShed = 0;
+    private int mHeadroomCycles = 0;
+    private int mAppliedStageCount = 0;
+
+    /**
+     * @param loopProfiler Profiler providing the cycle times
+     * @param loopPeriodSeconds Nominal main loop period that the thresholds are relative to
+     */
+    public OverrunGovernor(LoopProfiler loopProfiler, double loopPeriodSeconds) {
+        mLoopProfiler = loopProfiler;
+        mShedThresholdSeconds = loopPeriodSeconds * kShedThreshold;
+        mRestoreThresholdSeconds = loopPeriodSeconds * kRestoreThreshold;
+    }
+
+    /**
+     * Adds a stage of work that can be shed. Stages should be added from least to most important.
+     *
+     * @param name Name reported while the stage is shed
+     * @param setShed Called with true when the stage is shed and false when it is restored
+     */
+    public void addStage(String name, BooleanConsumer setShed) {
+        mStages.add(new Stage(name, setShed));
+    }
+
+    /** Updates the shed stages from the previous cycle's time. Should be called once per cycle before other work. */
+    public void periodic() {
+        if (!Logger.hasReplaySource()) {
+            update(mLoopProfiler.getLastCycleSeconds());
+        }
+
+        Logger.processInputs(kLoggingPrefix, mInputs);
+        apply(Math.min(mInputs.shedStageCount, mStages.size()));
+        LoggingUtil.record(kAverageCycleMsKey, () -> mCycleSecondsSum / Math.max(mCycleCount, 1) * 1000.0);
+    }
+
+    private void update(double cycleSeconds) {
+        mCycleSecondsSum += cycleSeconds - mCycleSeconds[mCycleIndex];
+        mCycleSeconds[mCycleIndex] = cycleSeconds;
+        mCycleIndex = (mCycleIndex + 1) % kWindowCycles;
+        mCycleCount = Math.min(mCycleCount + 1, kWindowCycles);
+        mCyclesSinceShed++;
+
+        if (mCycleCount < kWindowCycles) {
+            return;
+        }
+
+        var averageSeconds = mCycleSecondsSum / kWindowCycles;
+        mHeadroomCycles = averageSeconds < mRestoreThresholdSeconds ? mHeadroomCycles + 1 : 0;
+
+        var stageCount = mInputs.shedStageCount;
+        if (averageSeconds > mShedThresholdSeconds
+                && stageCount < mStages.size()
+                && mCyclesSinceShed >= kWindowCycles) {
+            mInputs.shedStageCount = stageCount + 1;
+            mCyclesSinceShed = 0;
+            mHeadroomCycles = 0;
+        } else if (mHeadroomCycles >= kRestoreCycles && stageCount > 0) {
+            mInputs.shedStageCount = stageCount - 1;
+            mHeadroomCycles = 0;
+        }
+    }
+
+    private void apply(int stageCount) {
+        if (stageCount == mAppliedStageCount) {
+            return;
+        }
+
+        for (var i = 0; i < mStages.size(); i++) {
+            var shed = i < stageCount;
+            if (shed != i < mAppliedStageCount) {
+                mStages.get(i).setShed().accept(shed);
+            }
+        }
+
+        mAppliedStageCount = stageCount;
+
+        var shedNames = mStages.stream().limit(stageCount).map(Stage::name).toArray(String[]::new);
+        if (stageCount > 0) {
+            mAlert.setMessage("Loop overrunning, shedding " + String.join(", ", shedNames));
+        }
+
+        mAlert.setEnabled(stageCount > 0);
+        LoggingUtil.record(kShedStagesKey, shedNames);
+    }
+
+    public int getShedStageCount() {
+        return mAppliedStageCount;
+    }
+
+    private static record Stage(String name, BooleanConsumer setShed) {}
+}
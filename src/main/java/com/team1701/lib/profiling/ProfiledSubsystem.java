@@ -0,0 +1,32 @@
+package com.team1701.lib.profiling;
+
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+
+/**
+ * Subsystem whose periodic methods are timed by the {@link LoopProfiler}. Subclasses implement
+ * {@link #profiledPeriodic()} and {@link #profiledSimulationPeriodic()} instead of the periodic methods.
+ */
+public abstract class ProfiledSubsystem extends SubsystemBase {
+    private final LoopProfiler.Section mPeriodicSection =
+            LoopProfiler.getInstance().section("Subsystems/" + getName());
+    private final LoopProfiler.Section mSimulationPeriodicSection =
+            LoopProfiler.getInstance().section("Subsystems/" + getName() + "/Simulation");
+
+    @Override
+    public final void periodic() {
+        mPeriodicSection.start();
+        profiledPeriodic();
+        mPeriodicSection.stop();
+    }
+
+    @Override
+    public final void simulationPeriodic() {
+        mSimulationPeriodicSection.start();
+        profiledSimulationPeriodic();
+        mSimulationPeriodicSection.stop();
+    }
+
+    protected void profiledPeriodic() {}
+
+    protected void profiledSimulationPeriodic() {}
+}
@@ -58,4 +58,8 @@ public class ExtendedSwerveDriveKinematics extends SwerveDriveKinematics {
     public int getNumModules() {
         return mNumModules;
     }
+
+    public Translation2d[] getModuleLocations() {
+        return Arrays.copyOf(mModules, mNumModules);
+    }
 }
@@ -0,0 +1,528 @@
+package com.team1701.lib.swerve;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.team1701.lib.drivers.encoders.EncoderIO;
+import com.team1701.lib.drivers.gyros.GyroIO;
+import com.team1701.lib.drivers.motors.MotorIO;
+import com.team1701.lib.util.SignalSamplingThread;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Simulates a swerve drivetrain as one system: every drive and steer motor, the motor controllers' closed loops, the
+ * chassis rigid body and the contact between each wheel and the carpet, including slip. The whole system is stepped
+ * at a fixed sub-step rate, and motor positions, velocities and the chassis yaw are sampled at the odometry rate so
+ * that the sampling pipeline receives several samples per loop as it does on the robot. The true chassis pose is
+ * available for vision simulation.
+ *
+ * <p>State is kept in flat primitive arrays indexed by module, or by motor with the drive motor of module i at 2i and
+ * its steer motor at 2i + 1, so a step does not allocate. Drive and steer positions are in mechanism radians, with the
+ * steer position zero when the module faces forward.
+ *
+ * <p>Motor current is limited to the configured current limit, as the motor controllers' smart current limits do.
+ * Wheel traction rises linearly with slip velocity up to the friction limit, and the longitudinal and lateral forces
+ * of each wheel are limited together. The slip velocity at which traction saturates is chosen from the sub-step so
+ * that the contact stays numerically stable.
+ *
+ * <p>The steer encoders' mounting offsets and the sensor noise are drawn from one random generator seeded by the
+ * constructor, so that a simulation with the same seed and inputs is reproducible.
+ */
+public class SwerveDrivetrainSim {
+    private static final double kGravity = 9.81;
+    private static final double kMaxVolts = 12.0;
+    private static final double kMinSaturationSlipMetersPerSecond = 0.02;
+    private static final int kSampleCapacity = 64;
+
+    private static final int kModeVoltage = 0;
+    private static final int kModeVelocity = 1;
+    private static final int kModePosition = 2;
+
+    public record Config(
+            Translation2d[] moduleLocations,
+            DCMotor driveMotor,
+            DCMotor steerMotor,
+            double driveReduction,
+            double steerReduction,
+            double wheelRadiusMeters,
+            double driveInertiaKgMetersSquared,
+            double steerInertiaKgMetersSquared,
+            double driveCurrentLimitAmps,
+            double steerCurrentLimitAmps,
+            double massKg,
+            double moiKgMetersSquared,
+            double wheelCoefficientOfFriction) {}
+
+    private final int mModuleCount;
+    private final double mSubstepSeconds;
+    private final int mSubstepsPerSample;
+    private final double mWheelRadius;
+    private final double mMassKg;
+    private final double mMoi;
+    private final double mMaxTractionNewtons;
+    private final double mSaturationSlip;
+
+    // Per module
+    private final double[] mModuleX;
+    private final double[] mModuleY;
+    private final double[] mSteerOffsets;
+
+    // Per motor
+    private final double[] mReductions;
+    private final double[] mInertias;
+    private final double[] mKv;
+    private final double[] mKt;
+    private final double[] mResistance;
+    private final double[] mCurrentLimits;
+    private final double[] mPositions;
+    private final double[] mVelocities;
+    private final int[] mModes;
+    private final double[] mSetpoints;
+    private final double[] mFeedForwards;
+    private final double[] mKp;
+    private final double[] mKi;
+    private final double[] mKd;
+    private final double[] mPreviousErrors;
+    private final double[] mIntegrals;
+    private final boolean[] mBrakeModes;
+    private final boolean[] mContinuous;
+    private final double[] mAppliedVolts;
+
+    // Chassis, field relative
+    private double mX;
+    private double mY;
+    private double mTheta;
+    private double mVx;
+    private double mVy;
+    private double mOmega;
+
+    // Sample ring buffers, with sample n stored at n % kSampleCapacity
+    private final double[] mSamplePositions;
+    private final double[] mSampleVelocities;
+    private final double[] mSampleYaws = new double[kSampleCapacity];
+    private long mSampleCount = 0;
+    private final Random mRandom;
+    private double mPositionNoiseRadians = 0.0;
+    private double mYawNoiseRadians = 0.0;
+    private int mSubstepCount = 0;
+    private double mPendingSeconds = 0.0;
+
+    /**
+     * @param config Drivetrain constants
+     * @param substepFrequency Rate at which the system is stepped, in Hz
+     * @param sampleFrequency Rate at which sensors are sampled, in Hz
+     * @param seed Seed of the steer encoder offsets and the sensor noise
+     */
+    public SwerveDrivetrainSim(Config config, double substepFrequency, double sampleFrequency, long seed) {
+        mRandom = new Random(seed);
+        mModuleCount = config.moduleLocations().length;
+        mSubstepSeconds = 1.0 / substepFrequency;
+        mSubstepsPerSample = Math.max(1, (int) Math.round(substepFrequency / sampleFrequency));
+        mWheelRadius = config.wheelRadiusMeters();
+        mMassKg = config.massKg();
+        mMoi = config.moiKgMetersSquared();
+        mMaxTractionNewtons = config.wheelCoefficientOfFriction() * config.massKg() * kGravity / mModuleCount;
+
+        // Keep the response of the wheel and chassis to slip over one sub-step well below its stability limit
+        var slipGainPerStiffness = mSubstepSeconds
+                * (mWheelRadius * mWheelRadius / config.driveInertiaKgMetersSquared() + mModuleCount / mMassKg);
+        mSaturationSlip =
+                Math.max(kMinSaturationSlipMetersPerSecond, 2.0 * mMaxTractionNewtons * slipGainPerStiffness);
+
+        mModuleX = new double[mModuleCount];
+        mModuleY = new double[mModuleCount];
+        mSteerOffsets = new double[mModuleCount];
+        for (var i = 0; i < mModuleCount; i++) {
+            mModuleX[i] = config.moduleLocations()[i].getX();
+            mModuleY[i] = config.moduleLocations()[i].getY();
+            mSteerOffsets[i] = mRandom.nextDouble() * 2.0 * Math.PI;
+        }
+
+        var motorCount = mModuleCount * 2;
+        mReductions = new double[motorCount];
+        mInertias = new double[motorCount];
+        mKv = new double[motorCount];
+        mKt = new double[motorCount];
+        mResistance = new double[motorCount];
+        mCurrentLimits = new double[motorCount];
+        mPositions = new double[motorCount];
+        mVelocities = new double[motorCount];
+        mModes = new int[motorCount];
+        mSetpoints = new double[motorCount];
+        mFeedForwards = new double[motorCount];
+        mKp = new double[motorCount];
+        mKi = new double[motorCount];
+        mKd = new double[motorCount];
+        mPreviousErrors = new double[motorCount];
+        mIntegrals = new double[motorCount];
+        mBrakeModes = new boolean[motorCount];
+        mContinuous = new boolean[motorCount];
+        mAppliedVolts = new double[motorCount];
+        for (var i = 0; i < mModuleCount; i++) {
+            setMotorConstants(
+                    2 * i,
+                    config.driveMotor(),
+                    config.driveReduction(),
+                    config.driveInertiaKgMetersSquared(),
+                    config.driveCurrentLimitAmps());
+            setMotorConstants(
+                    2 * i + 1,
+                    config.steerMotor(),
+                    config.steerReduction(),
+                    config.steerInertiaKgMetersSquared(),
+                    config.steerCurrentLimitAmps());
+            mContinuous[2 * i + 1] = true;
+        }
+
+        Arrays.fill(mBrakeModes, true);
+        mSamplePositions = new double[kSampleCapacity * motorCount];
+        mSampleVelocities = new double[kSampleCapacity * motorCount];
+    }
+
+    private void setMotorConstants(
+            int motor, DCMotor dcMotor, double reduction, double inertia, double currentLimitAmps) {
+        mReductions[motor] = reduction;
+        mInertias[motor] = inertia;
+        mKv[motor] = dcMotor.KvRadPerSecPerVolt;
+        mKt[motor] = dcMotor.KtNMPerAmp * dcMotor.numMotors;
+        mResistance[motor] = dcMotor.rOhms;
+
+        // The limit applies to each motor of a gearbox
+        mCurrentLimits[motor] = currentLimitAmps * dcMotor.numMotors;
+    }
+
+    /**
+     * Advances the simulation. Time that does not fill a whole sub-step is carried over to the next update.
+     *
+     * @param dtSeconds Time since the last update
+     */
+    public void update(double dtSeconds) {
+        var disabled = DriverStation.isDisabled();
+        mPendingSeconds += dtSeconds;
+        while (mPendingSeconds >= mSubstepSeconds) {
+            mPendingSeconds -= mSubstepSeconds;
+            step(disabled);
+            if (++mSubstepCount % mSubstepsPerSample == 0) {
+                recordSample();
+            }
+        }
+    }
+
+    private void step(boolean disabled) {
+        var dt = mSubstepSeconds;
+        for (var motor = 0; motor < mModuleCount * 2; motor++) {
+            mAppliedVolts[motor] = disabled ? 0.0 : calculateVolts(motor, dt);
+        }
+
+        var cosTheta = Math.cos(mTheta);
+        var sinTheta = Math.sin(mTheta);
+        var forceX = 0.0;
+        var forceY = 0.0;
+        var torque = 0.0;
+        for (var i = 0; i < mModuleCount; i++) {
+            var drive = 2 * i;
+            var steer = 2 * i + 1;
+
+            // Module location and ground velocity in field coordinates
+            var moduleX = mModuleX[i] * cosTheta - mModuleY[i] * sinTheta;
+            var moduleY = mModuleX[i] * sinTheta + mModuleY[i] * cosTheta;
+            var moduleVx = mVx - mOmega * moduleY;
+            var moduleVy = mVy + mOmega * moduleX;
+
+            var wheelHeading = mTheta + mPositions[steer];
+            var cosWheel = Math.cos(wheelHeading);
+            var sinWheel = Math.sin(wheelHeading);
+            var longitudinalVelocity = moduleVx * cosWheel + moduleVy * sinWheel;
+            var lateralVelocity = -moduleVx * sinWheel + moduleVy * cosWheel;
+
+            var longitudinalForce = mMaxTractionNewtons
+                    * MathUtil.clamp(
+                            (mVelocities[drive] * mWheelRadius - longitudinalVelocity) / mSaturationSlip, -1.0, 1.0);
+            var lateralForce = -mMaxTractionNewtons * MathUtil.clamp(lateralVelocity / mSaturationSlip, -1.0, 1.0);
+            var tractionForce = Math.hypot(longitudinalForce, lateralForce);
+            if (tractionForce > mMaxTractionNewtons) {
+                var scale = mMaxTractionNewtons / tractionForce;
+                longitudinalForce *= scale;
+                lateralForce *= scale;
+            }
+
+            var moduleForceX = longitudinalForce * cosWheel - lateralForce * sinWheel;
+            var moduleForceY = longitudinalForce * sinWheel + lateralForce * cosWheel;
+            forceX += moduleForceX;
+            forceY += moduleForceY;
+            torque += moduleX * moduleForceY - moduleY * moduleForceX;
+
+            integrateMotor(drive, motorTorque(drive) - longitudinalForce * mWheelRadius, dt);
+            integrateMotor(steer, motorTorque(steer), dt);
+        }
+
+        mVx += forceX / mMassKg * dt;
+        mVy += forceY / mMassKg * dt;
+        mOmega += torque / mMoi * dt;
+        mX += mVx * dt;
+        mY += mVy * dt;
+        mTheta += mOmega * dt;
+    }
+
+    private double calculateVolts(int motor, double dt) {
+        double error;
+        switch (mModes[motor]) {
+            case kModeVelocity:
+                error = mSetpoints[motor] - mVelocities[motor];
+                break;
+            case kModePosition:
+                error = mSetpoints[motor] - mPositions[motor];
+                if (mContinuous[motor]) {
+                    error = MathUtil.angleModulus(error);
+                }
+                break;
+            default:
+                return mSetpoints[motor];
+        }
+
+        var derivative = (error - mPreviousErrors[motor]) / dt;
+        mPreviousErrors[motor] = error;
+
+        // Limit the accumulated error to what can be applied, so that it does not wind up while saturated
+        var integral = 0.0;
+        var ki = mKi[motor];
+        if (ki != 0.0) {
+            var limit = kMaxVolts / Math.abs(ki);
+            mIntegrals[motor] = MathUtil.clamp(mIntegrals[motor] + error * dt, -limit, limit);
+            integral = ki * mIntegrals[motor];
+        }
+
+        return MathUtil.clamp(
+                mKp[motor] * error + integral + mKd[motor] * derivative + mSetpoints[motor] * mFeedForwards[motor],
+                -kMaxVolts,
+                kMaxVolts);
+    }
+
+    // Torque at the mechanism, from the motor's current at its back-EMF speed, limited to the current limit
+    private double motorTorque(int motor) {
+        var volts = mAppliedVolts[motor];
+        if (volts == 0.0 && !mBrakeModes[motor]) {
+            return 0.0;
+        }
+
+        var motorVelocity = mVelocities[motor] / mReductions[motor];
+        var limit = mCurrentLimits[motor];
+        var current = MathUtil.clamp((volts - motorVelocity / mKv[motor]) / mResistance[motor], -limit, limit);
+        return mKt[motor] * current / mReductions[motor];
+    }
+
+    private void integrateMotor(int motor, double torque, double dt) {
+        mVelocities[motor] += torque / mInertias[motor] * dt;
+        mPositions[motor] += mVelocities[motor] * dt;
+    }
+
+    private void recordSample() {
+        var motorCount = mModuleCount * 2;
+        var slot = (int) (mSampleCount % kSampleCapacity);
+        System.arraycopy(mPositions, 0, mSamplePositions, slot * motorCount, motorCount);
+        System.arraycopy(mVelocities, 0, mSampleVelocities, slot * motorCount, motorCount);
+        mSampleYaws[slot] = mTheta + mRandom.nextGaussian() * mYawNoiseRadians;
+        if (mPositionNoiseRadians > 0.0) {
+            for (var i = slot * motorCount; i < (slot + 1) * motorCount; i++) {
+                mSamplePositions[i] += mRandom.nextGaussian() * mPositionNoiseRadians;
+            }
+        }
+        mSampleCount++;
+    }
+
+    /** Returns samples from the first sample not yet read up to the newest, dropping any that were overwritten. */
+    private double[] readSamples(double[] samples, int stride, int offset, long firstSample) {
+        var start = Math.max(firstSample, mSampleCount - kSampleCapacity);
+        var values = new double[(int) (mSampleCount - start)];
+        for (var i = 0; i < values.length; i++) {
+            values[i] = samples[(int) ((start + i) % kSampleCapacity) * stride + offset];
+        }
+
+        return values;
+    }
+
+    /**
+     * Adds independent Gaussian noise to each sampled motor position and yaw. Readings outside of the sampling pipeline
+     * are exact.
+     *
+     * @param positionStdDevRadians Standard deviation of motor position noise in mechanism radians
+     * @param yawStdDevRadians Standard deviation of yaw noise
+     */
+    public void setSensorNoise(double positionStdDevRadians, double yawStdDevRadians) {
+        mPositionNoiseRadians = positionStdDevRadians;
+        mYawNoiseRadians = yawStdDevRadians;
+    }
+
+    /** Returns the true pose of the chassis. */
+    public Pose2d getPose() {
+        return new Pose2d(mX, mY, Rotation2d.fromRadians(mTheta));
+    }
+
+    /** Moves the chassis to the pose and stops it. */
+    public void setPose(Pose2d pose) {
+        mX = pose.getX();
+        mY = pose.getY();
+        mTheta = pose.getRotation().getRadians();
+        mVx = 0.0;
+        mVy = 0.0;
+        mOmega = 0.0;
+    }
+
+    /** Returns the true field-relative velocity of the chassis. */
+    public ChassisSpeeds getFieldRelativeSpeeds() {
+        return new ChassisSpeeds(mVx, mVy, mOmega);
+    }
+
+    public MotorIO getDriveMotorIO(int module) {
+        return new SimulatedMotorIO(2 * module);
+    }
+
+    public MotorIO getSteerMotorIO(int module) {
+        return new SimulatedMotorIO(2 * module + 1);
+    }
+
+    /** Returns an absolute encoder on the module's steering, with a seeded random mounting offset. */
+    public EncoderIO getSteerEncoderIO(int module) {
+        var steer = 2 * module + 1;
+        return new EncoderIO() {
+            @Override
+            public void updateInputs(EncoderInputs inputs) {
+                inputs.position = Rotation2d.fromRadians(mPositions[steer] + mSteerOffsets[module]);
+            }
+        };
+    }
+
+    public GyroIO getGyroIO() {
+        return new SimulatedGyroIO();
+    }
+
+    private class SimulatedMotorIO implements MotorIO {
+        private final int mMotor;
+        private final int mMotorCount = mModuleCount * 2;
+        private boolean mPositionSamplingEnabled;
+        private boolean mVelocitySamplingEnabled;
+        private long mNextPositionSample = 0;
+        private long mNextVelocitySample = 0;
+
+        private SimulatedMotorIO(int motor) {
+            mMotor = motor;
+        }
+
+        @Override
+        public void updateInputs(MotorInputs inputs) {
+            inputs.positionRadians = mPositions[mMotor];
+            inputs.velocityRadiansPerSecond = mVelocities[mMotor];
+
+            if (mPositionSamplingEnabled) {
+                inputs.positionRadiansSamples = readSamples(mSamplePositions, mMotorCount, mMotor, mNextPositionSample);
+                mNextPositionSample = mSampleCount;
+            }
+
+            if (mVelocitySamplingEnabled) {
+                inputs.velocityRadiansPerSecondSamples =
+                        readSamples(mSampleVelocities, mMotorCount, mMotor, mNextVelocitySample);
+                mNextVelocitySample = mSampleCount;
+            }
+        }
+
+        @Override
+        public void setPositionControl(Rotation2d position) {
+            setControl(kModePosition, position.getRadians());
+        }
+
+        @Override
+        public void setVelocityControl(double velocityRadiansPerSecond) {
+            setControl(kModeVelocity, velocityRadiansPerSecond);
+        }
+
+        @Override
+        public void setPercentOutput(double percentage) {
+            setControl(kModeVoltage, MathUtil.clamp(percentage * kMaxVolts, -kMaxVolts, kMaxVolts));
+        }
+
+        @Override
+        public void setVoltageOutput(double volts) {
+            setControl(kModeVoltage, MathUtil.clamp(volts, -kMaxVolts, kMaxVolts));
+        }
+
+        private void setControl(int mode, double setpoint) {
+            if (mModes[mMotor] != mode) {
+                mModes[mMotor] = mode;
+                mPreviousErrors[mMotor] = 0.0;
+                mIntegrals[mMotor] = 0.0;
+            }
+
+            mSetpoints[mMotor] = setpoint;
+        }
+
+        @Override
+        public void setBreakMode(boolean enable) {
+            mBrakeModes[mMotor] = enable;
+        }
+
+        @Override
+        public void setPID(double ff, double p, double i, double d) {
+            mFeedForwards[mMotor] = ff;
+            mKp[mMotor] = p;
+            mKi[mMotor] = i;
+            mKd[mMotor] = d;
+        }
+
+        @Override
+        public synchronized void enablePositionSampling(SignalSamplingThread samplingThread) {
+            if (mPositionSamplingEnabled) {
+                throw new IllegalStateException("Position sampling already enabled");
+            }
+
+            mPositionSamplingEnabled = true;
+            mNextPositionSample = mSampleCount;
+        }
+
+        @Override
+        public synchronized void enableVelocitySampling(SignalSamplingThread samplingThread) {
+            if (mVelocitySamplingEnabled) {
+                throw new IllegalStateException("Velocity sampling already enabled");
+            }
+
+            mVelocitySamplingEnabled = true;
+            mNextVelocitySample = mSampleCount;
+        }
+    }
+
+    private class SimulatedGyroIO implements GyroIO {
+        private boolean mYawSamplingEnabled;
+        private long mNextYawSample = 0;
+
+        @Override
+        public void updateInputs(GyroInputs inputs) {
+            inputs.connected = true;
+            inputs.yaw = Rotation2d.fromRadians(mTheta);
+            if (mYawSamplingEnabled) {
+                var yaws = readSamples(mSampleYaws, 1, 0, mNextYawSample);
+                mNextYawSample = mSampleCount;
+                var yawSamples = new Rotation2d[yaws.length];
+                for (var i = 0; i < yaws.length; i++) {
+                    yawSamples[i] = Rotation2d.fromRadians(yaws[i]);
+                }
+
+                inputs.yawSamples = yawSamples;
+            }
+        }
+
+        @Override
+        public synchronized void enableYawSampling(SignalSamplingThread samplingThread) {
+            if (mYawSamplingEnabled) {
+                throw new IllegalStateException("Yaw sampling already enabled");
+            }
+
+            mYawSamplingEnabled = true;
+            mNextYawSample = mSampleCount;
+        }
+    }
+}
@@ -1,26 +1,153 @@
 package com.team1701.lib.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import com.team1701.robot.Configuration;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.littletonrobotics.junction.networktables.LoggedDashboardNumber;
 
 /**
  * Class for a tunable number. Gets value from dashboard in tuning mode, returns default if not or value not in
  * dashboard.
+ *
+ * <p>Dashboard values are read for all tunable numbers at once by {@link #refreshAll()}, which should be called once
+ * per cycle. Each number carries a version that is incremented whenever its value changes, and a global version is
+ * incremented whenever any number changes, so callers detect changes by comparing a stored version. Callers can also
+ * register actions with {@link #onChange(Runnable, LoggedTunableNumber...)} that run only when a value changes.
+ *
+ * <p>With listeners enabled, NetworkTables listeners queue the numbers whose values changed and only those are read,
+ * instead of reading every number each cycle. Values are still read through the logged dashboard inputs, so replay is
+ * unaffected.
  */
 public class LoggedTunableNumber {
+    /**
+     * Set per robot by {@link Configuration#kTuningEnabled}. Both are compile-time constants, so change checks fold to
+     * false when tuning is disabled, and reading it does not initialize the robot configuration.
+     */
+    public static final boolean kTuningEnabled = Configuration.kTuningEnabled;
+
     private static final String kTableKey = "TunableNumbers";
-    private static boolean kTuningEnabled = true;
+    private static final ArrayList<LoggedTunableNumber> mTunableNumbers = new ArrayList<>();
+    private static final ConcurrentLinkedQueue<LoggedTunableNumber> mChangedNumbers = new ConcurrentLinkedQueue<>();
+    private static final ArrayList<LoggedTunableNumber> mPendingNumbers = new ArrayList<>();
+    private static final ArrayList<Subscription> mSubscriptions = new ArrayList<>();
+    private static int mGlobalVersion = 0;
+    private static int mRefreshCount = 0;
+    private static boolean mPollingPaused = false;
+    private static boolean mListenersEnabled = false;
 
     private final String mKey;
     private boolean mHasDefault = false;
-    private double mDefaultValue;
+    private double mValue;
+    private int mVersion = 0;
+    private int mChangedRefreshCount = -1;
+    private int mPendingRefreshes = 0;
     private LoggedDashboardNumber mDashboardNumber;
-    private Map<Integer, Double> mLastHasChangedValues = new HashMap<>();
 
-    public static void enableTuning(boolean tuningEnabled) {
-        kTuningEnabled = tuningEnabled;
+    /**
+     * Reads the dashboard values of all tunable numbers, or only those reported by listeners if enabled, updates the
+     * versions of those that changed and runs the affected change actions. Does nothing when tuning is disabled or
+     * polling is paused.
+     */
+    public static void refreshAll() {
+        if (!kTuningEnabled || mPollingPaused) {
+            return;
+        }
+
+        mRefreshCount++;
+        var globalVersion = mGlobalVersion;
+        if (mListenersEnabled) {
+            LoggedTunableNumber changedNumber;
+            while ((changedNumber = mChangedNumbers.poll()) != null) {
+                if (changedNumber.mPendingRefreshes == 0) {
+                    mPendingNumbers.add(changedNumber);
+                }
+
+                // The dashboard inputs may have been read before the value arrived, so read again next cycle
+                changedNumber.mPendingRefreshes = 2;
+            }
+
+            for (var i = mPendingNumbers.size() - 1; i >= 0; i--) {
+                var number = mPendingNumbers.get(i);
+                number.refresh();
+                if (--number.mPendingRefreshes == 0) {
+                    mPendingNumbers.remove(i);
+                }
+            }
+        } else {
+            for (var i = 0; i < mTunableNumbers.size(); i++) {
+                mTunableNumbers.get(i).refresh();
+            }
+        }
+
+        if (mGlobalVersion != globalVersion) {
+            for (var subscription : mSubscriptions.toArray(Subscription[]::new)) {
+                subscription.notifyIfChanged();
+            }
+        }
+    }
+
+    /**
+     * Reads only the numbers reported as changed by NetworkTables listeners instead of every number. Should not be
+     * enabled in replay, where values come from the log rather than NetworkTables.
+     */
+    public static void enableListeners() {
+        if (!kTuningEnabled || mListenersEnabled) {
+            return;
+        }
+
+        mListenersEnabled = true;
+        mTunableNumbers.forEach(LoggedTunableNumber::addListener);
+    }
+
+    /**
+     * Registers an action to run on the main thread during {@link #refreshAll()} when any of the numbers change. The
+     * action runs at most once per refresh, and never when tuning is disabled.
+     *
+     * @return Subscription that can be cancelled to stop running the action
+     */
+    public static Subscription onChange(Runnable action, LoggedTunableNumber... numbers) {
+        var subscription = new Subscription(action, numbers);
+        if (kTuningEnabled) {
+            mSubscriptions.add(subscription);
+        }
+
+        return subscription;
+    }
+
+    /** Pauses reading dashboard values. Changes made while paused are picked up once polling resumes. */
+    public static void pausePolling(boolean paused) {
+        mPollingPaused = paused;
+    }
+
+    /**
+     * Sets the dashboard value of the number with the key, as if it were changed on the dashboard. The value is read on
+     * a following {@link #refreshAll()}.
+     *
+     * @param dashboardKey Key on dashboard
+     * @param value New value
+     */
+    public static void publish(String dashboardKey, double value) {
+        SmartDashboard.putNumber(kTableKey + "/" + dashboardKey, value);
+    }
+
+    /** Returns a version that changes whenever any tunable number changes. */
+    public static int getGlobalVersion() {
+        return mGlobalVersion;
+    }
+
+    /**
+     * Checks whether any tunable number has changed since the global version was read
+     *
+     * @param globalVersion Value previously returned by {@link #getGlobalVersion()}
+     * @return True if any number has changed, always false when tuning is disabled
+     */
+    public static boolean hasAnyChangedSince(int globalVersion) {
+        return kTuningEnabled && mGlobalVersion != globalVersion;
     }
 
     /**
@@ -51,41 +178,80 @@ public class LoggedTunableNumber {
     public void initDefault(double defaultValue) {
         if (!mHasDefault) {
             mHasDefault = true;
-            this.mDefaultValue = defaultValue;
+            mValue = defaultValue;
             if (kTuningEnabled) {
                 mDashboardNumber = new LoggedDashboardNumber(mKey, defaultValue);
+                mTunableNumbers.add(this);
+                if (mListenersEnabled) {
+                    addListener();
+                }
             }
         }
     }
 
+    private void addListener() {
+        // The listener runs on the NetworkTables listener thread, so it only queues the number for the main thread
+        var instance = NetworkTableInstance.getDefault();
+        instance.addListener(
+                instance.getTopic("/SmartDashboard/" + mKey),
+                EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+                event -> mChangedNumbers.add(this));
+    }
+
+    private void refresh() {
+        var value = mDashboardNumber.get();
+        if (value != mValue) {
+            mValue = value;
+            mVersion++;
+            mGlobalVersion++;
+            mChangedRefreshCount = mRefreshCount;
+        }
+    }
+
     /**
-     * Get the current value, from dashboard if available and in tuning mode.
+     * Get the current value, from dashboard as of the last refresh if available and in tuning mode.
      *
      * @return The current value
      */
     public double get() {
-        if (!mHasDefault) {
-            return 0.0;
-        } else {
-            return kTuningEnabled ? mDashboardNumber.get() : mDefaultValue;
-        }
+        return mValue;
+    }
+
+    /** Returns a version that changes whenever the value of this number changes. */
+    public int getVersion() {
+        return mVersion;
     }
 
     /**
-     * Checks whether the number has changed since our last check
+     * Checks whether the number has changed since the version was read
      *
-     * @param id Unique identifier for the caller to avoid conflicts when shared between multiple objects. Recommended
-     * approach is to pass the result of "hashCode()".
-     * @return True if the number has changed since the last time this method was called, false otherwise.
+     * @param version Value previously returned by {@link #getVersion()}
+     * @return True if the number has changed, always false when tuning is disabled
      */
-    public boolean hasChanged(int id) {
-        var currentValue = get();
-        var lastValue = mLastHasChangedValues.get(id);
-        if (lastValue == null || currentValue != lastValue) {
-            mLastHasChangedValues.put(id, currentValue);
-            return true;
+    public boolean hasChangedSince(int version) {
+        return kTuningEnabled && mVersion != version;
+    }
+
+    public static final class Subscription {
+        private final Runnable mAction;
+        private final LoggedTunableNumber[] mNumbers;
+
+        private Subscription(Runnable action, LoggedTunableNumber[] numbers) {
+            mAction = action;
+            mNumbers = numbers;
         }
 
-        return false;
+        public void cancel() {
+            mSubscriptions.remove(this);
+        }
+
+        private void notifyIfChanged() {
+            for (var number : mNumbers) {
+                if (number.mChangedRefreshCount == mRefreshCount) {
+                    mAction.run();
+                    return;
+                }
+            }
+        }
     }
 }
@@ -1,3 +1,326 @@
 package com.team1701.lib.util;
 
-public class LoggingUtil {}
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import edu.wpi.first.util.WPISerializable;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Level-gated facade over {@link Logger#recordOutput}. Keys are interned once as {@link LogKey}s with a verbosity
+ * level, and each key is enabled when its level is at or below the level configured for the longest matching key
+ * prefix (or the default level). Values passed as suppliers are only evaluated when the key is enabled, so expensive
+ * payloads cost nothing when they are not being logged.
+ *
+ * <p>Inputs must still be passed to {@link Logger#processInputs} unconditionally so that replay is not affected.
+ */
+public final class LoggingUtil {
+    public static enum Level {
+        /** Always logged, including on the field during matches */
+        MATCH,
+        /** Logged while debugging */
+        DEBUG,
+        /** Expensive or high-volume values, only logged when specifically needed */
+        VERBOSE
+    }
+
+    private static final Map<String, LogKey> mKeys = new HashMap<>();
+    private static final ArrayList<Map.Entry<String, Level>> mPrefixLevels = new ArrayList<>();
+    private static final ThreadLocal<DeferredOutputs> mDeferredOutputs = new ThreadLocal<>();
+    private static Level mDefaultLevel = Level.VERBOSE;
+    private static Level mMaxLevel = Level.VERBOSE;
+
+    private LoggingUtil() {}
+
+    public static final class LogKey {
+        private final String mKey;
+        private final Level mLevel;
+        private volatile boolean mEnabled;
+
+        private LogKey(String key, Level level) {
+            mKey = key;
+            mLevel = level;
+        }
+
+        public String getKey() {
+            return mKey;
+        }
+
+        public Level getLevel() {
+            return mLevel;
+        }
+
+        public boolean isEnabled() {
+            return mEnabled;
+        }
+    }
+
+    /**
+     * Gets the interned key for a logging key string. Keys should be created once and stored rather than looked up
+     * every cycle.
+     *
+     * @param key Full logging key
+     * @param level Verbosity of the key. If the key already exists, its original level is kept.
+     */
+    public static synchronized LogKey key(String key, Level level) {
+        var logKey = mKeys.get(key);
+        if (logKey == null) {
+            logKey = new LogKey(key, level);
+            logKey.mEnabled = resolveEnabled(logKey);
+            mKeys.put(key, logKey);
+        }
+
+        return logKey;
+    }
+
+    /**
+     * Forgets an interned key that will no longer be logged, such as one for an object that is being discarded. The key
+     * can still be recorded, but no longer follows level changes.
+     */
+    public static synchronized void release(LogKey key) {
+        mKeys.remove(key.mKey, key);
+    }
+
+    /** Sets the level used for keys that do not match any configured prefix. */
+    public static synchronized void setDefaultLevel(Level level) {
+        mDefaultLevel = level;
+        updateKeys();
+    }
+
+    /** Sets the level used for keys starting with the prefix. The longest matching prefix wins. */
+    public static synchronized void setLevel(String prefix, Level level) {
+        mPrefixLevels.removeIf(entry -> entry.getKey().equals(prefix));
+        mPrefixLevels.add(Map.entry(prefix, level));
+        mPrefixLevels.sort((a, b) -> b.getKey().length() - a.getKey().length());
+        updateKeys();
+    }
+
+    /** Caps the level of every key regardless of the configured levels, such as to temporarily reduce logging. */
+    public static synchronized void setMaxLevel(Level level) {
+        mMaxLevel = level;
+        updateKeys();
+    }
+
+    private static void updateKeys() {
+        mKeys.values().forEach(key -> key.mEnabled = resolveEnabled(key));
+    }
+
+    private static boolean resolveEnabled(LogKey key) {
+        var level = mDefaultLevel;
+        for (var entry : mPrefixLevels) {
+            if (key.mKey.startsWith(entry.getKey())) {
+                level = entry.getValue();
+                break;
+            }
+        }
+
+        return key.mLevel.compareTo(level) <= 0 && key.mLevel.compareTo(mMaxLevel) <= 0;
+    }
+
+    public static void record(LogKey key, boolean value) {
+        if (key.mEnabled) {
+            var deferred = mDeferredOutputs.get();
+            if (deferred != null) {
+                deferred.add(key, DeferredOutputs.kBoolean, value ? 1.0 : 0.0, null);
+            } else {
+                Logger.recordOutput(key.mKey, value);
+            }
+        }
+    }
+
+    public static void record(LogKey key, int value) {
+        if (key.mEnabled) {
+            var deferred = mDeferredOutputs.get();
+            if (deferred != null) {
+                deferred.add(key, DeferredOutputs.kInt, value, null);
+            } else {
+                Logger.recordOutput(key.mKey, value);
+            }
+        }
+    }
+
+    public static void record(LogKey key, long value) {
+        if (key.mEnabled) {
+            var deferred = mDeferredOutputs.get();
+            if (deferred != null) {
+                deferred.add(key, DeferredOutputs.kLong, Double.longBitsToDouble(value), null);
+            } else {
+                Logger.recordOutput(key.mKey, value);
+            }
+        }
+    }
+
+    public static void record(LogKey key, double value) {
+        if (key.mEnabled) {
+            var deferred = mDeferredOutputs.get();
+            if (deferred != null) {
+                deferred.add(key, DeferredOutputs.kDouble, value, null);
+            } else {
+                Logger.recordOutput(key.mKey, value);
+            }
+        }
+    }
+
+    public static void record(LogKey key, String value) {
+        if (key.mEnabled) {
+            recordObject(key, DeferredOutputs.kString, value);
+        }
+    }
+
+    public static void record(LogKey key, double[] value) {
+        if (key.mEnabled) {
+            recordObject(key, DeferredOutputs.kDoubleArray, value);
+        }
+    }
+
+    public static void record(LogKey key, String[] value) {
+        if (key.mEnabled) {
+            recordObject(key, DeferredOutputs.kStringArray, value);
+        }
+    }
+
+    public static <T extends WPISerializable> void record(LogKey key, T value) {
+        if (key.mEnabled) {
+            recordObject(key, DeferredOutputs.kSerializable, value);
+        }
+    }
+
+    public static <T extends WPISerializable> void record(LogKey key, T[] value) {
+        if (key.mEnabled) {
+            recordObject(key, DeferredOutputs.kSerializableArray, value);
+        }
+    }
+
+    public static void record(LogKey key, BooleanSupplier value) {
+        if (key.mEnabled) {
+            record(key, value.getAsBoolean());
+        }
+    }
+
+    public static void record(LogKey key, DoubleSupplier value) {
+        if (key.mEnabled) {
+            record(key, value.getAsDouble());
+        }
+    }
+
+    public static <T extends WPISerializable> void record(LogKey key, Supplier<T> value) {
+        if (key.mEnabled) {
+            record(key, value.get());
+        }
+    }
+
+    public static <T extends WPISerializable> void recordArray(LogKey key, Supplier<T[]> value) {
+        if (key.mEnabled) {
+            record(key, value.get());
+        }
+    }
+
+    private static void recordObject(LogKey key, byte type, Object value) {
+        var deferred = mDeferredOutputs.get();
+        if (deferred != null) {
+            deferred.add(key, type, 0.0, value);
+        } else {
+            DeferredOutputs.recordOutput(key.mKey, type, 0.0, value);
+        }
+    }
+
+    /**
+     * Captures outputs recorded on the current thread into a buffer instead of logging them, so that work running off
+     * the main thread can have its outputs logged later from the main thread in a deterministic order.
+     */
+    public static void beginDeferring(DeferredOutputs outputs) {
+        mDeferredOutputs.set(outputs);
+    }
+
+    public static void endDeferring() {
+        mDeferredOutputs.remove();
+    }
+
+    /**
+     * Buffer of deferred outputs. Arrays and objects are held by reference, so they must not be modified until the
+     * buffer is flushed.
+     */
+    public static final class DeferredOutputs {
+        private static final byte kBoolean = 0;
+        private static final byte kInt = 1;
+        private static final byte kLong = 2;
+        private static final byte kDouble = 3;
+        private static final byte kString = 4;
+        private static final byte kDoubleArray = 5;
+        private static final byte kStringArray = 6;
+        private static final byte kSerializable = 7;
+        private static final byte kSerializableArray = 8;
+
+        private LogKey[] mKeys = new LogKey[32];
+        private byte[] mTypes = new byte[32];
+        private double[] mNumbers = new double[32];
+        private Object[] mObjects = new Object[32];
+        private int mSize = 0;
+
+        private void add(LogKey key, byte type, double number, Object object) {
+            if (mSize == mKeys.length) {
+                var capacity = mSize * 2;
+                mKeys = Arrays.copyOf(mKeys, capacity);
+                mTypes = Arrays.copyOf(mTypes, capacity);
+                mNumbers = Arrays.copyOf(mNumbers, capacity);
+                mObjects = Arrays.copyOf(mObjects, capacity);
+            }
+
+            mKeys[mSize] = key;
+            mTypes[mSize] = type;
+            mNumbers[mSize] = number;
+            mObjects[mSize] = object;
+            mSize++;
+        }
+
+        /** Logs the buffered outputs in the order they were recorded and clears the buffer. */
+        public void flush() {
+            for (var i = 0; i < mSize; i++) {
+                recordOutput(mKeys[i].mKey, mTypes[i], mNumbers[i], mObjects[i]);
+                mKeys[i] = null;
+                mObjects[i] = null;
+            }
+
+            mSize = 0;
+        }
+
+        private static void recordOutput(String key, byte type, double number, Object object) {
+            switch (type) {
+                case kBoolean:
+                    Logger.recordOutput(key, number != 0.0);
+                    break;
+                case kInt:
+                    Logger.recordOutput(key, (int) number);
+                    break;
+                case kLong:
+                    Logger.recordOutput(key, Double.doubleToRawLongBits(number));
+                    break;
+                case kDouble:
+                    Logger.recordOutput(key, number);
+                    break;
+                case kString:
+                    Logger.recordOutput(key, (String) object);
+                    break;
+                case kDoubleArray:
+                    Logger.recordOutput(key, (double[]) object);
+                    break;
+                case kStringArray:
+                    Logger.recordOutput(key, (String[]) object);
+                    break;
+                case kSerializable:
+                    Logger.recordOutput(key, (WPISerializable) object);
+                    break;
+                case kSerializableArray:
+                    Logger.recordOutput(key, (WPISerializable[]) object);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown output type " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.team1701.lib.util;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent samples of a value in a fixed-size window and reports percentiles over the window. Storage is
+ * allocated once, and the window is only re-sorted when a percentile is requested after new samples are added.
+ */
+public class RollingPercentiles {
+    private final double[] mSamples;
+    private final double[] mSortedSamples;
+    private int mNextIndex = 0;
+    private int mCount = 0;
+    private boolean mSorted = true;
+
+    public RollingPercentiles(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive");
+        }
+
+        mSamples = new double[windowSize];
+        mSortedSamples = new double[windowSize];
+    }
+
+    public void add(double value) {
+        mSamples[mNextIndex] = value;
+        mNextIndex = (mNextIndex + 1) % mSamples.length;
+        mCount = Math.min(mCount + 1, mSamples.length);
+        mSorted = false;
+    }
+
+    public void clear() {
+        mNextIndex = 0;
+        mCount = 0;
+        mSorted = true;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Gets a percentile of the samples in the window using the nearest-rank method.
+     *
+     * @param percentile Percentile between 0 and 1
+     * @return The percentile, or 0 if there are no samples
+     */
+    public double getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0.0;
+        }
+
+        sort();
+        var rank = (int) Math.ceil(percentile * mCount) - 1;
+        return mSortedSamples[Math.max(0, Math.min(mCount - 1, rank))];
+    }
+
+    public double getMax() {
+        if (mCount == 0) {
+            return 0.0;
+        }
+
+        sort();
+        return mSortedSamples[mCount - 1];
+    }
+
+    private void sort() {
+        if (mSorted) {
+            return;
+        }
+
+        System.arraycopy(mSamples, 0, mSortedSamples, 0, mCount);
+        Arrays.sort(mSortedSamples, 0, mCount);
+        mSorted = true;
+    }
+}
@@ -1,21 +1,60 @@
 package com.team1701.robot;
 
+import java.util.Map;
+import java.util.Optional;
+
 import com.team1701.lib.alerts.Alert;
 import com.team1701.lib.util.LoggedTunableNumber;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 
 public final class Configuration {
     private static final RobotType kRobot = RobotType.SIMULATION_BOT;
-    private static final boolean kTuningEnabled = true;
+
+    // Headless tools such as the replay runner select the robot and force replay without editing this file
+    public static final String kRobotProperty = "team1701.robot";
+    public static final String kReplayProperty = "team1701.replay";
+    public static final String kHeadlessProperty = "team1701.headless";
+    public static final String kHeadlessLogProperty = "team1701.headless.log";
+    private static final Optional<RobotType> kRobotOverride =
+            Optional.ofNullable(System.getProperty(kRobotProperty)).map(RobotType::valueOf);
+    private static final boolean kReplayForced = Boolean.getBoolean(kReplayProperty);
+    private static final boolean kHeadless = Boolean.getBoolean(kHeadlessProperty);
+    private static final Optional<String> kHeadlessLogPath =
+            Optional.ofNullable(System.getProperty(kHeadlessLogProperty));
+    private static final boolean kTunableListenersEnabled = true;
+
+    // Read by LoggedTunableNumber at compile time; disable for competition so tunables cost nothing
+    public static final boolean kTuningEnabled = true;
+
+    // Logging levels on the robot are kept low to save bandwidth and loop time; simulation and replay log everything
+    private static final Level kRealLoggingLevel = Level.DEBUG;
+    private static final Map<String, Level> kRealLoggingLevelOverrides = Map.of("Camera/", Level.MATCH);
 
     private static boolean mInvalidRobotAlerted = false;
+    private static SimulationParameters mSimulationParameters = SimulationParameters.kDefault;
 
     static {
-        LoggedTunableNumber.enableTuning(kTuningEnabled);
+        // Replayed tunable values come from the log, so there are no NetworkTables changes to listen for. Headless
+        // simulations poll instead, so that a published value is read on the next cycle rather than whenever the
+        // listener thread delivers it
+        if (kTunableListenersEnabled && getMode() != Mode.REPLAY && !kHeadless) {
+            LoggedTunableNumber.enableListeners();
+        }
+
+        if (getMode() == Mode.REAL) {
+            LoggingUtil.setDefaultLevel(kRealLoggingLevel);
+            kRealLoggingLevelOverrides.forEach(LoggingUtil::setLevel);
+        }
     }
 
     public static RobotType getRobot() {
+        if (kRobotOverride.isPresent()) {
+            return kRobotOverride.get();
+        }
+
         if (Robot.isReal() && kRobot == RobotType.SIMULATION_BOT) {
             if (!mInvalidRobotAlerted) {
                 Alert.warning("Invalid robot configured. Using swerve bot as default.")
@@ -30,6 +69,10 @@ public final class Configuration {
     }
 
     public static Mode getMode() {
+        if (kReplayForced) {
+            return Mode.REPLAY;
+        }
+
         switch (getRobot()) {
             case SWERVE_BOT:
                 return Robot.isReal() ? Mode.REAL : Mode.REPLAY;
@@ -40,6 +83,25 @@ public final class Configuration {
         }
     }
 
+    /** Returns true if the simulation is stepped by {@link HeadlessSimulation} rather than run in real time. */
+    public static boolean isHeadless() {
+        return kHeadless;
+    }
+
+    /** Returns the file a headless simulation logs to, if it was given one. */
+    public static Optional<String> getHeadlessLogPath() {
+        return kHeadlessLogPath;
+    }
+
+    public static SimulationParameters getSimulationParameters() {
+        return mSimulationParameters;
+    }
+
+    // Must be set before the robot container is created
+    static void setSimulationParameters(SimulationParameters parameters) {
+        mSimulationParameters = parameters;
+    }
+
     public static Alliance getAlliance() {
         return DriverStation.getAlliance().orElse(Alliance.Blue);
     }
@@ -54,4 +116,22 @@ public final class Configuration {
         REPLAY,
         SIMULATION
     }
+
+    /**
+     * Physical and sensor parameters of the simulation robot. Headless simulations skip camera simulation unless
+     * {@code simulateCameras} is set.
+     */
+    public static record SimulationParameters(
+            boolean simulateCameras,
+            double cameraCalibrationErrorPixels,
+            double cameraCalibrationErrorStdDevPixels,
+            double cameraLatencyMs,
+            double cameraLatencyStdDevMs,
+            double wheelCoefficientOfFriction,
+            double wheelPositionNoiseRadians,
+            double gyroYawNoiseRadians,
+            long seed) {
+        public static final SimulationParameters kDefault =
+                new SimulationParameters(false, 0.35, 0.10, 50.0, 15.0, 1.2, 0.0, 0.0, 0);
+    }
 }
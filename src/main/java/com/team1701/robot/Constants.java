@@ -3,15 +3,18 @@ package com.team1701.robot;
 import com.pathplanner.lib.util.HolonomicPathFollowerConfig;
 import com.pathplanner.lib.util.PIDConstants;
 import com.pathplanner.lib.util.ReplanningConfig;
+import com.team1701.lib.drivers.cameras.AprilTagFieldGeometry;
 import com.team1701.lib.swerve.ExtendedSwerveDriveKinematics;
 import com.team1701.lib.swerve.SwerveSetpointGenerator.KinematicLimits;
 import com.team1701.lib.util.LoggedTunableNumber;
+import edu.wpi.first.apriltag.AprilTagFields;
 import edu.wpi.first.math.geometry.*;
 import edu.wpi.first.math.util.Units;
 import org.photonvision.PhotonPoseEstimator.PoseStrategy;
 
 public final class Constants {
     public static final double kLoopPeriodSeconds = 0.02;
+    public static final boolean kRunPhasesInParallel = true;
 
     public static final class Controls {
         public static final double kDriverDeadband = 0.09;
@@ -31,6 +34,13 @@ public final class Constants {
         protected static final double kMk4iSteerReduction = 7.0 / 150.0;
 
         public static final double kOdometryFrequency = 250.0;
+        public static final int kDriveCurrentLimitAmps = 80;
+        public static final int kSteerCurrentLimitAmps = 30;
+        public static final double kSimulationFrequency = 1000.0;
+        public static final double kSimulationMassKg = 50.0;
+        public static final double kSimulationMoiKgMetersSquared = 5.0;
+        public static final double kSimulationDriveInertiaKgMetersSquared = 0.025;
+        public static final double kSimulationSteerInertiaKgMetersSquared = 0.004;
         public static final double kTrackWidthMeters;
         public static final double kWheelbaseMeters;
         public static final double kModuleRadius;
@@ -158,6 +168,10 @@ public final class Constants {
     }
 
     public static final class Vision {
+        // Parsed once at startup and shared by every camera, filter and solver
+        public static final AprilTagFieldGeometry kFieldGeometry =
+                new AprilTagFieldGeometry(AprilTagFields.kDefaultField.loadAprilTagLayoutField());
+
         public static final String kFrontLeftCameraName = "CameraFL";
         public static final Transform3d kRobotToFrontLeftCamPose =
                 new Transform3d(new Translation3d(0.3, 0.3, 0.2), new Rotation3d(0, 0, Units.degreesToRadians(45)));
@@ -175,7 +189,15 @@ public final class Constants {
                 new Transform3d(new Translation3d(-0.3, -0.3, 0.2), new Rotation3d(0, 0, Units.degreesToRadians(-135)));
 
         public static final double kMaxPoseAmbiguity = 0.03;
+        public static final double kMaxPipelineLatencySeconds = 0.15;
         public static final PoseStrategy kPoseStrategy = PoseStrategy.MULTI_TAG_PNP_ON_COPROCESSOR;
         public static final PoseStrategy kFallbackPoseStrategy = PoseStrategy.LOWEST_AMBIGUITY;
+
+        public static final boolean kUseJointPoseSolver = false;
+        public static final double kJointSolverMaxTimestampSkewSeconds = 0.02;
+        public static final double kJointSolverTimeBudgetSeconds = 0.002;
+        public static final int kJointSolverMaxIterations = 10;
+        public static final double kJointSolverHuberThresholdPixels = 2.0;
+        public static final double kJointSolverMaxReprojectionErrorPixels = 4.0;
     }
 }
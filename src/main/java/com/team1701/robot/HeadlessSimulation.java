@@ -0,0 +1,360 @@
+package com.team1701.robot;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+import com.sun.management.ThreadMXBean;
+import com.team1701.lib.swerve.SwerveDrivetrainSim;
+import com.team1701.lib.util.LoggedTunableNumber;
+import com.team1701.robot.Configuration.SimulationParameters;
+import com.team1701.robot.estimation.PoseEstimator;
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Runs the simulation robot without a driver station or dashboard, with the HAL clock paused and advanced by one loop
+ * period after each robot cycle. Cycles run back-to-back as fast as the robot code allows, so autonomous routines can
+ * be evaluated and controllers tuned much faster than real time, including from a unit test.
+ *
+ * <p>The robot runs on its own thread, in lockstep with the caller: {@link #step(int)} returns once the requested
+ * cycles have run, and everything else must be called between steps. Notifier threads, such as odometry sampling and
+ * any loops registered with the robot's loop runner, still run at their periods in simulated time. Camera simulation
+ * is skipped unless the {@link SimulationParameters} enable it, and nothing is published to NetworkTables. Nothing is
+ * logged either, unless the {@link Configuration#kHeadlessLogProperty} system property names a log file.
+ *
+ * <p>The HAL and command scheduler live for the lifetime of the JVM, so only one headless simulation can be started
+ * per process, even after it is closed. It must be started before anything loads {@link Configuration}. Tools run
+ * each simulation in a child JVM, and the test task forks a JVM for each test class, so a test class can start one
+ * simulation and share it between its tests.
+ */
+public final class HeadlessSimulation implements AutoCloseable {
+    private static boolean mStarted = false;
+
+    private final Semaphore mStepRequests = new Semaphore(0);
+    private final Semaphore mStepsDone = new Semaphore(0);
+    private final CountDownLatch mReady = new CountDownLatch(1);
+    private final Thread mRobotThread;
+    private volatile boolean mClosed = false;
+    private volatile Throwable mFailure;
+    private RobotContainer mRobotContainer;
+    private long mCycleCount = 0;
+    private long mLastCycleNanos = 0;
+    private long mLastCycleAllocatedBytes = 0;
+
+    private HeadlessSimulation() {
+        mRobotThread = new Thread(this::runRobot, "HeadlessRobot");
+        mRobotThread.setDaemon(true);
+    }
+
+    /** Result of an autonomous run, with the poses at the end of the run. */
+    public static record AutonomousResult(
+            boolean completed, double durationSeconds, Pose2d truePose, Pose2d estimatedPose) {
+        public double translationErrorMeters() {
+            return truePose.getTranslation().getDistance(estimatedPose.getTranslation());
+        }
+
+        public double rotationErrorRadians() {
+            return Math.abs(truePose.getRotation().minus(estimatedPose.getRotation()).getRadians());
+        }
+    }
+
+    /** Starts the simulation robot with the default parameters. */
+    public static HeadlessSimulation start() {
+        return start(SimulationParameters.kDefault);
+    }
+
+    /** Starts the simulation robot, disabled, and returns once it has been initialized. */
+    public static synchronized HeadlessSimulation start(SimulationParameters parameters) {
+        if (mStarted) {
+            throw new IllegalStateException(
+                    "Only one headless simulation can be started per process, start each in its own JVM");
+        }
+
+        mStarted = true;
+        System.setProperty(Configuration.kHeadlessProperty, "true");
+        System.setProperty(Configuration.kRobotProperty, Configuration.RobotType.SIMULATION_BOT.name());
+        if (!Configuration.isHeadless()) {
+            throw new IllegalStateException("Configuration was loaded before the headless simulation started");
+        }
+
+        Configuration.setSimulationParameters(parameters);
+
+        if (!HAL.initialize(500, 0)) {
+            throw new IllegalStateException("Failed to initialize the HAL");
+        }
+
+        SimHooks.pauseTiming();
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+        DriverStationSim.notifyNewData();
+
+        var simulation = new HeadlessSimulation();
+        simulation.mRobotThread.start();
+        try {
+            simulation.mReady.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while starting the headless simulation", e);
+        }
+
+        simulation.checkFailure();
+        return simulation;
+    }
+
+    private void runRobot() {
+        try {
+            new SteppedRobot().startCompetition();
+        } catch (StoppedException e) {
+            // Closed between cycles
+        } catch (Throwable t) {
+            mFailure = t;
+        } finally {
+            mReady.countDown();
+            mStepsDone.release();
+        }
+    }
+
+    private void checkFailure() {
+        if (mFailure != null) {
+            throw new IllegalStateException("Headless robot failed", mFailure);
+        }
+    }
+
+    public RobotContainer getRobotContainer() {
+        return mRobotContainer;
+    }
+
+    private PoseEstimator getPoseEstimator() {
+        return mRobotContainer.getContext().getPoseEstimator();
+    }
+
+    /** Returns the simulated time in seconds since the simulation started. */
+    public double getTimeSeconds() {
+        return mCycleCount * Constants.kLoopPeriodSeconds;
+    }
+
+    public void disable() {
+        setControlWord(false, false);
+    }
+
+    public void enableAutonomous() {
+        setControlWord(true, true);
+    }
+
+    public void enableTeleop() {
+        setControlWord(true, false);
+    }
+
+    private void setControlWord(boolean enabled, boolean autonomous) {
+        DriverStationSim.setAutonomous(autonomous);
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.notifyNewData();
+    }
+
+    /** Places the robot at the pose, both in the drivetrain simulation and in the pose estimator. */
+    public void setPose(Pose2d pose) {
+        mRobotContainer.getDrivetrainSim().ifPresent(sim -> sim.setPose(pose));
+        getPoseEstimator().setPose(pose);
+    }
+
+    /** Returns the true pose of the simulated robot. */
+    public Pose2d getTruePose() {
+        return mRobotContainer
+                .getDrivetrainSim()
+                .map(SwerveDrivetrainSim::getPose)
+                .orElseGet(getPoseEstimator()::getPose2d);
+    }
+
+    /**
+     * Sets a tunable number as if it were changed on the dashboard. Tunable numbers are polled rather than listened for
+     * in headless simulations, so the value is read on the next cycle.
+     */
+    public void setTunableNumber(String dashboardKey, double value) {
+        LoggedTunableNumber.publish(dashboardKey, value);
+    }
+
+    public void schedule(Command command) {
+        CommandScheduler.getInstance().schedule(command);
+    }
+
+    /** Runs robot cycles until the command finishes or the timeout elapses, and returns true if it finished. */
+    public boolean runUntilFinished(Command command, double timeoutSeconds) {
+        var endTime = getTimeSeconds() + timeoutSeconds;
+        schedule(command);
+        while (getTimeSeconds() < endTime) {
+            step(1);
+            if (!command.isScheduled()) {
+                return true;
+            }
+        }
+
+        command.cancel();
+        return false;
+    }
+
+    /**
+     * Enables the selected autonomous routine and runs it until it finishes or the timeout elapses, then disables the
+     * robot.
+     *
+     * @param timeoutSeconds Maximum duration of the run
+     * @param placementError Offset of where the robot is placed from the routine's starting pose
+     */
+    public AutonomousResult runAutonomous(double timeoutSeconds, Transform2d placementError) {
+        var command = mRobotContainer.getAutonomousCommand();
+        var startTime = getTimeSeconds();
+        enableAutonomous();
+        step(1);
+
+        // Routines reset the estimated pose to their starting pose on their first cycle, which is where the robot
+        // would have been placed on the field
+        var startingPose = getPoseEstimator().getPose2d().plus(placementError);
+        mRobotContainer.getDrivetrainSim().ifPresent(sim -> sim.setPose(startingPose));
+
+        while (getTimeSeconds() - startTime < timeoutSeconds && command.map(Command::isScheduled).orElse(false)) {
+            step(1);
+        }
+
+        var result = new AutonomousResult(
+                command.map(c -> !c.isScheduled()).orElse(false),
+                getTimeSeconds() - startTime,
+                getTruePose(),
+                getPoseEstimator().getPose2d());
+        disable();
+        step(1);
+        return result;
+    }
+
+    /**
+     * Returns the wall time the robot thread spent on the last cycle, including AdvantageKit's logging but not the
+     * simulated clock step or the wait for the next step.
+     */
+    public long getLastCycleNanos() {
+        return mLastCycleNanos;
+    }
+
+    /**
+     * Returns the bytes allocated over the same span as {@link #getLastCycleNanos()} by the robot thread and the phase
+     * executor's worker thread, which only runs while the robot thread waits for it.
+     */
+    public long getLastCycleAllocatedBytes() {
+        return mLastCycleAllocatedBytes;
+    }
+
+    /** Runs robot cycles covering the duration. */
+    public void run(double seconds) {
+        step((int) Math.round(seconds / Constants.kLoopPeriodSeconds));
+    }
+
+    /** Runs the number of robot cycles, advancing the clock by one loop period after each. */
+    public void step(int cycles) {
+        if (mClosed) {
+            throw new IllegalStateException("Headless simulation is closed");
+        }
+
+        checkFailure();
+        for (var i = 0; i < cycles; i++) {
+            mStepRequests.release();
+            mStepsDone.acquireUninterruptibly();
+            checkFailure();
+            mCycleCount++;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+        mStepRequests.release();
+        try {
+            mRobotThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (mRobotContainer != null) {
+            mRobotContainer.close();
+        }
+
+        // Flushes the log, if there is one
+        Logger.end();
+
+        SimHooks.resumeTiming();
+    }
+
+    private class SteppedRobot extends Robot {
+        private final ThreadMXBean mThreadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private long mSpanStartNanos = -1;
+        private long mSpanStartBytes;
+        private long mCycleNanos = 0;
+        private long mCycleBytes = 0;
+        private long mWorkerThreadId = -1;
+
+        @Override
+        public void simulationInit() {
+            super.simulationInit();
+            var robotContainer = getRobotContainer();
+            HeadlessSimulation.this.mRobotContainer = robotContainer;
+            mWorkerThreadId = robotContainer.getPhaseExecutor().getWorkerThread().map(Thread::getId).orElse(-1L);
+            mReady.countDown();
+        }
+
+        @Override
+        protected void loopFunc() {
+            // AdvantageKit logs between calls, so a cycle's cost is its user code plus the logging after the last step
+            endSpan();
+            mStepRequests.acquireUninterruptibly();
+            if (mClosed) {
+                throw new StoppedException();
+            }
+
+            startSpan();
+            super.loopFunc();
+            endSpan();
+            mLastCycleNanos = mCycleNanos;
+            mLastCycleAllocatedBytes = mCycleBytes;
+            mCycleNanos = 0;
+            mCycleBytes = 0;
+
+            SimHooks.stepTiming(Constants.kLoopPeriodSeconds);
+            mStepsDone.release();
+            startSpan();
+        }
+
+        private void startSpan() {
+            mSpanStartBytes = getAllocatedBytes();
+            mSpanStartNanos = System.nanoTime();
+        }
+
+        private void endSpan() {
+            if (mSpanStartNanos < 0) {
+                return;
+            }
+
+            mCycleNanos += System.nanoTime() - mSpanStartNanos;
+            mCycleBytes += getAllocatedBytes() - mSpanStartBytes;
+            mSpanStartNanos = -1;
+        }
+
+        private long getAllocatedBytes() {
+            var bytes = mThreadBean.getCurrentThreadAllocatedBytes();
+            if (mWorkerThreadId >= 0) {
+                bytes += Math.max(0, mThreadBean.getThreadAllocatedBytes(mWorkerThreadId));
+            }
+
+            return bytes;
+        }
+    }
+
+    private static class StoppedException extends RuntimeException {}
+}
@@ -6,28 +6,74 @@ package com.team1701.robot;
 
 import java.util.Optional;
 
-import com.team1701.lib.commands.CommandLogger;
+import com.team1701.lib.logging.BufferedWPILOGWriter;
+import com.team1701.lib.logging.BufferedWPILOGWriter.OverflowPolicy;
+import com.team1701.lib.logging.MappedWPILOGReplaySource;
+import com.team1701.lib.logging.RateLimitedNT4Publisher;
+import com.team1701.lib.profiling.LoopProfiler;
+import com.team1701.lib.profiling.OverrunGovernor;
+import com.team1701.lib.util.LoggedTunableNumber;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
 import com.team1701.robot.Configuration.Mode;
+import com.team1701.robot.loops.LoopRunner;
 import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.simulation.DriverStationSim;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Commands;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
 import org.littletonrobotics.junction.networktables.NT4Publisher;
-import org.littletonrobotics.junction.wpilog.WPILOGReader;
 import org.littletonrobotics.junction.wpilog.WPILOGWriter;
 
 public class Robot extends LoggedRobot {
+    private static final int kLogBufferBytes = 8 * 1024 * 1024;
+
     private RobotContainer mRobotContainer;
     private Optional<Command> mAutonomousCommand = Optional.empty();
+    private Optional<BufferedWPILOGWriter> mLogWriter = Optional.empty();
+
+    private final LoopRunner mLoopRunner = new LoopRunner("Robot");
+    private final LoopProfiler mLoopProfiler = LoopProfiler.getInstance();
+    private final LoopProfiler.Section mSchedulerSection = mLoopProfiler.section("Scheduler");
+    private final LoopProfiler.Section mCommandLoggerSection = mLoopProfiler.section("CommandLogger");
+    private final LoopProfiler.Section mDashboardSection = mLoopProfiler.section("Dashboard");
+    private final OverrunGovernor mOverrunGovernor = new OverrunGovernor(mLoopProfiler, LoggedRobot.defaultPeriodSecs);
+    private boolean mDashboardShed = false;
 
     @Override
     public void robotInit() {
         initializeAdvantageKit();
-        mRobotContainer = new RobotContainer();
+        mRobotContainer = new RobotContainer(RobotContext.getDefault());
+
+        // Shed from least to most important when the loop overruns
+        mOverrunGovernor.addStage("Logging", shed -> LoggingUtil.setMaxLevel(shed ? Level.MATCH : Level.VERBOSE));
+        mOverrunGovernor.addStage("DuplicateFrames", mRobotContainer.mVision::setSkipDuplicateFrames);
+        mOverrunGovernor.addStage("TunableNumbers", LoggedTunableNumber::pausePolling);
+        mOverrunGovernor.addStage("Dashboard", shed -> mDashboardShed = shed);
+
+        mLoopRunner.start();
+        mLoopProfiler.install();
+        SmartDashboard.putData(
+                "DumpWorstLoopCycle",
+                Commands.runOnce(mLoopProfiler::dumpWorstCycle)
+                        .ignoringDisable(true)
+                        .withName("DumpWorstLoopCycle"));
+    }
+
+    @Override
+    protected void loopFunc() {
+        mLoopProfiler.startCycle();
+        super.loopFunc();
+        mLoopProfiler.endCycle();
+    }
+
+    RobotContainer getRobotContainer() {
+        return mRobotContainer;
     }
 
     private void initializeAdvantageKit() {
@@ -53,21 +99,34 @@ public class Robot extends LoggedRobot {
         // Set up data receivers & replay source
         switch (Configuration.getMode()) {
             case REAL:
-                Logger.addDataReceiver(new WPILOGWriter("/media/sda1/"));
-                Logger.addDataReceiver(new NT4Publisher());
+                // Dropping log data is preferable to backing up the logger when the USB stick stalls
+                var logWriter = new BufferedWPILOGWriter("/media/sda1/", kLogBufferBytes, OverflowPolicy.DROP_OLDEST);
+                mLogWriter = Optional.of(logWriter);
+                Logger.addDataReceiver(logWriter);
+                Logger.addDataReceiver(createTelemetryPublisher());
                 break;
             case SIMULATION:
-                Logger.addDataReceiver(new NT4Publisher());
+                if (Configuration.isHeadless()) {
+                    // Headless runs are not watched live, and without a server several can run side by side
+                    NetworkTableInstance.getDefault().stopServer();
+                    Configuration.getHeadlessLogPath()
+                            .ifPresent(path -> Logger.addDataReceiver(new WPILOGWriter(path)));
+                } else {
+                    Logger.addDataReceiver(new NT4Publisher());
+                }
                 break;
             case REPLAY:
                 var logPath = LogFileUtil.findReplayLog();
-                Logger.setReplaySource(new WPILOGReader(logPath));
+                Logger.setReplaySource(new MappedWPILOGReplaySource(logPath));
                 Logger.addDataReceiver(new WPILOGWriter(LogFileUtil.addPathSuffix(logPath, "_sim")));
+
+                // Replay outputs only go to the log, and without a server several replays can run side by side
+                NetworkTableInstance.getDefault().stopServer();
                 break;
         }
 
         // Start AdvantageKit logger
-        setUseTiming(Configuration.getMode() != Mode.REPLAY);
+        setUseTiming(Configuration.getMode() != Mode.REPLAY && !Configuration.isHeadless());
         Logger.start();
 
         // Default to blue alliance in sim
@@ -76,11 +135,44 @@ public class Robot extends LoggedRobot {
         }
     }
 
+    // Only what is watched live is published over the radio; the log file still receives everything
+    private static RateLimitedNT4Publisher createTelemetryPublisher() {
+        return new RateLimitedNT4Publisher()
+                .withRate("RealOutputs/PoseEstimator/", 50.0)
+                .withRate("RealOutputs/Drive/", 50.0)
+                .withRate("RealOutputs/Command/", 10.0)
+                .withRate("RealOutputs/Vision/", 10.0)
+                .withRate("RealOutputs/Camera/", 10.0)
+                .withRate("RealOutputs/LoopProfiler/", 5.0)
+                .withRate("RealOutputs/Looper/", 5.0)
+                .withRate("RealOutputs/OverrunGovernor/", 5.0)
+                .withRate("DriverStation/", 10.0)
+                .withRate("SystemStats/", 5.0)
+                .withRate("PowerDistribution/", 5.0);
+    }
+
     @Override
     public void robotPeriodic() {
+        mOverrunGovernor.periodic();
+        LoggedTunableNumber.refreshAll();
+
+        mSchedulerSection.start();
         CommandScheduler.getInstance().run();
-        CommandLogger.getInstance().periodic();
-        SmartDashboard.putData(CommandScheduler.getInstance());
+        mSchedulerSection.stop();
+
+        mCommandLoggerSection.start();
+        mRobotContainer.getContext().getCommandLogger().periodic();
+        mCommandLoggerSection.stop();
+
+        mRobotContainer.getContext().getAlerts().pollTriggered();
+        mLogWriter.ifPresent(BufferedWPILOGWriter::outputTelemetry);
+
+        if (!mDashboardShed) {
+            mDashboardSection.start();
+            SmartDashboard.putData(CommandScheduler.getInstance());
+            mLoopRunner.outputTelemetry();
+            mDashboardSection.stop();
+        }
     }
 
     @Override
@@ -119,5 +211,7 @@ public class Robot extends LoggedRobot {
     public void simulationInit() {}
 
     @Override
-    public void simulationPeriodic() {}
+    public void simulationPeriodic() {
+        mRobotContainer.simulationPeriodic();
+    }
 }
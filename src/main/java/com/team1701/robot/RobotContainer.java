@@ -1,6 +1,7 @@
 package com.team1701.robot;
 
 import java.util.Optional;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import com.pathplanner.lib.auto.AutoBuilder;
@@ -12,12 +13,14 @@ import com.team1701.lib.drivers.encoders.EncoderIO;
 import com.team1701.lib.drivers.encoders.EncoderIOAnalog;
 import com.team1701.lib.drivers.gyros.GyroIO;
 import com.team1701.lib.drivers.gyros.GyroIOPigeon2;
-import com.team1701.lib.drivers.gyros.GyroIOSim;
 import com.team1701.lib.drivers.motors.MotorIO;
+import com.team1701.lib.swerve.SwerveDrivetrainSim;
 import com.team1701.lib.util.GeometryUtil;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
 import com.team1701.robot.Configuration.Mode;
 import com.team1701.robot.commands.AutonomousCommands;
-import com.team1701.robot.estimation.PoseEstimator;
+import com.team1701.robot.loops.PhaseExecutor;
 import com.team1701.robot.subsystems.drive.Drive;
 import com.team1701.robot.subsystems.drive.DriveMotorFactory;
 import com.team1701.robot.subsystems.drive.SwerveModule.SwerveModuleIO;
@@ -29,27 +32,30 @@ import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.button.CommandXboxController;
 import edu.wpi.first.wpilibj2.command.button.Trigger;
-import org.littletonrobotics.junction.Logger;
 import org.littletonrobotics.junction.networktables.LoggedDashboardChooser;
 
 import static com.team1701.robot.commands.DriveCommands.*;
 import static edu.wpi.first.wpilibj2.command.Commands.*;
 
 public class RobotContainer {
+    private final RobotContext mContext;
     public final Drive mDrive;
     public final Vision mVision;
+    private final PhaseExecutor mPhaseExecutor;
+    private Optional<SwerveDrivetrainSim> mDrivetrainSim = Optional.empty();
 
     private final CommandXboxController mDriverController = new CommandXboxController(0);
     private final LoggedDashboardChooser<Command> autonomousModeChooser = new LoggedDashboardChooser<>("Auto Mode");
 
-    public RobotContainer() {
+    public RobotContainer(RobotContext context) {
+        mContext = context;
         Optional<Drive> drive = Optional.empty();
         Optional<Vision> vision = Optional.empty();
 
         if (Configuration.getMode() != Mode.REPLAY) {
             switch (Configuration.getRobot()) {
                 case SWERVE_BOT:
-                    drive = Optional.of(new Drive(new GyroIOPigeon2(10), new SwerveModuleIO[] {
+                    drive = Optional.of(new Drive(context, new GyroIOPigeon2(10), new SwerveModuleIO[] {
                         new SwerveModuleIO(
                                 DriveMotorFactory.createDriveMotorIOSparkMax(10),
                                 DriveMotorFactory.createSteerMotorIOSparkMax(11),
@@ -69,22 +75,45 @@ public class RobotContainer {
                     }));
                     break;
                 case SIMULATION_BOT:
-                    var gyroIO = new GyroIOSim(
-                            () -> PoseEstimator.getInstance().getPose2d().getRotation());
-                    var simDrive = new Drive(
-                            gyroIO,
-                            Stream.generate(() -> SwerveModuleIO.createSim(DCMotor.getKrakenX60(1), DCMotor.getNEO(1)))
-                                    .limit(Constants.Drive.kNumModules)
-                                    .toArray(SwerveModuleIO[]::new));
-                    gyroIO.setYawSupplier(
-                            () -> simDrive.getVelocity().omegaRadiansPerSecond, Constants.kLoopPeriodSeconds);
-                    drive = Optional.of(simDrive);
+                    var simulationParameters = Configuration.getSimulationParameters();
+                    var drivetrainSim = new SwerveDrivetrainSim(
+                            new SwerveDrivetrainSim.Config(
+                                    Constants.Drive.kKinematics.getModuleLocations(),
+                                    DCMotor.getKrakenX60(1),
+                                    DCMotor.getNEO(1),
+                                    Constants.Drive.kDriveReduction,
+                                    Constants.Drive.kSteerReduction,
+                                    Constants.Drive.kWheelRadiusMeters,
+                                    Constants.Drive.kSimulationDriveInertiaKgMetersSquared,
+                                    Constants.Drive.kSimulationSteerInertiaKgMetersSquared,
+                                    Constants.Drive.kDriveCurrentLimitAmps,
+                                    Constants.Drive.kSteerCurrentLimitAmps,
+                                    Constants.Drive.kSimulationMassKg,
+                                    Constants.Drive.kSimulationMoiKgMetersSquared,
+                                    simulationParameters.wheelCoefficientOfFriction()),
+                            Constants.Drive.kSimulationFrequency,
+                            Constants.Drive.kOdometryFrequency,
+                            simulationParameters.seed());
+                    drivetrainSim.setSensorNoise(
+                            simulationParameters.wheelPositionNoiseRadians(),
+                            simulationParameters.gyroYawNoiseRadians());
+                    drive = Optional.of(new Drive(
+                            context,
+                            drivetrainSim.getGyroIO(),
+                            IntStream.range(0, Constants.Drive.kNumModules)
+                                    .mapToObj(i -> new SwerveModuleIO(
+                                            drivetrainSim.getDriveMotorIO(i),
+                                            drivetrainSim.getSteerMotorIO(i),
+                                            drivetrainSim.getSteerEncoderIO(i)))
+                                    .toArray(SwerveModuleIO[]::new)));
+                    mDrivetrainSim = Optional.of(drivetrainSim);
                     break;
                 default:
                     break;
             }
 
             vision = Optional.of(new Vision(
+                    context,
                     new AprilTagCameraIOPhotonCamera(Constants.Vision.kFrontLeftCameraName),
                     new AprilTagCameraIOPhotonCamera(Constants.Vision.kFrontRightCameraName),
                     new AprilTagCameraIOPhotonCamera(Constants.Vision.kBackLeftCameraName),
@@ -92,17 +121,25 @@ public class RobotContainer {
         }
 
         this.mDrive = drive.orElseGet(() -> new Drive(
+                context,
                 new GyroIO() {},
                 Stream.generate(() -> new SwerveModuleIO(new MotorIO() {}, new MotorIO() {}, new EncoderIO() {}))
                         .limit(Constants.Drive.kNumModules)
                         .toArray(SwerveModuleIO[]::new)));
 
         this.mVision = vision.orElseGet(() -> new Vision(
+                context,
                 new AprilTagCameraIO() {},
                 new AprilTagCameraIO() {},
                 new AprilTagCameraIO() {},
                 new AprilTagCameraIO() {}));
 
+        mDrivetrainSim.ifPresent(sim -> mVision.setSimPoseSupplier(sim::getPose));
+
+        mPhaseExecutor = new PhaseExecutor(Constants.kRunPhasesInParallel);
+        mDrive.registerPhases(mPhaseExecutor);
+        mVision.registerPhases(mPhaseExecutor);
+
         setupControllerBindings();
         setupAutonomous();
         setupStateTriggers();
@@ -110,6 +147,7 @@ public class RobotContainer {
 
     private void setupControllerBindings() {
         TriggeredAlert.error(
+                mContext.getAlerts(),
                 "Driver controller disconnected",
                 () -> !DriverStation.isJoystickConnected(
                                 mDriverController.getHID().getPort())
@@ -132,13 +170,13 @@ public class RobotContainer {
                                         : GeometryUtil.kRotationPi))
                         .withName("ZeroGyroscopeToHeading"));
         mDriverController.leftTrigger().whileTrue(swerveLock(mDrive));
-        TriggeredAlert.info("Driver right bumper pressed", mDriverController.rightBumper());
+        TriggeredAlert.info(mContext.getAlerts(), "Driver right bumper pressed", mDriverController.rightBumper());
 
         DriverStation.silenceJoystickConnectionWarning(true);
     }
 
     private void setupAutonomous() {
-        var poseEstimator = PoseEstimator.getInstance();
+        var poseEstimator = mContext.getPoseEstimator();
         AutoBuilder.configureHolonomic(
                 poseEstimator::getPose2d,
                 poseEstimator::setPose,
@@ -147,22 +185,45 @@ public class RobotContainer {
                 Constants.Drive.kPathFollowerConfig,
                 mDrive);
 
-        PathPlannerLogging.setLogTargetPoseCallback(pose -> Logger.recordOutput("PathPlanner/TargetPose", pose));
+        var targetPoseKey = LoggingUtil.key("PathPlanner/TargetPose", Level.MATCH);
+        var pathKey = LoggingUtil.key("PathPlanner/Path", Level.DEBUG);
+        PathPlannerLogging.setLogTargetPoseCallback(pose -> LoggingUtil.record(targetPoseKey, pose));
         PathPlannerLogging.setLogActivePathCallback(
-                poses -> Logger.recordOutput("PathPlanner/Path", poses.toArray(Pose2d[]::new)));
+                poses -> LoggingUtil.recordArray(pathKey, () -> poses.toArray(Pose2d[]::new)));
 
-        var commands = new AutonomousCommands(mDrive);
+        var commands = new AutonomousCommands(mContext, mDrive);
         autonomousModeChooser.addDefaultOption("Demo", commands.demo());
     }
 
     private void setupStateTriggers() {
         var teleopTrigger = new Trigger(DriverStation::isTeleopEnabled);
         teleopTrigger.onTrue(runOnce(() -> mDrive.zeroGyroscope(
-                        PoseEstimator.getInstance().getPose2d().getRotation()))
+                        mContext.getPoseEstimator().getPose2d().getRotation()))
                 .withName("ZeroGyroscopeToPose"));
     }
 
+    public RobotContext getContext() {
+        return mContext;
+    }
+
+    PhaseExecutor getPhaseExecutor() {
+        return mPhaseExecutor;
+    }
+
     public Optional<Command> getAutonomousCommand() {
         return Optional.ofNullable(autonomousModeChooser.get());
     }
+
+    public Optional<SwerveDrivetrainSim> getDrivetrainSim() {
+        return mDrivetrainSim;
+    }
+
+    public void simulationPeriodic() {
+        mDrivetrainSim.ifPresent(sim -> sim.update(Constants.kLoopPeriodSeconds));
+    }
+
+    /** Stops the threads owned by the subsystems. The robot must not run any more cycles. */
+    public void close() {
+        mVision.close();
+    }
 }
@@ -0,0 +1,55 @@
+package com.team1701.robot;
+
+import com.team1701.lib.alerts.AlertGroup;
+import com.team1701.lib.commands.CommandLogger;
+import com.team1701.robot.estimation.PoseEstimator;
+
+/**
+ * Per-robot state shared by the subsystems and commands of one robot. It is passed down from {@link RobotContainer}
+ * rather than reached through singletons, so that several robots can be built in one JVM. The deployed robot uses
+ * {@link #getDefault()}, which shares the command logger and alerts with the library defaults. Only the default
+ * command logger is registered with the command scheduler; a context with its own logger logs only the commands it
+ * wraps with {@code LoggedCommands}.
+ *
+ * <p>The command scheduler, HAL and AdvantageKit logger are still global, so robots in one JVM must not run cycles at
+ * the same time. The loop profiler, logging levels and key table, and tunable numbers are also shared by the JVM, so
+ * robots in one JVM share their profiling, logging configuration and tuning.
+ */
+public final class RobotContext {
+    private static RobotContext mDefault = null;
+
+    private final PoseEstimator mPoseEstimator;
+    private final CommandLogger mCommandLogger;
+    private final AlertGroup mAlerts;
+
+    public static RobotContext getDefault() {
+        if (mDefault == null) {
+            synchronized (RobotContext.class) {
+                if (mDefault == null) {
+                    mDefault = new RobotContext(
+                            new PoseEstimator(), CommandLogger.getInstance(), AlertGroup.getDefault());
+                }
+            }
+        }
+
+        return mDefault;
+    }
+
+    public RobotContext(PoseEstimator poseEstimator, CommandLogger commandLogger, AlertGroup alerts) {
+        mPoseEstimator = poseEstimator;
+        mCommandLogger = commandLogger;
+        mAlerts = alerts;
+    }
+
+    public PoseEstimator getPoseEstimator() {
+        return mPoseEstimator;
+    }
+
+    public CommandLogger getCommandLogger() {
+        return mCommandLogger;
+    }
+
+    public AlertGroup getAlerts() {
+        return mAlerts;
+    }
+}
@@ -6,7 +6,7 @@ import com.pathplanner.lib.path.PathPlannerPath;
 import com.team1701.lib.swerve.SwerveSetpointGenerator.KinematicLimits;
 import com.team1701.lib.util.GeometryUtil;
 import com.team1701.robot.Constants;
-import com.team1701.robot.estimation.PoseEstimator;
+import com.team1701.robot.RobotContext;
 import com.team1701.robot.subsystems.drive.Drive;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -16,16 +16,18 @@ import static com.team1701.lib.commands.LoggedCommands.*;
 import static edu.wpi.first.wpilibj2.command.Commands.*;
 
 public class AutonomousCommands {
+    private final RobotContext mContext;
     private final Drive mDrive;
 
-    public AutonomousCommands(Drive drive) {
+    public AutonomousCommands(RobotContext context, Drive drive) {
+        mContext = context;
         mDrive = drive;
 
         NamedCommands.registerCommand("printHello", print("Hello from autonomous path"));
     }
 
     private Command resetPose(Pose2d pose) {
-        return runOnce(() -> PoseEstimator.getInstance().setPose(pose)).withName("ResetPose");
+        return runOnce(() -> mContext.getPoseEstimator().setPose(pose)).withName("ResetPose");
     }
 
     private Command driveToPose(Pose2d pose) {
@@ -41,7 +43,7 @@ public class AutonomousCommands {
     }
 
     private Command driveToPose(Pose2d pose, KinematicLimits kinematicLimits, boolean finishAtPose) {
-        return DriveCommands.driveToPose(mDrive, pose, kinematicLimits, finishAtPose);
+        return DriveCommands.driveToPose(mContext, mDrive, pose, kinematicLimits, finishAtPose);
     }
 
     private Command followPath(String pathName) {
@@ -65,6 +67,7 @@ public class AutonomousCommands {
 
     public Command demo() {
         return loggedSequence(
+                        mContext.getCommandLogger(),
                         print("Starting demo"),
                         followPath("demo1", true),
                         driveToPose(new Pose2d(2.0, 1.0, Rotation2d.fromRadians(-Math.PI * 2.0 / 3.0))),
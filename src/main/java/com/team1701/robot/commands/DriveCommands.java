@@ -4,6 +4,7 @@ import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 
 import com.team1701.lib.swerve.SwerveSetpointGenerator.KinematicLimits;
+import com.team1701.robot.RobotContext;
 import com.team1701.robot.subsystems.drive.Drive;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.wpilibj2.command.Command;
@@ -20,8 +21,8 @@ public class DriveCommands {
     }
 
     public static DriveToPose driveToPose(
-            Drive drive, Pose2d pose, KinematicLimits kinematicLimits, boolean finishAtPose) {
-        return new DriveToPose(drive, pose, kinematicLimits, finishAtPose);
+            RobotContext context, Drive drive, Pose2d pose, KinematicLimits kinematicLimits, boolean finishAtPose) {
+        return new DriveToPose(drive, context.getPoseEstimator(), pose, kinematicLimits, finishAtPose);
     }
 
     public static Command swerveLock(Drive drive) {
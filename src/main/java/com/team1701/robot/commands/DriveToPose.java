@@ -3,6 +3,9 @@ package com.team1701.robot.commands;
 import com.team1701.lib.swerve.SwerveSetpointGenerator.KinematicLimits;
 import com.team1701.lib.util.GeometryUtil;
 import com.team1701.lib.util.LoggedTunableNumber;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
 import com.team1701.lib.util.Util;
 import com.team1701.robot.Constants;
 import com.team1701.robot.estimation.PoseEstimator;
@@ -15,10 +18,14 @@ import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj2.command.Command;
-import org.littletonrobotics.junction.Logger;
 
 public class DriveToPose extends Command {
     private static final String kLoggingPrefix = "Command/DriveToPose/";
+    private static final LogKey kTranslationErrorKey =
+            LoggingUtil.key(kLoggingPrefix + "TranslationError", Level.DEBUG);
+    private static final LogKey kRotationErrorKey = LoggingUtil.key(kLoggingPrefix + "RotationError", Level.DEBUG);
+    private static final LogKey kSetpointKey = LoggingUtil.key(kLoggingPrefix + "Setpoint", Level.DEBUG);
+    private static final LogKey kTargetPoseKey = LoggingUtil.key(kLoggingPrefix + "TargetPose", Level.MATCH);
     private static final double kModuleRadius = Constants.Drive.kModuleRadius;
     private static final KinematicLimits kMaxKinematicLimits = Constants.Drive.kFastTrapezoidalKinematicLimits;
     private static final LoggedTunableNumber kMaxVelocity =
@@ -42,8 +49,21 @@ public class DriveToPose extends Command {
             new LoggedTunableNumber(kLoggingPrefix + "TranslationToleranceMeters", 0.01);
     private static final LoggedTunableNumber kRotationToleranceRadians =
             new LoggedTunableNumber(kLoggingPrefix + "RotationToleranceRadians", 0.01);
+    private static final LoggedTunableNumber[] kProfileTunables = new LoggedTunableNumber[] {
+        kMaxVelocity,
+        kMaxAcceleration,
+        kMaxAngularVelocity,
+        kMaxAngularAcceleration,
+        kTranslationKp,
+        kTranslationKi,
+        kTranslationKd,
+        kRotationKp,
+        kRotationKi,
+        kRotationKd
+    };
 
     private final Drive mDrive;
+    private final PoseEstimator mPoseEstimator;
     private final Pose2d mTargetPose;
     private final KinematicLimits mKinematicLimits;
     private final boolean mFinishAtPose;
@@ -55,32 +75,56 @@ public class DriveToPose extends Command {
     private TrapezoidProfile mRotationProfile;
     private TrapezoidProfile.State mTranslationState = new TrapezoidProfile.State();
     private TrapezoidProfile.State mRotationState = new TrapezoidProfile.State();
-
-    DriveToPose(Drive drive, Pose2d pose, KinematicLimits kinematicLimits, boolean finishAtPose) {
+    private int mTunableVersion;
+    private LoggedTunableNumber.Subscription mTunableSubscription;
+
+    DriveToPose(
+            Drive drive,
+            PoseEstimator poseEstimator,
+            Pose2d pose,
+            KinematicLimits kinematicLimits,
+            boolean finishAtPose) {
         mDrive = drive;
+        mPoseEstimator = poseEstimator;
         mTargetPose = pose;
         mKinematicLimits = kinematicLimits;
         mFinishAtPose = finishAtPose;
 
         mTranslationController = new PIDController(0.0, 0.0, 0.0, Constants.kLoopPeriodSeconds);
-        mTranslationProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(0.0, 0.0));
-
         mRotationController = new PIDController(0.0, 0.0, 0.0, Constants.kLoopPeriodSeconds);
         mRotationController.enableContinuousInput(-Math.PI, Math.PI);
-        mRotationProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(0.0, 0.0));
+        configureFromTunables();
 
         addRequirements(drive);
     }
 
+    private void configureFromTunables() {
+        mTunableVersion = LoggedTunableNumber.getGlobalVersion();
+        mTranslationProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(
+                Math.min(kMaxVelocity.get(), mKinematicLimits.maxDriveVelocity()),
+                Math.min(kMaxAcceleration.get(), mKinematicLimits.maxDriveAcceleration())));
+        mRotationProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(
+                Math.min(kMaxAngularVelocity.get(), mKinematicLimits.maxDriveVelocity() / kModuleRadius),
+                Math.min(kMaxAngularAcceleration.get(), mKinematicLimits.maxDriveAcceleration() / kModuleRadius)));
+        mTranslationController.setPID(kTranslationKp.get(), kTranslationKi.get(), kTranslationKd.get());
+        mRotationController.setPID(kRotationKp.get(), kRotationKi.get(), kRotationKd.get());
+    }
+
     @Override
     public void initialize() {
+        // Changes are only subscribed to while running, so catch up on any made since the last run
+        if (LoggedTunableNumber.hasAnyChangedSince(mTunableVersion)) {
+            configureFromTunables();
+        }
+
+        mTunableSubscription = LoggedTunableNumber.onChange(this::configureFromTunables, kProfileTunables);
         mDrive.setKinematicLimits(Constants.Drive.kFastKinematicLimits);
-        mSetpoint = PoseEstimator.getInstance().getPose2d();
+        mSetpoint = mPoseEstimator.getPose2d();
 
         mTranslationController.reset();
         mRotationController.reset();
 
-        var currentPose = PoseEstimator.getInstance().getPose2d();
+        var currentPose = mPoseEstimator.getPose2d();
         var translationToTarget = mTargetPose.getTranslation().minus(currentPose.getTranslation());
         var rotationToTarget = translationToTarget.getAngle();
         var fieldRelativeChassisSpeeds = mDrive.getFieldRelativeVelocity();
@@ -97,28 +141,7 @@ public class DriveToPose extends Command {
 
     @Override
     public void execute() {
-        var hash = hashCode();
-        if (kMaxVelocity.hasChanged(hash)
-                || kMaxAcceleration.hasChanged(hash)
-                || kMaxAngularVelocity.hasChanged(hash)
-                || kMaxAngularAcceleration.hasChanged(hash)
-                || kTranslationKp.hasChanged(hash)
-                || kTranslationKi.hasChanged(hash)
-                || kTranslationKd.hasChanged(hash)
-                || kRotationKp.hasChanged(hash)
-                || kRotationKi.hasChanged(hash)
-                || kRotationKd.hasChanged(hash)) {
-            mTranslationProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(
-                    Math.min(kMaxVelocity.get(), mKinematicLimits.maxDriveVelocity()),
-                    Math.min(kMaxAcceleration.get(), mKinematicLimits.maxDriveAcceleration())));
-            mRotationProfile = new TrapezoidProfile(new TrapezoidProfile.Constraints(
-                    Math.min(kMaxAngularVelocity.get(), mKinematicLimits.maxDriveVelocity() / kModuleRadius),
-                    Math.min(kMaxAngularAcceleration.get(), mKinematicLimits.maxDriveAcceleration() / kModuleRadius)));
-            mTranslationController.setPID(kTranslationKp.get(), kTranslationKi.get(), kTranslationKd.get());
-            mRotationController.setPID(kRotationKp.get(), kRotationKi.get(), kRotationKd.get());
-        }
-
-        var currentPose = PoseEstimator.getInstance().getPose2d();
+        var currentPose = mPoseEstimator.getPose2d();
         var translationToTarget = mTargetPose.getTranslation().minus(currentPose.getTranslation());
         var distanceToTarget = translationToTarget.getNorm();
         var headingToTarget = translationToTarget.getAngle();
@@ -150,20 +173,24 @@ public class DriveToPose extends Command {
         } else {
             mDrive.setVelocity(ChassisSpeeds.fromFieldRelativeSpeeds(
                     velocity.getX(), velocity.getY(), rotationalVelocity, currentPose.getRotation()));
-            mSetpoint = new Pose2d(
-                    mTargetPose.getTranslation().minus(new Translation2d(mTranslationState.position, headingToTarget)),
-                    Rotation2d.fromRadians(mRotationState.position));
+            if (kSetpointKey.isEnabled()) {
+                mSetpoint = new Pose2d(
+                        mTargetPose
+                                .getTranslation()
+                                .minus(new Translation2d(mTranslationState.position, headingToTarget)),
+                        Rotation2d.fromRadians(mRotationState.position));
+            }
         }
 
-        Logger.recordOutput(kLoggingPrefix + "TranslationError", mTranslationController.getPositionError());
-        Logger.recordOutput(
-                kLoggingPrefix + "RotationError", Rotation2d.fromRadians(mRotationController.getPositionError()));
-        Logger.recordOutput(kLoggingPrefix + "Setpoint", mSetpoint);
-        Logger.recordOutput(kLoggingPrefix + "TargetPose", mTargetPose);
+        LoggingUtil.record(kTranslationErrorKey, mTranslationController.getPositionError());
+        LoggingUtil.record(kRotationErrorKey, () -> Rotation2d.fromRadians(mRotationController.getPositionError()));
+        LoggingUtil.record(kSetpointKey, mSetpoint);
+        LoggingUtil.record(kTargetPoseKey, mTargetPose);
     }
 
     @Override
     public void end(boolean interrupted) {
+        mTunableSubscription.cancel();
         mDrive.stop();
     }
 
@@ -173,7 +200,7 @@ public class DriveToPose extends Command {
     }
 
     public boolean atTargetPose() {
-        var currentPose = PoseEstimator.getInstance().getPose2d();
+        var currentPose = mPoseEstimator.getPose2d();
         var translationError =
                 mTargetPose.getTranslation().minus(currentPose.getTranslation()).getNorm();
         return Util.inRange(translationError, kTranslationToleranceMeters.get())
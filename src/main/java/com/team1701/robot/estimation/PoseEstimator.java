@@ -12,8 +12,6 @@ import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import org.littletonrobotics.junction.AutoLogOutput;
 
 public class PoseEstimator {
-    private static PoseEstimator mInstance = null;
-
     private Rotation2d mGyroAngle = GeometryUtil.kRotationIdentity;
     private SwerveModulePosition[] mModulePositions = Stream.generate(SwerveModulePosition::new)
             .limit(Constants.Drive.kNumModules)
@@ -21,20 +19,6 @@ public class PoseEstimator {
     private SwerveDrivePoseEstimator mPoseEstimator = new SwerveDrivePoseEstimator(
             Constants.Drive.kKinematics, mGyroAngle, mModulePositions, GeometryUtil.kPoseIdentity);
 
-    public static PoseEstimator getInstance() {
-        if (mInstance == null) {
-            synchronized (PoseEstimator.class) {
-                if (mInstance == null) {
-                    mInstance = new PoseEstimator();
-                }
-            }
-        }
-
-        return mInstance;
-    }
-
-    private PoseEstimator() {}
-
     @AutoLogOutput()
     public Pose2d getPose2d() {
         return mPoseEstimator.getEstimatedPosition();
@@ -1,5 +1,11 @@
 package com.team1701.robot.loops;
 
+import com.team1701.robot.Constants;
+
+/**
+ * Periodic work run by a {@link LoopRunner} on its own thread. Loops must not log to AdvantageKit or touch state owned
+ * by the main thread without synchronization.
+ */
 public interface Loop {
     void onStart(double timestamp);
 
@@ -8,4 +14,15 @@ public interface Loop {
     void onStop(double timestamp);
 
     String getDisplayName();
+
+    default double getPeriodSeconds() {
+        return Constants.kLoopPeriodSeconds;
+    }
+
+    /**
+     * @return Real-time priority of the loop thread between 1 and 99, or 0 to leave the thread at normal priority
+     */
+    default int getPriority() {
+        return 0;
+    }
 }
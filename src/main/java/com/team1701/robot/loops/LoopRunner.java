@@ -3,69 +3,172 @@ package com.team1701.robot.loops;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
 import edu.wpi.first.wpilibj.Timer;
-import org.littletonrobotics.junction.Logger;
 
+/**
+ * Runs each registered {@link Loop} on its own Notifier thread at the loop's period and priority. Execution time, the
+ * time between runs and overruns are tracked per loop on the loop threads, and published from the main thread by
+ * {@link #outputTelemetry()}. A run overruns if it takes longer than the period or starts late enough that a period
+ * was missed.
+ */
 public class LoopRunner implements Looper {
-    private final List<Loop> mLoops;
+    // Fraction of the period a run may start late by before it counts as an overrun, to allow for scheduling jitter
+    private static final double kLateStartTolerance = 0.1;
+
+    private final List<ScheduledLoop> mLoops = new ArrayList<>();
     private final String mName;
-    private double mTimestamp;
-    private double mDT;
-    private double mLoopTime;
-    private boolean mRunning;
+    private final LogKey mRunningKey;
+    private boolean mRunning = false;
 
     public LoopRunner(String name) {
-        mRunning = false;
-        mLoops = new ArrayList<>();
         mName = name;
+        mRunningKey = LoggingUtil.key("Looper/" + name + "/Running", Level.DEBUG);
     }
 
     @Override
-    public void register(Loop loop) {
-        mLoops.add(loop);
+    public synchronized void register(Loop loop) {
+        if (mRunning) {
+            throw new IllegalStateException("Loops cannot be registered while " + mName + " loops are running");
+        }
+
+        mLoops.add(new ScheduledLoop(loop));
     }
 
-    public void start() {
+    public synchronized void start() {
         if (!mRunning) {
             System.out.println("Starting " + mName + " loops");
-            mTimestamp = Timer.getFPGATimestamp();
+            var timestamp = Timer.getFPGATimestamp();
             for (var loop : mLoops) {
-                loop.onStart(mTimestamp);
+                loop.start(timestamp);
             }
+
             mRunning = true;
         }
     }
 
-    public void loop() {
+    public synchronized void stop() {
         if (mRunning) {
-            var realStart = Logger.getRealTimestamp();
-            var start = Timer.getFPGATimestamp();
+            System.out.println("Stopping " + mName + " loops");
+            mRunning = false;
+            var timestamp = Timer.getFPGATimestamp();
             for (var loop : mLoops) {
-                loop.onLoop(start);
+                System.out.println("Stopping " + loop.mLoop.getDisplayName());
+                loop.stop(timestamp);
             }
+        }
+    }
 
-            mLoopTime = (realStart - Logger.getRealTimestamp()) / 1000000.0;
-            mDT = start - mTimestamp;
-            mTimestamp = start;
+    public synchronized void outputTelemetry() {
+        LoggingUtil.record(mRunningKey, mRunning);
+        for (var loop : mLoops) {
+            loop.outputTelemetry();
         }
     }
 
-    public void stop() {
-        if (mRunning) {
-            System.out.println("Stopping " + mName + " loops");
-            mRunning = false;
-            mTimestamp = Timer.getFPGATimestamp();
-            for (var loop : mLoops) {
-                System.out.println("Stopping " + loop);
-                loop.onStop(mTimestamp);
+    private class ScheduledLoop {
+        private final Loop mLoop;
+        private final Notifier mNotifier;
+        private final double mPeriodSeconds;
+        private final LogKey mExecutionTimeKey;
+        private final LogKey mMaxExecutionTimeKey;
+        private final LogKey mTimeBetweenLoopsKey;
+        private final LogKey mOverrunCountKey;
+
+        // Held for the whole of a run, so that stopping can wait for a run in progress to complete
+        private final Object mRunLock = new Object();
+        private boolean mActive = false;
+
+        private boolean mPriorityApplied = false;
+        private long mLastStartNanos = -1;
+
+        // Guarded by this, written on the loop thread and read on the main thread
+        private double mExecutionTimeSeconds;
+        private double mMaxExecutionTimeSeconds;
+        private double mTimeBetweenLoopsSeconds;
+        private int mOverrunCount;
+
+        private ScheduledLoop(Loop loop) {
+            mLoop = loop;
+            mPeriodSeconds = loop.getPeriodSeconds();
+            mNotifier = new Notifier(this::run);
+            mNotifier.setName(mName + loop.getDisplayName());
+
+            var prefix = "Looper/" + mName + "/" + loop.getDisplayName() + "/";
+            mExecutionTimeKey = LoggingUtil.key(prefix + "ExecutionTimeSec", Level.DEBUG);
+            mMaxExecutionTimeKey = LoggingUtil.key(prefix + "MaxExecutionTimeSec", Level.MATCH);
+            mTimeBetweenLoopsKey = LoggingUtil.key(prefix + "TimeBetweenLoopsSec", Level.DEBUG);
+            mOverrunCountKey = LoggingUtil.key(prefix + "OverrunCount", Level.MATCH);
+        }
+
+        private void start(double timestamp) {
+            synchronized (mRunLock) {
+                mLastStartNanos = -1;
+                mLoop.onStart(timestamp);
+                mActive = true;
             }
+
+            mNotifier.startPeriodic(mPeriodSeconds);
         }
-    }
 
-    public void outputTelemetry() {
-        var prefix = "Looper/" + mName;
-        Logger.recordOutput(prefix + "/Running", mRunning);
-        Logger.recordOutput(prefix + "/TimeBetweenLoopsSec", mDT);
-        Logger.recordOutput(prefix + "/LoopPeriodSec", mLoopTime);
+        private void stop(double timestamp) {
+            // Stopping the notifier only cancels its alarm, and a callback may already be running on the loop thread
+            mNotifier.stop();
+            synchronized (mRunLock) {
+                mActive = false;
+                mLoop.onStop(timestamp);
+            }
+        }
+
+        private void run() {
+            synchronized (mRunLock) {
+                if (mActive) {
+                    runLoop();
+                }
+            }
+        }
+
+        private void runLoop() {
+            if (!mPriorityApplied) {
+                var priority = mLoop.getPriority();
+                if (priority > 0) {
+                    Threads.setCurrentThreadPriority(true, priority);
+                }
+
+                mPriorityApplied = true;
+            }
+
+            var startNanos = System.nanoTime();
+            mLoop.onLoop(Timer.getFPGATimestamp());
+            var endNanos = System.nanoTime();
+
+            var executionTimeSeconds = (endNanos - startNanos) / 1e9;
+            var timeBetweenLoopsSeconds = mLastStartNanos < 0 ? mPeriodSeconds : (startNanos - mLastStartNanos) / 1e9;
+            mLastStartNanos = startNanos;
+
+            synchronized (this) {
+                mExecutionTimeSeconds = executionTimeSeconds;
+                mMaxExecutionTimeSeconds = Math.max(mMaxExecutionTimeSeconds, executionTimeSeconds);
+                mTimeBetweenLoopsSeconds = timeBetweenLoopsSeconds;
+                if (executionTimeSeconds > mPeriodSeconds
+                        || timeBetweenLoopsSeconds > mPeriodSeconds * (1 + kLateStartTolerance)) {
+                    mOverrunCount++;
+                }
+            }
+        }
+
+        private synchronized void outputTelemetry() {
+            LoggingUtil.record(mExecutionTimeKey, mExecutionTimeSeconds);
+            LoggingUtil.record(mMaxExecutionTimeKey, mMaxExecutionTimeSeconds);
+            LoggingUtil.record(mTimeBetweenLoopsKey, mTimeBetweenLoopsSeconds);
+            LoggingUtil.record(mOverrunCountKey, mOverrunCount);
+
+            // Report the worst execution time seen between telemetry updates
+            mMaxExecutionTimeSeconds = 0.0;
+        }
     }
 }
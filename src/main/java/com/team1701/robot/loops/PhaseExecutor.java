@@ -0,0 +1,207 @@
+package com.team1701.robot.loops;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.stream.IntStream;
+
+import com.team1701.lib.profiling.LoopProfiler;
+import com.team1701.lib.profiling.ProfiledSubsystem;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.DeferredOutputs;
+
+/**
+ * Runs subsystem work in phases that declare which shared resources they read and write. Input stages run first, in
+ * registration order on the main thread. Phases are then grouped into levels, where each phase runs after every
+ * earlier-registered phase it conflicts with, and the phases in a level run concurrently on the main thread and a
+ * single worker thread.
+ *
+ * <p>Outputs logged through {@link LoggingUtil} during a phase are deferred and logged in phase registration order once
+ * the level completes, so the order of logged outputs does not depend on thread timing. Replay reproduces outputs
+ * exactly only where they do not depend on wall-clock time, which the joint pose solver's time budget does. Phases must
+ * not call {@link org.littletonrobotics.junction.Logger} directly, and all inputs must be read in input stages.
+ */
+public class PhaseExecutor extends ProfiledSubsystem {
+    public static enum Resource {
+        DRIVE,
+        VISION,
+        POSE_ESTIMATE
+    }
+
+    private final LoopProfiler mLoopProfiler = LoopProfiler.getInstance();
+    private final ArrayList<InputStage> mInputStages = new ArrayList<>();
+    private final ArrayList<Phase> mPhases = new ArrayList<>();
+    private final boolean mParallel;
+    private final Semaphore mWorkAvailable = new Semaphore(0);
+    private final Semaphore mWorkComplete = new Semaphore(0);
+    private final Optional<Thread> mWorker;
+
+    private Phase[][] mLevels = null;
+    private Phase[] mWorkerLevel;
+    private Throwable mWorkerError;
+
+    public PhaseExecutor(boolean parallel) {
+        mParallel = parallel;
+
+        if (parallel) {
+            var worker = new Thread(this::runWorker, "PhaseExecutor");
+            worker.setDaemon(true);
+            worker.start();
+            mWorker = Optional.of(worker);
+        } else {
+            mWorker = Optional.empty();
+        }
+    }
+
+    /** Returns the worker thread that runs phases alongside the main thread, if phases run in parallel. */
+    public Optional<Thread> getWorkerThread() {
+        return mWorker;
+    }
+
+    /** Adds work that reads and logs inputs. Input stages run in registration order on the main thread. */
+    public void addInputStage(String name, Runnable action) {
+        mInputStages.add(new InputStage(mLoopProfiler.section("Phases/" + name), action));
+    }
+
+    public void addPhase(String name, Set<Resource> reads, Set<Resource> writes, Runnable action) {
+        mPhases.add(new Phase(name, mLoopProfiler.section("Phases/" + name), reads, writes, action));
+        mLevels = null;
+    }
+
+    @Override
+    protected void profiledPeriodic() {
+        for (var stage : mInputStages) {
+            stage.section().start();
+            stage.action().run();
+            stage.section().stop();
+        }
+
+        if (mLevels == null) {
+            mLevels = buildLevels();
+        }
+
+        for (var level : mLevels) {
+            runLevel(level);
+        }
+    }
+
+    private void runLevel(Phase[] level) {
+        var offload = mParallel && level.length > 1;
+        if (offload) {
+            mWorkerLevel = level;
+            mWorkAvailable.release();
+            try {
+                level[0].run();
+            } finally {
+                mWorkComplete.acquireUninterruptibly();
+            }
+
+            if (mWorkerError != null) {
+                var error = mWorkerError;
+                mWorkerError = null;
+                throw new RuntimeException("Phase failed on worker thread", error);
+            }
+        } else {
+            for (var phase : level) {
+                phase.run();
+            }
+        }
+
+        // Merge in registration order regardless of which thread ran each phase
+        for (var phase : level) {
+            phase.flush();
+        }
+    }
+
+    private void runWorker() {
+        while (true) {
+            mWorkAvailable.acquireUninterruptibly();
+            try {
+                var level = mWorkerLevel;
+                for (var i = 1; i < level.length; i++) {
+                    level[i].run();
+                }
+            } catch (Throwable error) {
+                mWorkerError = error;
+            } finally {
+                mWorkComplete.release();
+            }
+        }
+    }
+
+    private Phase[][] buildLevels() {
+        var phaseLevels = new int[mPhases.size()];
+        var levelCount = 0;
+        for (var i = 0; i < mPhases.size(); i++) {
+            var level = 0;
+            for (var j = 0; j < i; j++) {
+                if (mPhases.get(i).conflictsWith(mPhases.get(j))) {
+                    level = Math.max(level, phaseLevels[j] + 1);
+                }
+            }
+
+            phaseLevels[i] = level;
+            levelCount = Math.max(levelCount, level + 1);
+        }
+
+        var levels = new Phase[levelCount][];
+        for (var level = 0; level < levelCount; level++) {
+            var currentLevel = level;
+            levels[level] = IntStream.range(0, mPhases.size())
+                    .filter(i -> phaseLevels[i] == currentLevel)
+                    .mapToObj(mPhases::get)
+                    .toArray(Phase[]::new);
+        }
+
+        return levels;
+    }
+
+    private static record InputStage(LoopProfiler.Section section, Runnable action) {}
+
+    private static class Phase {
+        private final String mName;
+        private final LoopProfiler.Section mSection;
+        private final EnumSet<Resource> mReads = EnumSet.noneOf(Resource.class);
+        private final EnumSet<Resource> mWrites = EnumSet.noneOf(Resource.class);
+        private final Runnable mAction;
+        private final DeferredOutputs mOutputs = new DeferredOutputs();
+        private long mElapsedNanos;
+
+        private Phase(
+                String name,
+                LoopProfiler.Section section,
+                Set<Resource> reads,
+                Set<Resource> writes,
+                Runnable action) {
+            mName = name;
+            mSection = section;
+            mReads.addAll(reads);
+            mWrites.addAll(writes);
+            mAction = action;
+        }
+
+        private boolean conflictsWith(Phase other) {
+            return mWrites.stream().anyMatch(other.mReads::contains)
+                    || mWrites.stream().anyMatch(other.mWrites::contains)
+                    || other.mWrites.stream().anyMatch(mReads::contains);
+        }
+
+        private void run() {
+            LoggingUtil.beginDeferring(mOutputs);
+            var start = System.nanoTime();
+            try {
+                mAction.run();
+            } finally {
+                mElapsedNanos = System.nanoTime() - start;
+                LoggingUtil.endDeferring();
+            }
+        }
+
+        private void flush() {
+            mOutputs.flush();
+            mSection.addNanos(mElapsedNanos);
+        }
+    }
+}
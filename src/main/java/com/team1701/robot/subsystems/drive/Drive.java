@@ -1,19 +1,27 @@
 package com.team1701.robot.subsystems.drive;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.stream.Stream;
 
 import com.team1701.lib.drivers.gyros.GyroIO;
 import com.team1701.lib.drivers.gyros.GyroInputsAutoLogged;
+import com.team1701.lib.profiling.ProfiledSubsystem;
 import com.team1701.lib.swerve.SwerveSetpoint;
 import com.team1701.lib.swerve.SwerveSetpointGenerator;
 import com.team1701.lib.swerve.SwerveSetpointGenerator.KinematicLimits;
 import com.team1701.lib.util.GeometryUtil;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
 import com.team1701.lib.util.SignalSamplingThread;
 import com.team1701.lib.util.TimeLockedBoolean;
 import com.team1701.lib.util.Util;
 import com.team1701.robot.Constants;
+import com.team1701.robot.RobotContext;
 import com.team1701.robot.estimation.PoseEstimator;
+import com.team1701.robot.loops.PhaseExecutor;
+import com.team1701.robot.loops.PhaseExecutor.Resource;
 import com.team1701.robot.subsystems.drive.SwerveModule.SwerveModuleIO;
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
@@ -23,12 +31,14 @@ import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
-public class Drive extends SubsystemBase {
-    private final PoseEstimator mPoseEstimator = PoseEstimator.getInstance();
+public class Drive extends ProfiledSubsystem {
+    private static final LogKey kDesiredStatesKey = LoggingUtil.key("Drive/DesiredStates", Level.DEBUG);
+    private static final SwerveModuleState[] kIdleModuleStates = new SwerveModuleState[] {};
+
+    private final PoseEstimator mPoseEstimator;
     private final GyroInputsAutoLogged mGyroInputs = new GyroInputsAutoLogged();
     private final GyroIO mGyroIO;
     private final SwerveModule[] mModules;
@@ -50,11 +60,13 @@ public class Drive extends SubsystemBase {
     @AutoLogOutput(key = "Drive/MeasuredStates")
     private SwerveModuleState[] mMeasuredModuleStates;
 
-    public Drive(GyroIO gyroIO, SwerveModuleIO[] moduleIOs) {
+    public Drive(RobotContext context, GyroIO gyroIO, SwerveModuleIO[] moduleIOs) {
         if (moduleIOs.length != Constants.Drive.kNumModules) {
             throw new IllegalArgumentException("Module IOs must have length " + Constants.Drive.kNumModules);
         }
 
+        mPoseEstimator = context.getPoseEstimator();
+
         mDesiredModuleOrientations = new Rotation2d[moduleIOs.length];
         Arrays.setAll(mDesiredModuleOrientations, i -> GeometryUtil.kRotationIdentity);
 
@@ -85,11 +97,16 @@ public class Drive extends SubsystemBase {
         zeroModules();
     }
 
-    @Override
-    public void periodic() {
-        updateInputs();
-        updateOdometry();
-        updateDesiredStates();
+    public void registerPhases(PhaseExecutor executor) {
+        executor.addInputStage("Drive/Inputs", this::updateInputs);
+        executor.addPhase(
+                "Drive/Update",
+                EnumSet.of(Resource.DRIVE),
+                EnumSet.of(Resource.DRIVE, Resource.POSE_ESTIMATE),
+                () -> {
+                    updateOdometry();
+                    updateDesiredStates();
+                });
     }
 
     private void updateInputs() {
@@ -170,7 +187,7 @@ public class Drive extends SubsystemBase {
             }
 
             mPreviousSetpoint = new SwerveSetpoint(mDesiredChassisSpeeds, desiredModuleStates);
-            Logger.recordOutput("Drive/DesiredStates", desiredModuleStates);
+            LoggingUtil.record(kDesiredStatesKey, desiredModuleStates);
             return;
         }
 
@@ -199,7 +216,7 @@ public class Drive extends SubsystemBase {
         }
 
         mPreviousSetpoint = desiredSetpoint;
-        Logger.recordOutput("Drive/DesiredStates", desiredSetpoint.moduleStates);
+        LoggingUtil.record(kDesiredStatesKey, desiredSetpoint.moduleStates);
     }
 
     private void setModuleStatesToIdle() {
@@ -208,7 +225,7 @@ public class Drive extends SubsystemBase {
         }
 
         mPreviousSetpoint = new SwerveSetpoint(Constants.Drive.kKinematics, mMeasuredModuleStates);
-        Logger.recordOutput("Drive/DesiredStates", new SwerveModuleState[] {});
+        LoggingUtil.record(kDesiredStatesKey, kIdleModuleStates);
     }
 
     public void setKinematicLimits(KinematicLimits kinematicLimits) {
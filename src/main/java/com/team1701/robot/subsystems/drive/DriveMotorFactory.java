@@ -20,7 +20,7 @@ public final class DriveMotorFactory {
 
         configureWithRetry(() -> motor.restoreFactoryDefaults(), errorAlert);
 
-        configureWithRetry(() -> motor.setSmartCurrentLimit(80), errorAlert);
+        configureWithRetry(() -> motor.setSmartCurrentLimit(Constants.Drive.kDriveCurrentLimitAmps), errorAlert);
         configureWithRetry(() -> motor.enableVoltageCompensation(12), errorAlert);
 
         configureWithRetry(() -> encoder.setPosition(0), errorAlert);
@@ -49,7 +49,7 @@ public final class DriveMotorFactory {
 
         configureWithRetry(() -> motor.restoreFactoryDefaults(), errorAlert);
 
-        configureWithRetry(() -> motor.setSmartCurrentLimit(30), errorAlert);
+        configureWithRetry(() -> motor.setSmartCurrentLimit(Constants.Drive.kSteerCurrentLimitAmps), errorAlert);
         configureWithRetry(() -> motor.enableVoltageCompensation(12.0), errorAlert);
 
         configureWithRetry(() -> encoder.setPosition(0), errorAlert);
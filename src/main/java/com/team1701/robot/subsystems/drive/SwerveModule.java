@@ -7,6 +7,7 @@ import com.team1701.lib.drivers.motors.MotorIO;
 import com.team1701.lib.drivers.motors.MotorIOSim;
 import com.team1701.lib.drivers.motors.MotorInputsAutoLogged;
 import com.team1701.lib.util.GeometryUtil;
+import com.team1701.lib.util.LoggedTunableNumber;
 import com.team1701.robot.Constants;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
@@ -16,6 +17,9 @@ import org.littletonrobotics.junction.Logger;
 
 public class SwerveModule {
     private final int mIndex;
+    private final String mDriveInputsKey;
+    private final String mSteerInputsKey;
+    private final String mSteerEncoderInputsKey;
     private final MotorIO mDriveMotorIO;
     private final MotorIO mSteerMotorIO;
     private final EncoderIO mSteerEncoderIO;
@@ -45,10 +49,24 @@ public class SwerveModule {
 
     public SwerveModule(int index, SwerveModuleIO moduleIO) {
         mIndex = index;
+        mDriveInputsKey = "Drive/Module/" + index + "/Drive";
+        mSteerInputsKey = "Drive/Module/" + index + "/Steer";
+        mSteerEncoderInputsKey = "Drive/Module/" + index + "/AbsoluteEncoder";
         mDriveMotorIO = moduleIO.driveMotorIO;
         mSteerMotorIO = moduleIO.steerMotorIO;
         mSteerEncoderIO = moduleIO.steerEncoderIO;
 
+        configureGains();
+        LoggedTunableNumber.onChange(
+                this::configureGains,
+                Constants.Drive.kDriveKf,
+                Constants.Drive.kDriveKp,
+                Constants.Drive.kDriveKd,
+                Constants.Drive.kSteerKp,
+                Constants.Drive.kSteerKd);
+    }
+
+    private void configureGains() {
         mDriveMotorIO.setPID(
                 Constants.Drive.kDriveKf.get(), Constants.Drive.kDriveKp.get(), 0, Constants.Drive.kDriveKd.get());
         mSteerMotorIO.setPID(0, Constants.Drive.kSteerKp.get(), 0, Constants.Drive.kSteerKd.get());
@@ -62,9 +80,9 @@ public class SwerveModule {
     }
 
     public void periodic() {
-        Logger.processInputs("Drive/Module/" + mIndex + "/Drive", mDriveMotorInputs);
-        Logger.processInputs("Drive/Module/" + mIndex + "/Steer", mSteerMotorInputs);
-        Logger.processInputs("Drive/Module/" + mIndex + "/AbsoluteEncoder", mSteerEncoderInputs);
+        Logger.processInputs(mDriveInputsKey, mDriveMotorInputs);
+        Logger.processInputs(mSteerInputsKey, mSteerMotorInputs);
+        Logger.processInputs(mSteerEncoderInputsKey, mSteerEncoderInputs);
 
         // Zero the steering motor position on the first loop after receiving an absolute encoder position
         if (mAngleOffsetNotInitialized && !mSteerEncoderInputs.position.equals(GeometryUtil.kRotationIdentity)) {
@@ -73,18 +91,6 @@ public class SwerveModule {
         }
 
         mMeasuredAngle = toModuleAngle(Rotation2d.fromRadians(mSteerMotorInputs.positionRadians));
-
-        var hashCode = hashCode();
-        if (Constants.Drive.kDriveKf.hasChanged(hashCode)
-                || Constants.Drive.kDriveKp.hasChanged(hashCode)
-                || Constants.Drive.kDriveKd.hasChanged(hashCode)) {
-            mDriveMotorIO.setPID(
-                    Constants.Drive.kDriveKf.get(), Constants.Drive.kDriveKp.get(), 0, Constants.Drive.kDriveKd.get());
-        }
-
-        if (Constants.Drive.kSteerKp.hasChanged(hashCode) || Constants.Drive.kSteerKd.hasChanged(hashCode)) {
-            mSteerMotorIO.setPID(0, Constants.Drive.kSteerKp.get(), 0, Constants.Drive.kSteerKd.get());
-        }
     }
 
     public Rotation2d getAngle() {
@@ -0,0 +1,372 @@
+package com.team1701.robot.subsystems.vision;
+
+import java.util.Optional;
+
+import com.team1701.lib.drivers.cameras.AprilTagFieldGeometry;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import org.photonvision.targeting.PhotonTrackedTarget;
+
+/**
+ * Solves for a single robot pose from the AprilTag corners seen by every camera at (approximately) the same instant.
+ * Each observed corner contributes a pixel reprojection residual, and the planar robot pose (x, y, heading) is found
+ * with a damped Gauss-Newton solve. All Jacobian and residual storage is allocated once at construction so that a solve
+ * does not allocate, and a solve is abandoned once it exceeds its time budget.
+ */
+public class JointPoseSolver {
+    public static final int kMaxCorners = 256;
+
+    private static final int kCornersPerTag = AprilTagFieldGeometry.kCornersPerTag;
+    private static final double kMinDepthMeters = 0.05;
+    private static final double kConvergenceThreshold = 1e-6;
+    private static final double kDamping = 1e-6;
+
+    private final int mMaxIterations;
+    private final long mTimeBudgetNanos;
+    private final double mHuberThresholdPixels;
+
+    private final AprilTagFieldGeometry mFieldGeometry;
+
+    // Robot-to-camera rotation (transposed) and translation, indexed by camera
+    private final double[][] mCameraRotations;
+    private final double[][] mCameraTranslations;
+
+    // Observation storage
+    private final int[] mObservationCameras = new int[kMaxCorners];
+    private final double[] mObservationPoints = new double[kMaxCorners * 3];
+    private final double[] mObservationPixels = new double[kMaxCorners * 2];
+    private final double[] mObservationIntrinsics = new double[kMaxCorners * 4];
+    private int mObservationCount;
+    private int mTagCount;
+
+    // Solver storage
+    private final double[] mResiduals = new double[kMaxCorners * 2];
+    private final double[] mWeights = new double[kMaxCorners * 2];
+    private final double[] mJacobian = new double[kMaxCorners * 2 * 3];
+    private final double[] mNormalMatrix = new double[9];
+    private final double[] mGradient = new double[3];
+    private final double[] mStep = new double[3];
+
+    public static record Result(
+            Pose2d pose,
+            double rmsErrorPixels,
+            int iterations,
+            int tagCount,
+            boolean converged,
+            boolean budgetExceeded,
+            double solveTimeSeconds) {}
+
+    public JointPoseSolver(
+            AprilTagFieldGeometry fieldGeometry,
+            Transform3d[] robotToCameraPoses,
+            int maxIterations,
+            double timeBudgetSeconds,
+            double huberThresholdPixels) {
+        mMaxIterations = maxIterations;
+        mTimeBudgetNanos = (long) (timeBudgetSeconds * 1e9);
+        mHuberThresholdPixels = huberThresholdPixels;
+        mFieldGeometry = fieldGeometry;
+
+        mCameraRotations = new double[robotToCameraPoses.length][];
+        mCameraTranslations = new double[robotToCameraPoses.length][];
+        for (var i = 0; i < robotToCameraPoses.length; i++) {
+            var robotToCamera = robotToCameraPoses[i];
+            var rotation = robotToCamera.getRotation().getQuaternion();
+            var w = rotation.getW();
+            var x = rotation.getX();
+            var y = rotation.getY();
+            var z = rotation.getZ();
+
+            // Transpose of the camera rotation matrix, mapping robot-frame vectors into the camera frame
+            mCameraRotations[i] = new double[] {
+                1 - 2 * (y * y + z * z), 2 * (x * y + w * z), 2 * (x * z - w * y),
+                2 * (x * y - w * z), 1 - 2 * (x * x + z * z), 2 * (y * z + w * x),
+                2 * (x * z + w * y), 2 * (y * z - w * x), 1 - 2 * (x * x + y * y)
+            };
+            mCameraTranslations[i] = new double[] {robotToCamera.getX(), robotToCamera.getY(), robotToCamera.getZ()};
+        }
+    }
+
+    public void reset() {
+        mObservationCount = 0;
+        mTagCount = 0;
+    }
+
+    public int getObservationCount() {
+        return mObservationCount;
+    }
+
+    /**
+     * Adds the detected corners of a target to the next solve.
+     *
+     * @param cameraIndex Index of the camera in the robot-to-camera poses passed at construction
+     * @param cameraMatrix Row-major 3x3 camera intrinsics matrix
+     * @param target The detected target
+     * @return True if the target was added, false if it is not a known tag, has no corners or the solver is full
+     */
+    public boolean addTarget(int cameraIndex, double[] cameraMatrix, PhotonTrackedTarget target) {
+        var id = target.getFiducialId();
+        if (!mFieldGeometry.hasTag(id) || cameraMatrix.length != 9) {
+            return false;
+        }
+
+        var detectedCorners = target.getDetectedCorners();
+        if (detectedCorners.size() != kCornersPerTag || mObservationCount + kCornersPerTag > kMaxCorners) {
+            return false;
+        }
+
+        // Corners are stored consecutively, so the tag's corners can be copied in one pass
+        mFieldGeometry.copyCorners(id, mObservationPoints, mObservationCount * 3);
+        for (var i = 0; i < kCornersPerTag; i++) {
+            var corner = detectedCorners.get(i);
+            var index = mObservationCount++;
+            mObservationCameras[index] = cameraIndex;
+            mObservationPixels[index * 2] = corner.x;
+            mObservationPixels[index * 2 + 1] = corner.y;
+            mObservationIntrinsics[index * 4] = cameraMatrix[0];
+            mObservationIntrinsics[index * 4 + 1] = cameraMatrix[4];
+            mObservationIntrinsics[index * 4 + 2] = cameraMatrix[2];
+            mObservationIntrinsics[index * 4 + 3] = cameraMatrix[5];
+        }
+
+        mTagCount++;
+        return true;
+    }
+
+    /**
+     * Solves for the robot pose that best explains the added observations.
+     *
+     * @param initialGuess Starting pose for the solve, typically the current pose estimate
+     * @return The solution, or empty if there are no observations or the solve diverged
+     */
+    public Optional<Result> solve(Pose2d initialGuess) {
+        if (mObservationCount == 0) {
+            return Optional.empty();
+        }
+
+        var startTime = System.nanoTime();
+        var x = initialGuess.getX();
+        var y = initialGuess.getY();
+        var theta = initialGuess.getRotation().getRadians();
+        var converged = false;
+        var budgetExceeded = false;
+        var iterations = 0;
+
+        while (iterations < mMaxIterations) {
+            if (System.nanoTime() - startTime > mTimeBudgetNanos) {
+                budgetExceeded = true;
+                break;
+            }
+
+            iterations++;
+            linearize(x, y, theta);
+            if (!solveNormalEquations()) {
+                return Optional.empty();
+            }
+
+            x += mStep[0];
+            y += mStep[1];
+            theta = MathUtil.angleModulus(theta + mStep[2]);
+
+            if (Math.abs(mStep[0]) + Math.abs(mStep[1]) + Math.abs(mStep[2]) < kConvergenceThreshold) {
+                converged = true;
+                break;
+            }
+        }
+
+        if (!Double.isFinite(x) || !Double.isFinite(y) || !Double.isFinite(theta)) {
+            return Optional.empty();
+        }
+
+        var squaredError = 0.0;
+        var residualCount = 0;
+        computeResiduals(x, y, theta);
+        for (var i = 0; i < mObservationCount * 2; i++) {
+            if (mWeights[i] > 0) {
+                squaredError += mResiduals[i] * mResiduals[i];
+                residualCount++;
+            }
+        }
+
+        if (residualCount == 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new Result(
+                new Pose2d(x, y, Rotation2d.fromRadians(theta)),
+                Math.sqrt(squaredError / residualCount),
+                iterations,
+                mTagCount,
+                converged,
+                budgetExceeded,
+                (System.nanoTime() - startTime) / 1e9));
+    }
+
+    private void computeResiduals(double x, double y, double theta) {
+        fillRows(x, y, theta, false);
+    }
+
+    private void linearize(double x, double y, double theta) {
+        fillRows(x, y, theta, true);
+
+        for (var i = 0; i < 9; i++) {
+            mNormalMatrix[i] = 0.0;
+        }
+
+        for (var i = 0; i < 3; i++) {
+            mGradient[i] = 0.0;
+        }
+
+        for (var row = 0; row < mObservationCount * 2; row++) {
+            var weight = mWeights[row];
+            if (weight == 0.0) {
+                continue;
+            }
+
+            var j = row * 3;
+            var residual = mResiduals[row];
+            for (var a = 0; a < 3; a++) {
+                var ja = mJacobian[j + a] * weight;
+                mGradient[a] += ja * residual;
+                for (var b = a; b < 3; b++) {
+                    mNormalMatrix[a * 3 + b] += ja * mJacobian[j + b];
+                }
+            }
+        }
+
+        mNormalMatrix[3] = mNormalMatrix[1];
+        mNormalMatrix[6] = mNormalMatrix[2];
+        mNormalMatrix[7] = mNormalMatrix[5];
+    }
+
+    private void fillRows(double x, double y, double theta, boolean computeJacobian) {
+        var cos = Math.cos(theta);
+        var sin = Math.sin(theta);
+
+        for (var i = 0; i < mObservationCount; i++) {
+            var rotation = mCameraRotations[mObservationCameras[i]];
+            var translation = mCameraTranslations[mObservationCameras[i]];
+            var rowU = i * 2;
+            var rowV = rowU + 1;
+
+            // Field point into the robot frame
+            var dx = mObservationPoints[i * 3] - x;
+            var dy = mObservationPoints[i * 3 + 1] - y;
+            var robotX = cos * dx + sin * dy;
+            var robotY = -sin * dx + cos * dy;
+            var robotZ = mObservationPoints[i * 3 + 2];
+
+            // Robot point into the camera frame
+            var px = robotX - translation[0];
+            var py = robotY - translation[1];
+            var pz = robotZ - translation[2];
+            var cameraX = rotation[0] * px + rotation[1] * py + rotation[2] * pz;
+            var cameraY = rotation[3] * px + rotation[4] * py + rotation[5] * pz;
+            var cameraZ = rotation[6] * px + rotation[7] * py + rotation[8] * pz;
+
+            if (cameraX < kMinDepthMeters) {
+                mWeights[rowU] = 0.0;
+                mWeights[rowV] = 0.0;
+                continue;
+            }
+
+            // Project with the camera looking down +X, image u to the right (-Y) and v down (-Z)
+            var fx = mObservationIntrinsics[i * 4];
+            var fy = mObservationIntrinsics[i * 4 + 1];
+            var cx = mObservationIntrinsics[i * 4 + 2];
+            var cy = mObservationIntrinsics[i * 4 + 3];
+            var inverseDepth = 1.0 / cameraX;
+            var residualU = cx - fx * cameraY * inverseDepth - mObservationPixels[rowU];
+            var residualV = cy - fy * cameraZ * inverseDepth - mObservationPixels[rowV];
+            mResiduals[rowU] = residualU;
+            mResiduals[rowV] = residualV;
+            mWeights[rowU] = huberWeight(residualU);
+            mWeights[rowV] = huberWeight(residualV);
+
+            if (!computeJacobian) {
+                continue;
+            }
+
+            // Derivatives of the projection with respect to the camera-frame point
+            var inverseDepthSquared = inverseDepth * inverseDepth;
+            var duDx = fx * cameraY * inverseDepthSquared;
+            var duDy = -fx * inverseDepth;
+            var dvDx = fy * cameraZ * inverseDepthSquared;
+            var dvDz = -fy * inverseDepth;
+
+            // Derivatives of the robot-frame point with respect to x, y and theta (the z component is always zero)
+            for (var parameter = 0; parameter < 3; parameter++) {
+                double drX;
+                double drY;
+                switch (parameter) {
+                    case 0:
+                        drX = -cos;
+                        drY = sin;
+                        break;
+                    case 1:
+                        drX = -sin;
+                        drY = -cos;
+                        break;
+                    default:
+                        drX = robotY;
+                        drY = -robotX;
+                        break;
+                }
+
+                var dcX = rotation[0] * drX + rotation[1] * drY;
+                var dcY = rotation[3] * drX + rotation[4] * drY;
+                var dcZ = rotation[6] * drX + rotation[7] * drY;
+                mJacobian[rowU * 3 + parameter] = duDx * dcX + duDy * dcY;
+                mJacobian[rowV * 3 + parameter] = dvDx * dcX + dvDz * dcZ;
+            }
+        }
+    }
+
+    private double huberWeight(double residual) {
+        var magnitude = Math.abs(residual);
+        return magnitude <= mHuberThresholdPixels ? 1.0 : mHuberThresholdPixels / magnitude;
+    }
+
+    private boolean solveNormalEquations() {
+        var a = mNormalMatrix[0] * (1 + kDamping) + kDamping;
+        var b = mNormalMatrix[1];
+        var c = mNormalMatrix[2];
+        var d = mNormalMatrix[4] * (1 + kDamping) + kDamping;
+        var e = mNormalMatrix[5];
+        var f = mNormalMatrix[8] * (1 + kDamping) + kDamping;
+
+        // Cholesky decomposition of the symmetric 3x3 normal matrix
+        if (a <= 0) {
+            return false;
+        }
+
+        var l00 = Math.sqrt(a);
+        var l10 = b / l00;
+        var l20 = c / l00;
+        var l11Squared = d - l10 * l10;
+        if (l11Squared <= 0) {
+            return false;
+        }
+
+        var l11 = Math.sqrt(l11Squared);
+        var l21 = (e - l20 * l10) / l11;
+        var l22Squared = f - l20 * l20 - l21 * l21;
+        if (l22Squared <= 0) {
+            return false;
+        }
+
+        var l22 = Math.sqrt(l22Squared);
+
+        // Forward then back substitution for the step that minimizes the linearized error
+        var z0 = -mGradient[0] / l00;
+        var z1 = (-mGradient[1] - l10 * z0) / l11;
+        var z2 = (-mGradient[2] - l20 * z0 - l21 * z1) / l22;
+
+        mStep[2] = z2 / l22;
+        mStep[1] = (z1 - l21 * mStep[2]) / l11;
+        mStep[0] = (z0 - l10 * mStep[1] - l20 * mStep[2]) / l00;
+        return true;
+    }
+}
@@ -1,103 +1,276 @@
 package com.team1701.robot.subsystems.vision;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
 import com.team1701.lib.drivers.cameras.AprilTagCamera;
 import com.team1701.lib.drivers.cameras.AprilTagCameraIO;
+import com.team1701.lib.drivers.cameras.AprilTagFieldGeometry;
+import com.team1701.lib.drivers.cameras.SeededSimCameraProperties;
+import com.team1701.lib.profiling.ProfiledSubsystem;
+import com.team1701.lib.util.GeometryUtil;
+import com.team1701.lib.util.LoggingUtil;
+import com.team1701.lib.util.LoggingUtil.Level;
+import com.team1701.lib.util.LoggingUtil.LogKey;
+import com.team1701.robot.Configuration;
 import com.team1701.robot.Constants;
 import com.team1701.robot.Robot;
+import com.team1701.robot.RobotContext;
 import com.team1701.robot.estimation.PoseEstimator;
-import edu.wpi.first.apriltag.AprilTagFieldLayout;
-import edu.wpi.first.apriltag.AprilTagFields;
+import com.team1701.robot.loops.PhaseExecutor;
+import com.team1701.robot.loops.PhaseExecutor.Resource;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
-import org.littletonrobotics.junction.Logger;
-import org.photonvision.simulation.SimCameraProperties;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.Notifier;
 import org.photonvision.simulation.VisionSystemSim;
 
-public class Vision extends SubsystemBase {
-    private final PoseEstimator mPoseEstimator = PoseEstimator.getInstance();
+public class Vision extends ProfiledSubsystem implements AutoCloseable {
+    private static final LogKey kJointSolverCameraCountKey =
+            LoggingUtil.key("Vision/JointSolver/CameraCount", Level.DEBUG);
+    private static final LogKey kJointSolverRobotPoseKey = LoggingUtil.key("Vision/JointSolver/RobotPose", Level.MATCH);
+    private static final LogKey kJointSolverReprojectionErrorKey =
+            LoggingUtil.key("Vision/JointSolver/ReprojectionErrorPixels", Level.MATCH);
+    private static final LogKey kJointSolverIterationsKey =
+            LoggingUtil.key("Vision/JointSolver/Iterations", Level.DEBUG);
+    private static final LogKey kJointSolverTagCountKey = LoggingUtil.key("Vision/JointSolver/TagCount", Level.DEBUG);
+    private static final LogKey kJointSolverBudgetExceededKey =
+            LoggingUtil.key("Vision/JointSolver/BudgetExceeded", Level.MATCH);
+    private static final LogKey kJointSolverSolveTimeKey =
+            LoggingUtil.key("Vision/JointSolver/SolveTimeMs", Level.DEBUG);
+    private static final LogKey kSimPoseKey = LoggingUtil.key("Vision/SimPose", Level.DEBUG);
+
+    private final PoseEstimator mPoseEstimator;
     private final ArrayList<AprilTagCamera> mCameras = new ArrayList<AprilTagCamera>();
-    private AprilTagFieldLayout mAprilTagFieldLayout = AprilTagFields.kDefaultField.loadAprilTagLayoutField();
-    private Optional<VisionSystemSim> mVisionSim = Optional.empty();
+    private final AprilTagFieldGeometry mFieldGeometry = Constants.Vision.kFieldGeometry;
+    private final AtomicReference<Pose2d> mSimPose = new AtomicReference<>(GeometryUtil.kPoseIdentity);
+    private final ArrayList<Notifier> mVisionSimNotifiers = new ArrayList<>();
+    private Supplier<Pose2d> mSimPoseSupplier;
+    private Optional<JointPoseSolver> mJointPoseSolver = Optional.empty();
+    private double[] mLastJointSolveTimestamps;
+    private AprilTagCamera[] mJointSolveCameras;
+    private int mJointSolveCameraCount;
+    private double mJointSolveTimestamp;
+    private Optional<JointPoseSolver.Result> mJointSolution = Optional.empty();
+    private Pose3d mRobotPoseSnapshot = new Pose3d();
 
     public Vision(
+            RobotContext context,
             AprilTagCameraIO cameraIOFrontLeft,
             AprilTagCameraIO cameraIOFrontRight,
             AprilTagCameraIO cameraIOBackLeft,
             AprilTagCameraIO cameraIOBackRight) {
-        Supplier<AprilTagFieldLayout> fieldLayoutSupplier = () -> mAprilTagFieldLayout;
-
+        mPoseEstimator = context.getPoseEstimator();
+        mSimPoseSupplier = mPoseEstimator::getPose2d;
         mCameras.add(new AprilTagCamera(
                 Constants.Vision.kFrontLeftCameraName,
                 cameraIOFrontLeft,
                 Constants.Vision.kRobotToFrontLeftCamPose,
                 Constants.Vision.kPoseStrategy,
                 Constants.Vision.kFallbackPoseStrategy,
-                fieldLayoutSupplier,
-                mPoseEstimator::getPose3d));
+                mFieldGeometry,
+                mPoseEstimator::getPose3d,
+                context.getAlerts()));
         mCameras.add(new AprilTagCamera(
                 Constants.Vision.kFrontRightCameraName,
                 cameraIOFrontRight,
                 Constants.Vision.kRobotToFrontRightCamPose,
                 Constants.Vision.kPoseStrategy,
                 Constants.Vision.kFallbackPoseStrategy,
-                fieldLayoutSupplier,
-                mPoseEstimator::getPose3d));
+                mFieldGeometry,
+                mPoseEstimator::getPose3d,
+                context.getAlerts()));
         mCameras.add(new AprilTagCamera(
                 Constants.Vision.kBackLeftCameraName,
                 cameraIOBackLeft,
                 Constants.Vision.kRobotToBackLeftCamPose,
                 Constants.Vision.kPoseStrategy,
                 Constants.Vision.kFallbackPoseStrategy,
-                fieldLayoutSupplier,
-                mPoseEstimator::getPose3d));
+                mFieldGeometry,
+                mPoseEstimator::getPose3d,
+                context.getAlerts()));
         mCameras.add(new AprilTagCamera(
                 Constants.Vision.kBackRightCameraName,
                 cameraIOBackRight,
                 Constants.Vision.kRobotToBackRightCamPose,
                 Constants.Vision.kPoseStrategy,
                 Constants.Vision.kFallbackPoseStrategy,
-                fieldLayoutSupplier,
-                mPoseEstimator::getPose3d));
+                mFieldGeometry,
+                mPoseEstimator::getPose3d,
+                context.getAlerts()));
 
-        if (Robot.isSimulation()) {
-            var visionSim = new VisionSystemSim("main");
-            visionSim.addAprilTags(AprilTagFields.kDefaultField.loadAprilTagLayoutField());
+        // Rendering the cameras would dominate the cost of a headless simulation, which relies on odometry by default
+        var simulationParameters = Configuration.getSimulationParameters();
+        if (Robot.isSimulation() && (!Configuration.isHeadless() || simulationParameters.simulateCameras())) {
+            // Each camera is rendered by its own simulation on its own thread at the camera's frame rate, and draws its
+            // noise from its own generator so that the threads do not share one
+            for (var i = 0; i < mCameras.size(); i++) {
+                var camera = mCameras.get(i);
+                var cameraProperties = new SeededSimCameraProperties(simulationParameters.seed() * 31 + i);
+                cameraProperties.setCalibration(960, 720, Rotation2d.fromDegrees(90));
+                cameraProperties.setCalibError(
+                        simulationParameters.cameraCalibrationErrorPixels(),
+                        simulationParameters.cameraCalibrationErrorStdDevPixels());
+                cameraProperties.setFPS(15);
+                cameraProperties.setAvgLatencyMs(simulationParameters.cameraLatencyMs());
+                cameraProperties.setLatencyStdDevMs(simulationParameters.cameraLatencyStdDevMs());
 
-            var cameraProperties = new SimCameraProperties();
-            cameraProperties.setCalibration(960, 720, Rotation2d.fromDegrees(90));
-            cameraProperties.setCalibError(0.35, 0.10);
-            cameraProperties.setFPS(15);
-            cameraProperties.setAvgLatencyMs(50);
-            cameraProperties.setLatencyStdDevMs(15);
+                var visionSim = new VisionSystemSim(camera.getName());
+                visionSim.addAprilTags(mFieldGeometry.getFieldLayout());
+                camera.addToVisionSim(visionSim, cameraProperties);
 
-            mCameras.forEach(camera -> camera.addToVisionSim(visionSim, cameraProperties));
+                var notifier = new Notifier(() -> visionSim.update(mSimPose.get()));
+                notifier.setName("VisionSim" + camera.getName());
+                notifier.startPeriodic(1.0 / cameraProperties.getFPS());
+                mVisionSimNotifiers.add(notifier);
+            }
+        }
 
-            mVisionSim = Optional.of(visionSim);
+        if (Constants.Vision.kUseJointPoseSolver) {
+            mJointPoseSolver = Optional.of(new JointPoseSolver(
+                    mFieldGeometry,
+                    mCameras.stream().map(AprilTagCamera::getRobotToCamPose).toArray(Transform3d[]::new),
+                    Constants.Vision.kJointSolverMaxIterations,
+                    Constants.Vision.kJointSolverTimeBudgetSeconds,
+                    Constants.Vision.kJointSolverHuberThresholdPixels));
         }
 
+        mLastJointSolveTimestamps = new double[mCameras.size()];
+        mJointSolveCameras = new AprilTagCamera[mCameras.size()];
+
         mCameras.forEach(camera -> {
-            camera.addEstimatedPoseConsumer(estimation -> PoseEstimator.getInstance()
-                    .addVisionMeasurement(estimation.estimatedPose.toPose2d(), estimation.timestampSeconds));
+            // The joint solver fuses all cameras at once, so per-camera estimates are only fused without it
+            if (mJointPoseSolver.isEmpty()) {
+                camera.addEstimatedPoseConsumer(estimation -> mPoseEstimator.addVisionMeasurement(
+                        estimation.estimatedPose.toPose2d(), estimation.timestampSeconds));
+            }
+
+            camera.addTargetFilter(target -> mFieldGeometry.hasTag(target.getFiducialId()));
             camera.addTargetFilter(target -> target.getPoseAmbiguity() < Constants.Vision.kMaxPoseAmbiguity);
+            camera.setLatencyBudget(Constants.Vision.kMaxPipelineLatencySeconds);
+        });
+    }
+
+    public void registerPhases(PhaseExecutor executor) {
+        executor.addInputStage("Vision/Inputs", () -> {
+            mCameras.forEach(AprilTagCamera::updateInputs);
+
+            // Cameras are processed alongside odometry, so they use the pose from before this cycle's odometry update
+            mRobotPoseSnapshot = mPoseEstimator.getPose3d();
         });
+        executor.addPhase("Vision/Estimate", EnumSet.of(Resource.VISION), EnumSet.of(Resource.VISION), () -> {
+            mCameras.forEach(camera -> camera.processFrame(mRobotPoseSnapshot));
+            mJointSolution = mJointPoseSolver.flatMap(this::solveJointPose);
+        });
+        executor.addPhase("Vision/Fuse", EnumSet.of(Resource.VISION), EnumSet.of(Resource.POSE_ESTIMATE), () -> {
+            mCameras.forEach(AprilTagCamera::consumeEstimate);
+            mJointSolution.ifPresent(this::fuseJointPose);
+        });
+    }
+
+    private Optional<JointPoseSolver.Result> solveJointPose(JointPoseSolver solver) {
+        // Align to the newest frame that has not yet been used by a solve
+        var newestTimestamp = Double.NEGATIVE_INFINITY;
+        for (var i = 0; i < mCameras.size(); i++) {
+            var result = mCameras.get(i).getFilteredPipelineResult();
+            if (result.hasTargets() && result.getTimestampSeconds() > mLastJointSolveTimestamps[i]) {
+                newestTimestamp = Math.max(newestTimestamp, result.getTimestampSeconds());
+            }
+        }
+
+        if (newestTimestamp == Double.NEGATIVE_INFINITY) {
+            return Optional.empty();
+        }
+
+        solver.reset();
+        var timestampSum = 0.0;
+        var cameraCount = 0;
+        for (var i = 0; i < mCameras.size(); i++) {
+            var camera = mCameras.get(i);
+            var result = camera.getFilteredPipelineResult();
+            var timestamp = result.getTimestampSeconds();
+            if (!result.hasTargets()
+                    || timestamp <= mLastJointSolveTimestamps[i]
+                    || newestTimestamp - timestamp > Constants.Vision.kJointSolverMaxTimestampSkewSeconds) {
+                continue;
+            }
+
+            var targetAdded = false;
+            for (var target : result.getTargets()) {
+                targetAdded |= solver.addTarget(i, camera.getCameraMatrix(), target);
+            }
+
+            if (targetAdded) {
+                mJointSolveCameras[cameraCount] = camera;
+                mLastJointSolveTimestamps[i] = timestamp;
+                timestampSum += timestamp;
+                cameraCount++;
+            }
+        }
+
+        if (cameraCount == 0) {
+            return Optional.empty();
+        }
+
+        var solution = solver.solve(mRobotPoseSnapshot.toPose2d());
+        LoggingUtil.record(kJointSolverCameraCountKey, cameraCount);
+        if (solution.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var result = solution.get();
+        LoggingUtil.record(kJointSolverRobotPoseKey, result.pose());
+        LoggingUtil.record(kJointSolverReprojectionErrorKey, result.rmsErrorPixels());
+        LoggingUtil.record(kJointSolverIterationsKey, result.iterations());
+        LoggingUtil.record(kJointSolverTagCountKey, result.tagCount());
+        LoggingUtil.record(kJointSolverBudgetExceededKey, result.budgetExceeded());
+        LoggingUtil.record(kJointSolverSolveTimeKey, result.solveTimeSeconds() * 1000.0);
+
+        if (result.rmsErrorPixels() > Constants.Vision.kJointSolverMaxReprojectionErrorPixels) {
+            return Optional.empty();
+        }
+
+        mJointSolveCameraCount = cameraCount;
+        mJointSolveTimestamp = timestampSum / cameraCount;
+        return solution;
+    }
+
+    private void fuseJointPose(JointPoseSolver.Result result) {
+        mPoseEstimator.addVisionMeasurement(result.pose(), mJointSolveTimestamp);
+        for (var i = 0; i < mJointSolveCameraCount; i++) {
+            mJointSolveCameras[i].recordFusion();
+        }
+    }
+
+    public void setSkipDuplicateFrames(boolean skip) {
+        mCameras.forEach(camera -> camera.setSkipDuplicateFrames(skip));
+    }
+
+    /** Sets the pose the simulated cameras see the field from, which defaults to the estimated pose. */
+    public void setSimPoseSupplier(Supplier<Pose2d> simPoseSupplier) {
+        mSimPoseSupplier = simPoseSupplier;
     }
 
+    /** Stops and releases the camera simulation threads. */
     @Override
-    public void periodic() {
-        mCameras.forEach(AprilTagCamera::periodic);
+    public void close() {
+        mVisionSimNotifiers.forEach(Notifier::close);
+        mVisionSimNotifiers.clear();
     }
 
     @Override
-    public void simulationPeriodic() {
-        if (mVisionSim.isEmpty()) {
+    protected void profiledSimulationPeriodic() {
+        if (mVisionSimNotifiers.isEmpty()) {
             return;
         }
 
-        mVisionSim.get().update(mPoseEstimator.getPose2d());
-        Logger.recordOutput("Vision/SimPose", mVisionSim.get().getDebugField().getRobotPose());
+        // The camera simulation threads read this snapshot rather than the supplier, which may not be thread-safe
+        var simPose = mSimPoseSupplier.get();
+        mSimPose.set(simPose);
+        LoggingUtil.record(kSimPoseKey, simPose);
     }
 }
@@ -0,0 +1,140 @@
+package com.team1701.lib.logging;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+
+import com.team1701.lib.logging.BufferedWPILOGWriter.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.littletonrobotics.junction.LogTable;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BufferedWPILOGWriterTest {
+    // The smallest buffer the writer allows, two blocks
+    private static final int kTwoBlocksBytes = 256 * 1024;
+    private static final long kStallMillis = 100;
+
+    @TempDir
+    Path mFolder;
+
+    @Test
+    void writtenLogReadsBack() throws IOException {
+        var writer = new BufferedWPILOGWriter(mFolder.toString(), kTwoBlocksBytes, OverflowPolicy.BLOCK);
+        writer.start();
+        for (var cycle = 0; cycle < 3; cycle++) {
+            writer.putTable(createTable(cycle));
+        }
+
+        writer.end();
+
+        var reader = openLog();
+
+        // AdvantageKit's reader ignores entries without this metadata
+        for (var entry : reader.getEntries()) {
+            assertEquals("{\"source\":\"AdvantageKit\"}", entry.getMetadata());
+        }
+
+        var timestamp = reader.getEntry("/Timestamp").orElseThrow();
+        assertEquals(3, timestamp.getRecordCount());
+        assertEquals(60_000L, reader.getInteger(timestamp.getRecord(2)));
+
+        var speed = reader.getEntry("/Drive/Speed").orElseThrow();
+        assertEquals("double", speed.getType());
+        assertEquals(3, speed.getRecordCount());
+        assertEquals(3.0, reader.getDouble(speed.getRecord(2)));
+        assertEquals(40_000L, speed.getTimestamp(1));
+
+        // Unchanged values are only written once
+        var mode = reader.getEntry("/Drive/Mode").orElseThrow();
+        assertEquals(1, mode.getRecordCount());
+        assertEquals("Teleop", reader.getString(mode.getRecord(0)));
+
+        var modules = reader.getEntry("/Drive/Modules").orElseThrow();
+        assertEquals("double[]", modules.getType());
+        assertArrayEquals(new double[] {2.0, -2.0}, reader.getDoubleArray(modules.getRecord(2)));
+        assertEquals(1, modules.findRecord(45_000L));
+    }
+
+    @Test
+    void droppedBlocksAreWrittenAgain() throws IOException {
+        // Every cycle submits its own block, so with the drain held each cycle after the second drops the oldest
+        var writer = new BufferedWPILOGWriter(mFolder.toString(), kTwoBlocksBytes, OverflowPolicy.DROP_OLDEST);
+        writer.setDrainPaused(true);
+        writer.start();
+        for (var cycle = 0; cycle < 5; cycle++) {
+            writer.putTable(createTable(cycle));
+        }
+
+        writer.setDrainPaused(false);
+        writer.end();
+
+        assertEquals(3, writer.getDroppedBlocks());
+        assertEquals(0, writer.getStallNanos());
+
+        // The fourth cycle's entries were started in the third cycle's dropped block, so its records have no entry
+        var reader = openLog();
+        assertTrue(reader.getRecordEntry(0).isEmpty());
+
+        // The last cycle started every entry again and wrote every value, including the unchanged ones
+        var timestamp = reader.getEntry("/Timestamp").orElseThrow();
+        assertEquals(1, timestamp.getRecordCount());
+        assertEquals(100_000L, reader.getInteger(timestamp.getRecord(0)));
+
+        var speed = reader.getEntry("/Drive/Speed").orElseThrow();
+        assertEquals(1, speed.getRecordCount());
+        assertEquals(6.0, reader.getDouble(speed.getRecord(0)));
+
+        var mode = reader.getEntry("/Drive/Mode").orElseThrow();
+        assertEquals("{\"source\":\"AdvantageKit\"}", mode.getMetadata());
+        assertEquals(1, mode.getRecordCount());
+        assertEquals("Teleop", reader.getString(mode.getRecord(0)));
+    }
+
+    @Test
+    void fullBufferStallsTheLogger() throws Exception {
+        var writer = new BufferedWPILOGWriter(mFolder.toString(), kTwoBlocksBytes, OverflowPolicy.BLOCK);
+        writer.setDrainPaused(true);
+        writer.start();
+
+        // The third cycle has to wait for the I/O thread to free a block
+        var producer = new Thread(() -> {
+            for (var cycle = 0; cycle < 3; cycle++) {
+                writer.putTable(createTable(cycle));
+            }
+        });
+        producer.start();
+        Thread.sleep(kStallMillis);
+        assertTrue(producer.isAlive(), "Logger did not wait for a free block");
+
+        writer.setDrainPaused(false);
+        producer.join();
+        writer.end();
+
+        assertEquals(0, writer.getDroppedBlocks());
+        assertTrue(writer.getStallNanos() > 0, "No stall time was recorded");
+
+        var reader = openLog();
+        var timestamp = reader.getEntry("/Timestamp").orElseThrow();
+        assertEquals(3, timestamp.getRecordCount());
+        assertEquals(3.0, reader.getDouble(reader.getEntry("/Drive/Speed").orElseThrow().getRecord(2)));
+    }
+
+    private MappedWPILOGReader openLog() throws IOException {
+        var files = Files.list(mFolder).collect(Collectors.toList());
+        assertEquals(1, files.size());
+        return new MappedWPILOGReader(files.get(0));
+    }
+
+    private static LogTable createTable(int cycle) {
+        var table = new LogTable(20_000L * (cycle + 1));
+        table.put("Drive/Speed", cycle * 1.5);
+        table.put("Drive/Mode", "Teleop");
+        table.put("Drive/Modules", new double[] {cycle, -cycle});
+        return table;
+    }
+}
@@ -0,0 +1,41 @@
+package com.team1701.robot;
+
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.OperatingSystemMXBean;
+import edu.wpi.first.math.geometry.Transform2d;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Only one headless simulation can run per JVM, so the test task forks a JVM for each test class
+class HeadlessSimulationTest {
+    private static final double kTimeoutSeconds = 15.0;
+    private static final double kMaxTranslationErrorMeters = 0.25;
+    private static final double kMaxCpuSeconds = 1.0;
+
+    @Test
+    void demoAutonomousCompletesFasterThanRealTime() {
+        var osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        var compilationBean = ManagementFactory.getCompilationMXBean();
+        try (var simulation = HeadlessSimulation.start()) {
+            // The demo routine is the default option of the autonomous chooser
+            var cpuStartNanos = osBean.getProcessCpuTime();
+            var compilationStartMillis = compilationBean.getTotalCompilationTime();
+            var result = simulation.runAutonomous(kTimeoutSeconds, new Transform2d());
+
+            // The JVM is cold, so the time spent compiling the robot code is not counted against the simulation
+            var compilationSeconds = (compilationBean.getTotalCompilationTime() - compilationStartMillis) / 1e3;
+            var cpuSeconds = (osBean.getProcessCpuTime() - cpuStartNanos) / 1e9 - compilationSeconds;
+
+            assertTrue(result.completed(), "Demo routine did not finish within " + kTimeoutSeconds + " s");
+            assertTrue(
+                    result.translationErrorMeters() < kMaxTranslationErrorMeters,
+                    "Pose estimate ended " + result.translationErrorMeters() + " m from the true pose");
+            assertTrue(
+                    cpuSeconds < kMaxCpuSeconds,
+                    "Simulating " + result.durationSeconds() + " s of autonomous used " + cpuSeconds
+                            + " s of CPU, excluding " + compilationSeconds + " s compiling");
+        }
+    }
+}
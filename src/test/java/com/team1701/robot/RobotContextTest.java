@@ -0,0 +1,112 @@
+package com.team1701.robot;
+
+import com.team1701.lib.alerts.Alert.AlertType;
+import com.team1701.lib.alerts.AlertGroup;
+import com.team1701.lib.commands.CommandLogger;
+import com.team1701.lib.commands.LoggedCommands;
+import com.team1701.robot.estimation.PoseEstimator;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Commands;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Builds two robots in one JVM, so the test task forks a JVM for this class as for every other
+class RobotContextTest {
+    private static final String kControllerAlert = "Driver controller disconnected";
+
+    private static RobotContainer mFirst;
+    private static RobotContainer mSecond;
+
+    @BeforeAll
+    static void createRobots() {
+        // Skip the camera simulation and tunable listeners, as a headless simulation does
+        System.setProperty(Configuration.kHeadlessProperty, "true");
+        System.setProperty(Configuration.kRobotProperty, Configuration.RobotType.SIMULATION_BOT.name());
+        assertTrue(HAL.initialize(500, 0), "Failed to initialize the HAL");
+
+        mFirst = new RobotContainer(
+                new RobotContext(new PoseEstimator(), new CommandLogger(), new AlertGroup("FirstAlerts")));
+        mSecond = new RobotContainer(
+                new RobotContext(new PoseEstimator(), new CommandLogger(), new AlertGroup("SecondAlerts")));
+    }
+
+    @AfterAll
+    static void closeRobots() {
+        CommandScheduler.getInstance().cancelAll();
+        mFirst.close();
+        mSecond.close();
+    }
+
+    @Test
+    void poseEstimatesStaySeparate() {
+        var firstPose = new Pose2d(2.0, 3.0, Rotation2d.fromDegrees(90));
+        var secondPose = new Pose2d(12.0, 5.0, Rotation2d.fromDegrees(180));
+        mFirst.getContext().getPoseEstimator().setPose(firstPose);
+        mSecond.getContext().getPoseEstimator().setPose(secondPose);
+
+        // Each robot's drive updates odometry on its own estimator
+        mFirst.getPhaseExecutor().periodic();
+        mSecond.getPhaseExecutor().periodic();
+
+        assertPoseEquals(firstPose, mFirst.getContext().getPoseEstimator().getPose2d());
+        assertPoseEquals(secondPose, mSecond.getContext().getPoseEstimator().getPose2d());
+    }
+
+    @Test
+    void commandsAreLoggedByTheirOwnRobot() {
+        var name = "FirstRobotCommand";
+        var command = LoggedCommands.logged(
+                mFirst.getContext().getCommandLogger(), Commands.idle().ignoringDisable(true).withName(name));
+        CommandScheduler.getInstance().schedule(command);
+        try {
+            assertEquals(1, mFirst.getContext().getCommandLogger().getActiveCount(name));
+            assertEquals(0, mSecond.getContext().getCommandLogger().getActiveCount(name));
+        } finally {
+            command.cancel();
+        }
+
+        assertEquals(0, mFirst.getContext().getCommandLogger().getActiveCount(name));
+    }
+
+    @Test
+    void alertsStayInTheirOwnGroup() {
+        var firstAlerts = mFirst.getContext().getAlerts();
+        var secondAlerts = mSecond.getContext().getAlerts();
+
+        // No controller is connected, so each robot raises its own controller alert in its own group only
+        assertEquals(
+                1,
+                firstAlerts.getEnabledMessages(AlertType.ERROR).stream()
+                        .filter(kControllerAlert::equals)
+                        .count());
+        assertEquals(
+                1,
+                secondAlerts.getEnabledMessages(AlertType.ERROR).stream()
+                        .filter(kControllerAlert::equals)
+                        .count());
+
+        var alert = firstAlerts.warning("First robot only");
+        alert.enable();
+        try {
+            assertTrue(firstAlerts.getEnabledMessages(AlertType.WARNING).contains("First robot only"));
+            assertFalse(secondAlerts.getEnabledMessages(AlertType.WARNING).contains("First robot only"));
+        } finally {
+            alert.disable();
+        }
+    }
+
+    private static void assertPoseEquals(Pose2d expected, Pose2d actual) {
+        assertTrue(
+                expected.getTranslation().getDistance(actual.getTranslation()) < 1e-6
+                        && Math.abs(expected.getRotation().minus(actual.getRotation()).getRadians()) < 1e-6,
+                "Expected " + expected + " but was " + actual);
+    }
+}
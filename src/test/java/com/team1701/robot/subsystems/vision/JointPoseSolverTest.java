@@ -0,0 +1,112 @@
+package com.team1701.robot.subsystems.vision;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.team1701.lib.drivers.cameras.AprilTagFieldGeometry;
+import com.team1701.lib.drivers.cameras.SeededSimCameraProperties;
+import com.team1701.robot.Constants;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import org.junit.jupiter.api.Test;
+import org.photonvision.PhotonCamera;
+import org.photonvision.estimation.TargetModel;
+import org.photonvision.simulation.PhotonCameraSim;
+import org.photonvision.simulation.VisionSystemSim;
+import org.photonvision.simulation.VisionTargetSim;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JointPoseSolverTest {
+    private static final int kPoseCount = 200;
+    private static final int kMinSolvedPoses = 20;
+    private static final double kMaxSightRangeMeters = 5.0;
+    private static final double kMaxTranslationErrorMeters = 0.05;
+    private static final double kMaxRotationErrorDegrees = 1.0;
+
+    @Test
+    void recoversPoseFromSimulatedCameraCorners() {
+        var fieldGeometry = Constants.Vision.kFieldGeometry;
+        var robotToCameraPoses = new Transform3d[] {
+            Constants.Vision.kRobotToFrontLeftCamPose,
+            Constants.Vision.kRobotToFrontRightCamPose,
+            Constants.Vision.kRobotToBackLeftCamPose,
+            Constants.Vision.kRobotToBackRightCamPose
+        };
+
+        // Render every tag with the same size and corner order the solver assumes
+        var visionSim = new VisionSystemSim("JointPoseSolverTest");
+        var tagModel = new TargetModel(AprilTagFieldGeometry.kTagSizeMeters, AprilTagFieldGeometry.kTagSizeMeters);
+        for (var t = 0; t < fieldGeometry.getTagCount(); t++) {
+            var id = fieldGeometry.getTagId(t);
+            visionSim.addVisionTargets("apriltag", new VisionTargetSim(fieldGeometry.getTagPose(id), tagModel, id));
+        }
+
+        var targets = new ArrayList<>(visionSim.getVisionTargets());
+        var cameraSims = new PhotonCameraSim[robotToCameraPoses.length];
+        var cameraMatrices = new double[robotToCameraPoses.length][];
+        for (var i = 0; i < robotToCameraPoses.length; i++) {
+            var cameraProperties = new SeededSimCameraProperties(1701 + i);
+            cameraProperties.setCalibration(960, 720, Rotation2d.fromDegrees(90));
+            cameraProperties.setCalibError(0.25, 0.08);
+
+            var cameraSim = new PhotonCameraSim(new PhotonCamera("JointPoseSolverTest" + i), cameraProperties);
+            cameraSim.setMaxSightRange(kMaxSightRangeMeters);
+            cameraSim.enableRawStream(false);
+            cameraSim.enableProcessedStream(false);
+            visionSim.addCamera(cameraSim, robotToCameraPoses[i]);
+            cameraSims[i] = cameraSim;
+            cameraMatrices[i] = cameraProperties.getIntrinsics().getData();
+        }
+
+        // The time budget is only meaningful once the solver has been compiled, so it is lifted here
+        var solver = new JointPoseSolver(
+                fieldGeometry, robotToCameraPoses, 20, 1.0, Constants.Vision.kJointSolverHuberThresholdPixels);
+
+        var fieldLayout = fieldGeometry.getFieldLayout();
+        var random = new Random(1701);
+        var solvedPoses = 0;
+        for (var p = 0; p < kPoseCount; p++) {
+            var truePose = new Pose2d(
+                    1.0 + random.nextDouble() * (fieldLayout.getFieldLength() - 2.0),
+                    1.0 + random.nextDouble() * (fieldLayout.getFieldWidth() - 2.0),
+                    Rotation2d.fromRadians((random.nextDouble() * 2.0 - 1.0) * Math.PI));
+
+            solver.reset();
+            for (var i = 0; i < cameraSims.length; i++) {
+                var cameraPose = new Pose3d(truePose).plus(robotToCameraPoses[i]);
+                var result = cameraSims[i].process(0, cameraPose, targets);
+                for (var target : result.getTargets()) {
+                    solver.addTarget(i, cameraMatrices[i], target);
+                }
+            }
+
+            // A single tag barely constrains heading at range, so only poses that see two or more are checked
+            if (solver.getObservationCount() < 2 * AprilTagFieldGeometry.kCornersPerTag) {
+                continue;
+            }
+
+            var initialGuess = truePose.plus(new Transform2d(0.3, -0.2, Rotation2d.fromDegrees(5)));
+            var result = solver.solve(initialGuess);
+            assertTrue(result.isPresent(), "Solve failed at " + truePose);
+
+            var solvedPose = result.get().pose();
+            var translationError = solvedPose.getTranslation().getDistance(truePose.getTranslation());
+            var rotationError = Math.abs(solvedPose.getRotation().minus(truePose.getRotation()).getDegrees());
+            assertTrue(
+                    translationError < kMaxTranslationErrorMeters,
+                    "Solved " + solvedPose + " for " + truePose + ", off by " + translationError + " m");
+            assertTrue(
+                    rotationError < kMaxRotationErrorDegrees,
+                    "Solved " + solvedPose + " for " + truePose + ", off by " + rotationError + " degrees");
+            solvedPoses++;
+        }
+
+        assertTrue(
+                solvedPoses >= kMinSolvedPoses,
+                "Only " + solvedPoses + " of " + kPoseCount + " poses saw two or more tags");
+    }
+}
@@ -0,0 +1,75 @@
+package com.team1701.tools;
+
+import com.team1701.robot.Configuration;
+import com.team1701.robot.Configuration.SimulationParameters;
+import com.team1701.robot.HeadlessSimulation;
+import edu.wpi.first.math.geometry.Transform2d;
+
+/**
+ * Runs the default autonomous routine in a headless simulation and reports how long it took to simulate and how far
+ * the estimated pose ended from the true pose.
+ *
+ * <p>Run with {@code ./gradlew simulateAutonomous}, optionally with {@code --args="[--cameras] [--log path] [seconds]"}
+ * to simulate the cameras, log the run to a file or change the 15 s timeout. Logged runs with cameras are the inputs
+ * of {@link ReplayRegression}.
+ */
+public final class AutonomousSimulation {
+    private static final double kDefaultDurationSeconds = 15.0;
+
+    private AutonomousSimulation() {}
+
+    public static void main(String... args) {
+        var durationSeconds = kDefaultDurationSeconds;
+        var simulateCameras = false;
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--log":
+                    System.setProperty(Configuration.kHeadlessLogProperty, args[++i]);
+                    break;
+                case "--cameras":
+                    simulateCameras = true;
+                    break;
+                default:
+                    durationSeconds = Double.parseDouble(args[i]);
+                    break;
+            }
+        }
+
+        var defaults = SimulationParameters.kDefault;
+        var parameters = new SimulationParameters(
+                simulateCameras,
+                defaults.cameraCalibrationErrorPixels(),
+                defaults.cameraCalibrationErrorStdDevPixels(),
+                defaults.cameraLatencyMs(),
+                defaults.cameraLatencyStdDevMs(),
+                defaults.wheelCoefficientOfFriction(),
+                defaults.wheelPositionNoiseRadians(),
+                defaults.gyroYawNoiseRadians(),
+                defaults.seed());
+
+        var startNanos = System.nanoTime();
+        try (var simulation = HeadlessSimulation.start(parameters)) {
+            var runStartNanos = System.nanoTime();
+            var result = simulation.runAutonomous(durationSeconds, new Transform2d());
+            var runSeconds = (System.nanoTime() - runStartNanos) / 1e9;
+
+            var truePose = result.truePose();
+            System.out.printf(
+                    "Simulated %.2f s of autonomous (%s) in %.3f s (%.3f s including startup)%n",
+                    result.durationSeconds(),
+                    result.completed() ? "completed" : "timed out",
+                    runSeconds,
+                    (System.nanoTime() - startNanos) / 1e9);
+            System.out.printf(
+                    "Final pose (%.3f, %.3f, %.1f deg), estimate off by %.3f m and %.2f deg%n",
+                    truePose.getX(),
+                    truePose.getY(),
+                    truePose.getRotation().getDegrees(),
+                    result.translationErrorMeters(),
+                    Math.toDegrees(result.rotationErrorRadians()));
+        }
+
+        // Notifier and loop threads are not daemons
+        System.exit(0);
+    }
+}
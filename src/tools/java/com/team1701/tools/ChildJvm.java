@@ -0,0 +1,79 @@
+package com.team1701.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Launches tools in child JVMs with this JVM's class path and native library path. Tools run each simulation or replay
+ * in its own JVM, since the robot code relies on static state (the logger, the command scheduler, the HAL and the
+ * tunable numbers) that cannot be shared between them. A child reports its result by printing one line starting with
+ * a prefix, which {@link #runForResult} finds in its output.
+ */
+final class ChildJvm {
+    private ChildJvm() {}
+
+    /**
+     * Creates a process builder for a child JVM
+     *
+     * @param jvmArgs JVM options, placed before the class path
+     * @param mainClass Class whose main method the child runs
+     * @param args Arguments to the main method
+     */
+    static ProcessBuilder processBuilder(List<String> jvmArgs, Class<?> mainClass, String... args) {
+        var command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+        command.add(mainClass.getName());
+        command.addAll(Arrays.asList(args));
+        return new ProcessBuilder(command);
+    }
+
+    static ProcessBuilder processBuilder(Class<?> mainClass, String... args) {
+        return processBuilder(List.of(), mainClass, args);
+    }
+
+    /**
+     * Runs the child JVM with its output captured in a temporary file, and finds its result line. The file is deleted
+     * if the result is found, and otherwise kept for debugging and its path printed.
+     *
+     * @param processBuilder Child JVM to run
+     * @param resultPrefix Prefix of the line holding the result
+     * @param timeoutMinutes Time after which the child is killed
+     * @param description Description of the run for messages, such as "Trial 3"
+     * @return Rest of the first line starting with the prefix, or empty if the child failed or timed out
+     */
+    static Optional<String> runForResult(
+            ProcessBuilder processBuilder, String resultPrefix, long timeoutMinutes, String description)
+            throws IOException, InterruptedException {
+        var outputFile = Files.createTempFile("child_", ".txt");
+        var process = processBuilder
+                .redirectErrorStream(true)
+                .redirectOutput(outputFile.toFile())
+                .start();
+        if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            System.out.println(description + " timed out, output in " + outputFile);
+            return Optional.empty();
+        }
+
+        var resultLine = Files.readAllLines(outputFile).stream()
+                .filter(line -> line.startsWith(resultPrefix))
+                .findFirst();
+        if (resultLine.isEmpty()) {
+            System.out.println(description + " failed, output in " + outputFile);
+            return Optional.empty();
+        }
+
+        Files.delete(outputFile);
+        return Optional.of(resultLine.get().substring(resultPrefix.length()));
+    }
+}
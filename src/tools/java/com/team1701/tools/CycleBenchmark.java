@@ -0,0 +1,286 @@
+package com.team1701.tools;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+import com.team1701.robot.Configuration.SimulationParameters;
+import com.team1701.robot.Constants;
+import com.team1701.robot.HeadlessSimulation;
+import com.team1701.robot.commands.DriveCommands;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.XboxControllerSim;
+
+/**
+ * Measures the cost of complete robot cycles (the scheduler, subsystem phases, command logging and AdvantageKit's
+ * logging) on the robot thread of a headless simulation, over several scripted driving scenarios. Reports the time and
+ * the bytes allocated per cycle, including those of the phase executor's worker thread, and the garbage collections
+ * during each scenario.
+ *
+ * <p>Each profile runs in its own JVM. The host profile uses the JVM defaults. The roboRIO profile limits the JVM to
+ * two processors, a serial collector and a small heap. The clock frequency cannot be lowered from the JVM, so that
+ * profile also scales its 99th percentile by a slowdown factor to estimate the share of the loop period used on the
+ * robot; the default is a rough single-thread ratio between a desktop core and the roboRIO's 866 MHz Cortex-A9, and
+ * should be calibrated against LoopProfiler/CycleMs from a robot log. Camera simulation runs on its own threads, which
+ * are on coprocessors on the robot, so it is off by default in the roboRIO profile and on in the host profile;
+ * {@code --cameras} and {@code --no-cameras} override the default for every profile.
+ *
+ * <p>Run with {@code ./gradlew benchmarkCycle --args="[--profile host|rio|all] [--cycles N] [--warmup N]
+ * [--rio-slowdown X] [--cameras|--no-cameras]"}.
+ */
+public final class CycleBenchmark {
+    private static final List<String> kRioJvmArgs =
+            List.of("-XX:ActiveProcessorCount=2", "-XX:+UseSerialGC", "-Xms128m", "-Xmx128m");
+    private static final double kDefaultRioSlowdown = 8.0;
+    private static final int kDriveToPosePeriodCycles = 150;
+    private static final int kAutonomousPeriodCycles = 750;
+    private static final Pose2d[] kDriveToPoseTargets = new Pose2d[] {
+        new Pose2d(2.0, 2.0, Rotation2d.fromDegrees(0.0)),
+        new Pose2d(6.0, 3.0, Rotation2d.fromDegrees(90.0)),
+        new Pose2d(4.0, 6.0, Rotation2d.fromDegrees(-135.0))
+    };
+
+    private record Scenario(
+            String name, Consumer<HeadlessSimulation> start, ObjIntConsumer<HeadlessSimulation> update) {}
+
+    private CycleBenchmark() {}
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        var profile = "all";
+        var cycles = 1500;
+        var warmupCycles = 500;
+        var rioSlowdown = kDefaultRioSlowdown;
+        Optional<Boolean> simulateCameras = Optional.empty();
+        String runProfile = null;
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--profile":
+                    profile = args[++i];
+                    break;
+                case "--cycles":
+                    cycles = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupCycles = Integer.parseInt(args[++i]);
+                    break;
+                case "--rio-slowdown":
+                    rioSlowdown = Double.parseDouble(args[++i]);
+                    break;
+                case "--cameras":
+                    simulateCameras = Optional.of(true);
+                    break;
+                case "--no-cameras":
+                    simulateCameras = Optional.of(false);
+                    break;
+                case "--run":
+                    runProfile = args[++i];
+                    break;
+                default:
+                    System.out.println("Usage: CycleBenchmark [--profile host|rio|all] [--cycles N] [--warmup N]"
+                            + " [--rio-slowdown X] [--cameras|--no-cameras]");
+                    System.exit(2);
+            }
+        }
+
+        if (runProfile != null) {
+            var isRio = runProfile.equals("rio");
+            runProfile(runProfile, cycles, warmupCycles, isRio ? rioSlowdown : 1.0, simulateCameras.orElse(!isRio));
+
+            // Notifier and loop threads are not daemons
+            System.exit(0);
+        }
+
+        var profiles = profile.equals("all") ? List.of("host", "rio") : List.of(profile);
+        var failed = false;
+        for (var name : profiles) {
+            if (!name.equals("host") && !name.equals("rio")) {
+                System.out.println("Unknown profile " + name);
+                System.exit(2);
+            }
+
+            failed |= !runProfileProcess(
+                    name, cycles, warmupCycles, rioSlowdown, simulateCameras.orElse(!name.equals("rio")));
+        }
+
+        System.exit(failed ? 1 : 0);
+    }
+
+    private static boolean runProfileProcess(
+            String profile, int cycles, int warmupCycles, double rioSlowdown, boolean simulateCameras)
+            throws IOException, InterruptedException {
+        var args = new ArrayList<>(List.of(
+                "--run",
+                profile,
+                "--cycles",
+                Integer.toString(cycles),
+                "--warmup",
+                Integer.toString(warmupCycles),
+                "--rio-slowdown",
+                Double.toString(rioSlowdown)));
+        args.add(simulateCameras ? "--cameras" : "--no-cameras");
+
+        var jvmArgs = profile.equals("rio") ? kRioJvmArgs : List.<String>of();
+        var exitCode = ChildJvm.processBuilder(jvmArgs, CycleBenchmark.class, args.toArray(String[]::new))
+                .inheritIO()
+                .start()
+                .waitFor();
+        if (exitCode != 0) {
+            System.out.println("Profile " + profile + " failed with exit code " + exitCode);
+        }
+
+        return exitCode == 0;
+    }
+
+    private static void runProfile(
+            String profile, int cycles, int warmupCycles, double slowdown, boolean simulateCameras) {
+        var defaults = SimulationParameters.kDefault;
+        var parameters = new SimulationParameters(
+                simulateCameras,
+                defaults.cameraCalibrationErrorPixels(),
+                defaults.cameraCalibrationErrorStdDevPixels(),
+                defaults.cameraLatencyMs(),
+                defaults.cameraLatencyStdDevMs(),
+                defaults.wheelCoefficientOfFriction(),
+                defaults.wheelPositionNoiseRadians(),
+                defaults.gyroYawNoiseRadians(),
+                defaults.seed());
+
+        try (var simulation = HeadlessSimulation.start(parameters)) {
+            var controller = new XboxControllerSim(0);
+            DriverStationSim.setJoystickIsXbox(0, true);
+            var scenarios = createScenarios(controller);
+
+            // Every scenario is warmed up first, so that no scenario is measured while another's code is compiling
+            for (var scenario : scenarios) {
+                runScenario(simulation, scenario, warmupCycles);
+            }
+
+            System.out.printf(
+                    "%nProfile %s: %d processors, %d MB max heap, cameras %s, %d cycles per scenario%n",
+                    profile,
+                    Runtime.getRuntime().availableProcessors(),
+                    Runtime.getRuntime().maxMemory() / (1024 * 1024),
+                    simulateCameras ? "on" : "off",
+                    cycles);
+            var header = "  Scenario          mean ms   p50 ms   p95 ms   p99 ms   max ms  KB/cycle  max KB   GCs";
+            System.out.println(slowdown != 1.0 ? header + String.format("  p99 x%.1f budget", slowdown) : header);
+            for (var scenario : scenarios) {
+                var gcCountBefore = getGcCount();
+                var samples = runScenario(simulation, scenario, cycles);
+                var gcCount = getGcCount() - gcCountBefore;
+                var nanos = samples[0];
+                var bytes = samples[1];
+                Arrays.sort(nanos);
+                Arrays.sort(bytes);
+
+                var p99Ms = percentile(nanos, 0.99) / 1e6;
+                var line = String.format(
+                        "  %-16s %8.3f %8.3f %8.3f %8.3f %8.3f %9.1f %7.1f %5d",
+                        scenario.name(),
+                        Arrays.stream(nanos).average().orElse(0.0) / 1e6,
+                        percentile(nanos, 0.5) / 1e6,
+                        percentile(nanos, 0.95) / 1e6,
+                        p99Ms,
+                        nanos[nanos.length - 1] / 1e6,
+                        Arrays.stream(bytes).average().orElse(0.0) / 1024.0,
+                        bytes[bytes.length - 1] / 1024.0,
+                        gcCount);
+                if (slowdown != 1.0) {
+                    var budgetPercent = 100.0 * p99Ms * slowdown / (Constants.kLoopPeriodSeconds * 1e3);
+                    line += String.format("  %15.0f%%", budgetPercent);
+                }
+
+                System.out.println(line);
+            }
+        }
+    }
+
+    private static List<Scenario> createScenarios(XboxControllerSim controller) {
+        Consumer<HeadlessSimulation> centerSticks = simulation -> {
+            controller.setLeftX(0.0);
+            controller.setLeftY(0.0);
+            controller.setRightX(0.0);
+            controller.notifyNewData();
+        };
+
+        var enableTeleop = centerSticks.andThen(HeadlessSimulation::enableTeleop);
+        return List.of(
+                new Scenario("Disabled", centerSticks.andThen(HeadlessSimulation::disable), (simulation, cycle) -> {}),
+                new Scenario("TeleopIdle", enableTeleop, (simulation, cycle) -> {}),
+                new Scenario("TeleopDriving", HeadlessSimulation::enableTeleop, (simulation, cycle) -> {
+                    // Incommensurate periods, so the sticks sweep through combined translation and rotation
+                    var t = cycle * Constants.kLoopPeriodSeconds;
+                    controller.setLeftY(0.8 * Math.sin(0.5 * t));
+                    controller.setLeftX(0.6 * Math.sin(0.31 * t));
+                    controller.setRightX(0.5 * Math.sin(0.73 * t));
+                    controller.notifyNewData();
+                }),
+                new Scenario("DriveToPose", enableTeleop, (simulation, cycle) -> {
+                    if (cycle % kDriveToPosePeriodCycles != 0) {
+                        return;
+                    }
+
+                    // Retargeting interrupts the previous command if it has not finished
+                    var robotContainer = simulation.getRobotContainer();
+                    var target = kDriveToPoseTargets[(cycle / kDriveToPosePeriodCycles) % kDriveToPoseTargets.length];
+                    simulation.schedule(DriveCommands.driveToPose(
+                            robotContainer.getContext(),
+                            robotContainer.mDrive,
+                            target,
+                            Constants.Drive.kFastTrapezoidalKinematicLimits,
+                            true));
+                }),
+                new Scenario("Autonomous", centerSticks, (simulation, cycle) -> {
+                    // Restart the routine periodically, placing the robot where the routine resets its pose to
+                    switch (cycle % kAutonomousPeriodCycles) {
+                        case 0:
+                            simulation.enableAutonomous();
+                            break;
+                        case 2:
+                            simulation.setPose(simulation
+                                    .getRobotContainer()
+                                    .getContext()
+                                    .getPoseEstimator()
+                                    .getPose2d());
+                            break;
+                        case kAutonomousPeriodCycles - 1:
+                            simulation.disable();
+                            break;
+                        default:
+                            break;
+                    }
+                }));
+    }
+
+    private static long[][] runScenario(HeadlessSimulation simulation, Scenario scenario, int cycles) {
+        var nanos = new long[cycles];
+        var bytes = new long[cycles];
+        scenario.start().accept(simulation);
+        for (var i = 0; i < cycles; i++) {
+            scenario.update().accept(simulation, i);
+            simulation.step(1);
+            nanos[i] = simulation.getLastCycleNanos();
+            bytes[i] = simulation.getLastCycleAllocatedBytes();
+        }
+
+        return new long[][] {nanos, bytes};
+    }
+
+    private static long getGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static long percentile(long[] sortedValues, double percentile) {
+        return sortedValues[Math.min(sortedValues.length - 1, (int) (sortedValues.length * percentile))];
+    }
+}
@@ -0,0 +1,318 @@
+package com.team1701.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+import com.team1701.robot.Constants;
+import com.team1701.robot.HeadlessSimulation;
+import com.team1701.robot.commands.DriveCommands;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Tunes the drive and steer motor gains and the {@code DriveToPose} PID gains of the simulation robot by searching over
+ * headless simulations of scripted {@code DriveToPose} maneuvers. The search uses the cross-entropy method: each
+ * generation samples candidate gains around the current mean, evaluates them in parallel on a fork-join pool, and
+ * refits the mean and spread to the best quarter of the candidates.
+ *
+ * <p>A candidate's cost sums, over the maneuvers, the time to settle at the target, weighted final error of the true
+ * pose and weighted overshoot past the target. Each candidate is evaluated in its own JVM, since the robot code relies
+ * on static state that cannot be shared between simulations. The best gains are written to a candidate profile to be
+ * copied into {@link Constants} and {@code DriveToPose} after review; they fit the simulated drivetrain, not a real
+ * one.
+ *
+ * <p>Run with {@code ./gradlew tuneGains --args="[--generations N] [--population N] [--jobs N] [--seed S] [--output
+ * path]"}.
+ */
+public final class GainTuner {
+    private static final String kCostPrefix = "COST ";
+    private static final long kEvaluationTimeoutMinutes = 5;
+
+    private static final double kManeuverTimeoutSeconds = 5.0;
+    private static final double kFinalTranslationErrorWeight = 10.0;
+    private static final double kFinalRotationErrorWeight = 2.0;
+    private static final double kOvershootWeight = 10.0;
+
+    private static final double kInitialSpread = 0.15;
+    private static final double kMinSpread = 0.01;
+    private static final double kEliteFraction = 0.25;
+
+    private static final Pose2d kStartPose = new Pose2d(2.0, 2.0, Rotation2d.fromDegrees(0.0));
+    private static final List<Pose2d> kManeuverTargets = List.of(
+            new Pose2d(5.0, 2.0, Rotation2d.fromDegrees(0.0)),
+            new Pose2d(5.0, 4.0, Rotation2d.fromDegrees(90.0)),
+            new Pose2d(3.0, 3.0, Rotation2d.fromDegrees(-135.0)),
+            kStartPose);
+
+    // Initial values are the simulation robot's current defaults
+    private static final List<Parameter> kParameters = List.of(
+            new Parameter("Drive/Module/DriveKf", 0.05, 0.2, 0.1, true),
+            new Parameter("Drive/Module/DriveKp", 0.01, 5.0, 0.6, true),
+            new Parameter("Drive/Module/DriveKd", 0.0, 0.05, 0.0, false),
+            new Parameter("Drive/Module/SteerKp", 1.0, 100.0, 16.0, true),
+            new Parameter("Drive/Module/SteerKd", 0.0, 1.0, 0.0, false),
+            new Parameter("Command/DriveToPose/TranslationKp", 0.5, 20.0, 6.0, true),
+            new Parameter("Command/DriveToPose/TranslationKd", 0.0, 1.0, 0.0, false),
+            new Parameter("Command/DriveToPose/RotationKp", 0.5, 20.0, 4.0, true),
+            new Parameter("Command/DriveToPose/RotationKd", 0.0, 1.0, 0.0, false));
+
+    /** Tunable number searched between the bounds, in log space if logScale is set, which needs a positive minimum. */
+    private record Parameter(String key, double min, double max, double initial, boolean logScale) {
+        double fromNormalized(double normalized) {
+            return logScale
+                    ? Math.exp(Math.log(min) + normalized * (Math.log(max) - Math.log(min)))
+                    : min + normalized * (max - min);
+        }
+
+        double toNormalized(double value) {
+            return logScale
+                    ? (Math.log(value) - Math.log(min)) / (Math.log(max) - Math.log(min))
+                    : (value - min) / (max - min);
+        }
+    }
+
+    private record Candidate(double[] normalized, double[] values) {
+        static Candidate fromNormalized(double[] normalized) {
+            var values = new double[kParameters.size()];
+            for (var i = 0; i < values.length; i++) {
+                values[i] = kParameters.get(i).fromNormalized(normalized[i]);
+            }
+
+            return new Candidate(normalized, values);
+        }
+
+        String toArgument() {
+            return Arrays.stream(values).mapToObj(Double::toString).collect(Collectors.joining(","));
+        }
+    }
+
+    private record Evaluation(Candidate candidate, double cost) {}
+
+    private GainTuner() {}
+
+    public static void main(String... args) throws IOException {
+        var generations = 10;
+        var population = 24;
+        var jobs = Runtime.getRuntime().availableProcessors();
+        var seed = 0L;
+        var output = Paths.get("build", "tuning", "candidate_gains.txt");
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--generations":
+                    generations = Integer.parseInt(args[++i]);
+                    break;
+                case "--population":
+                    population = Integer.parseInt(args[++i]);
+                    break;
+                case "--jobs":
+                    jobs = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--output":
+                    output = Paths.get(args[++i]);
+                    break;
+                case "--evaluate":
+                    evaluate(Arrays.stream(args[++i].split(","))
+                            .mapToDouble(Double::parseDouble)
+                            .toArray());
+
+                    // Notifier and loop threads are not daemons
+                    System.exit(0);
+                    break;
+                default:
+                    System.out.println("Usage: GainTuner [--generations N] [--population N] [--jobs N] [--seed S]"
+                            + " [--output path]");
+                    System.exit(2);
+            }
+        }
+
+        var pool = new ForkJoinPool(jobs);
+        var random = new Random(seed);
+        var mean = kParameters.stream().mapToDouble(p -> p.toNormalized(p.initial())).toArray();
+        var spread = new double[mean.length];
+        Arrays.fill(spread, kInitialSpread);
+        var eliteCount = Math.max(2, (int) Math.round(population * kEliteFraction));
+
+        var best = pool.invoke(new EvaluationTask(List.of(Candidate.fromNormalized(mean)), 0, 1)).get(0);
+        System.out.printf("Current gains: cost %.3f%n", best.cost());
+        var start = System.nanoTime();
+        try {
+            for (var generation = 0; generation < generations; generation++) {
+                var candidates = new ArrayList<Candidate>();
+                for (var i = 0; i < population; i++) {
+                    var normalized = new double[mean.length];
+                    for (var j = 0; j < normalized.length; j++) {
+                        normalized[j] = Math.max(0.0, Math.min(1.0, mean[j] + random.nextGaussian() * spread[j]));
+                    }
+
+                    candidates.add(Candidate.fromNormalized(normalized));
+                }
+
+                var evaluations = pool.invoke(new EvaluationTask(candidates, 0, candidates.size()));
+                evaluations.sort(Comparator.comparingDouble(Evaluation::cost));
+                if (evaluations.get(0).cost() < best.cost()) {
+                    best = evaluations.get(0);
+                }
+
+                // Refit the sampling distribution to the elite candidates
+                for (var j = 0; j < mean.length; j++) {
+                    var sum = 0.0;
+                    for (var i = 0; i < eliteCount; i++) {
+                        sum += evaluations.get(i).candidate().normalized()[j];
+                    }
+
+                    mean[j] = sum / eliteCount;
+                    var variance = 0.0;
+                    for (var i = 0; i < eliteCount; i++) {
+                        var deviation = evaluations.get(i).candidate().normalized()[j] - mean[j];
+                        variance += deviation * deviation;
+                    }
+
+                    spread[j] = Math.max(kMinSpread, Math.sqrt(variance / eliteCount));
+                }
+
+                System.out.printf(
+                        "Generation %d: best %.3f, generation best %.3f, median %.3f (%.0f s)%n",
+                        generation + 1,
+                        best.cost(),
+                        evaluations.get(0).cost(),
+                        evaluations.get(evaluations.size() / 2).cost(),
+                        (System.nanoTime() - start) / 1e9);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        writeProfile(output, best);
+    }
+
+    private static void writeProfile(Path output, Evaluation best) throws IOException {
+        var lines = new ArrayList<String>();
+        lines.add("# Candidate gains for the simulation robot, cost " + String.format("%.3f", best.cost()));
+        lines.add("# Drive/Module gains are the kDrive* and kSteer* defaults in Constants.Drive,");
+        lines.add("# Command/DriveToPose gains are the tunable defaults in DriveToPose");
+        for (var i = 0; i < kParameters.size(); i++) {
+            lines.add(String.format(
+                    "%s = %.6g (was %.6g)",
+                    kParameters.get(i).key(),
+                    best.candidate().values()[i],
+                    kParameters.get(i).initial()));
+        }
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        Files.write(output, lines);
+        lines.forEach(System.out::println);
+        System.out.println("Wrote " + output);
+    }
+
+    /** Evaluates a range of candidates, splitting it in half until each task evaluates one candidate. */
+    private static class EvaluationTask extends RecursiveTask<List<Evaluation>> {
+        private final List<Candidate> mCandidates;
+        private final int mFrom;
+        private final int mTo;
+
+        EvaluationTask(List<Candidate> candidates, int from, int to) {
+            mCandidates = candidates;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected List<Evaluation> compute() {
+            if (mTo - mFrom == 1) {
+                var candidate = mCandidates.get(mFrom);
+                return new ArrayList<>(List.of(new Evaluation(candidate, evaluateInProcess(candidate))));
+            }
+
+            var middle = (mFrom + mTo) >>> 1;
+            var left = new EvaluationTask(mCandidates, mFrom, middle);
+            left.fork();
+            var evaluations = new EvaluationTask(mCandidates, middle, mTo).compute();
+            evaluations.addAll(0, left.join());
+            return evaluations;
+        }
+    }
+
+    private static double evaluateInProcess(Candidate candidate) {
+        try {
+            return ChildJvm.runForResult(
+                            ChildJvm.processBuilder(GainTuner.class, "--evaluate", candidate.toArgument()),
+                            kCostPrefix,
+                            kEvaluationTimeoutMinutes,
+                            "Evaluation")
+                    .map(Double::parseDouble)
+                    .orElse(Double.POSITIVE_INFINITY);
+        } catch (IOException e) {
+            System.out.println("Failed to run evaluation: " + e.getMessage());
+            return Double.POSITIVE_INFINITY;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    private static void evaluate(double[] values) {
+        try (var simulation = HeadlessSimulation.start()) {
+            for (var i = 0; i < kParameters.size(); i++) {
+                simulation.setTunableNumber(kParameters.get(i).key(), values[i]);
+            }
+
+            // Tunable numbers are polled in headless simulations, so the gains are applied on the first cycle
+            simulation.setPose(kStartPose);
+            simulation.enableTeleop();
+            simulation.step(1);
+
+            var robotContainer = simulation.getRobotContainer();
+            var drive = robotContainer.mDrive;
+            var cost = 0.0;
+            var fromPose = kStartPose;
+            for (var target : kManeuverTargets) {
+                var command = DriveCommands.driveToPose(
+                        robotContainer.getContext(),
+                        drive,
+                        target,
+                        Constants.Drive.kFastTrapezoidalKinematicLimits,
+                        true);
+                var direction = target.getTranslation().minus(fromPose.getTranslation());
+                var distance = direction.getNorm();
+                var startTime = simulation.getTimeSeconds();
+                var overshoot = 0.0;
+
+                simulation.schedule(command);
+                while (command.isScheduled() && simulation.getTimeSeconds() - startTime < kManeuverTimeoutSeconds) {
+                    simulation.step(1);
+                    if (distance > 1e-6) {
+                        // Distance travelled past the target along the direction of the maneuver
+                        var offset = simulation.getTruePose().getTranslation().minus(target.getTranslation());
+                        var pastTarget = offset.getX() * direction.getX() + offset.getY() * direction.getY();
+                        overshoot = Math.max(overshoot, pastTarget / distance);
+                    }
+                }
+
+                command.cancel();
+                var truePose = simulation.getTruePose();
+                cost += simulation.getTimeSeconds() - startTime
+                        + kFinalTranslationErrorWeight * truePose.getTranslation().getDistance(target.getTranslation())
+                        + kFinalRotationErrorWeight
+                                * Math.abs(truePose.getRotation().minus(target.getRotation()).getRadians())
+                        + kOvershootWeight * overshoot;
+                fromPose = target;
+            }
+
+            simulation.disable();
+            System.out.printf("%s%.6f%n", kCostPrefix, cost);
+        }
+    }
+}
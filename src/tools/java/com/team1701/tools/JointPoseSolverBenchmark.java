@@ -0,0 +1,204 @@
+package com.team1701.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import com.team1701.lib.drivers.cameras.AprilTagFieldGeometry;
+import com.team1701.robot.Constants;
+import com.team1701.robot.subsystems.vision.JointPoseSolver;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import org.photonvision.targeting.TargetCorner;
+
+/**
+ * Measures the time taken by {@link JointPoseSolver} on synthetic observations of the default field layout from the
+ * robot's four cameras. Exits with a non-zero status if the 99th percentile solve time exceeds the configured budget.
+ *
+ * <p>Run with {@code ./gradlew benchmarkJointPoseSolver}.
+ */
+public final class JointPoseSolverBenchmark {
+    private static final int kImageWidth = 960;
+    private static final int kImageHeight = 720;
+    private static final double kFocalLengthPixels = (kImageWidth / 2.0) / Math.tan(Math.toRadians(45.0));
+    private static final double kPixelNoiseStdDev = 0.5;
+    private static final double kMaxTagDistanceMeters = 6.0;
+    private static final int kScenarioCount = 500;
+    private static final int kWarmupSolves = 20000;
+    private static final int kMeasuredSolves = 50000;
+
+    private record Scenario(Pose2d truePose, Pose2d initialGuess, List<List<PhotonTrackedTarget>> targets) {}
+
+    private JointPoseSolverBenchmark() {}
+
+    public static void main(String... args) {
+        var fieldGeometry = Constants.Vision.kFieldGeometry;
+        var robotToCameraPoses = new Transform3d[] {
+            Constants.Vision.kRobotToFrontLeftCamPose,
+            Constants.Vision.kRobotToFrontRightCamPose,
+            Constants.Vision.kRobotToBackLeftCamPose,
+            Constants.Vision.kRobotToBackRightCamPose
+        };
+        var cameraMatrix = new double[] {
+            kFocalLengthPixels, 0, kImageWidth / 2.0, 0, kFocalLengthPixels, kImageHeight / 2.0, 0, 0, 1
+        };
+
+        var solver = new JointPoseSolver(
+                fieldGeometry,
+                robotToCameraPoses,
+                Constants.Vision.kJointSolverMaxIterations,
+                Constants.Vision.kJointSolverTimeBudgetSeconds,
+                Constants.Vision.kJointSolverHuberThresholdPixels);
+
+        var random = new Random(1701);
+        var scenarios = new ArrayList<Scenario>();
+        while (scenarios.size() < kScenarioCount) {
+            var scenario = createScenario(fieldGeometry, robotToCameraPoses, random);
+            if (scenario.targets().stream().anyMatch(targets -> !targets.isEmpty())) {
+                scenarios.add(scenario);
+            }
+        }
+
+        for (var i = 0; i < kWarmupSolves; i++) {
+            runSolve(solver, scenarios.get(i % scenarios.size()), cameraMatrix);
+        }
+
+        var solveTimes = new long[kMeasuredSolves];
+        var translationErrors = new double[kMeasuredSolves];
+        var budgetExceededCount = 0;
+        var failedCount = 0;
+        for (var i = 0; i < kMeasuredSolves; i++) {
+            var scenario = scenarios.get(i % scenarios.size());
+            var start = System.nanoTime();
+            var result = runSolve(solver, scenario, cameraMatrix);
+            solveTimes[i] = System.nanoTime() - start;
+
+            if (result.isEmpty()) {
+                failedCount++;
+                translationErrors[i] = Double.NaN;
+                continue;
+            }
+
+            if (result.get().budgetExceeded()) {
+                budgetExceededCount++;
+            }
+
+            translationErrors[i] = result.get()
+                    .pose()
+                    .getTranslation()
+                    .getDistance(scenario.truePose().getTranslation());
+        }
+
+        Arrays.sort(solveTimes);
+        var validErrors = Arrays.stream(translationErrors)
+                .filter(Double::isFinite)
+                .sorted()
+                .toArray();
+        var budgetMicros = Constants.Vision.kJointSolverTimeBudgetSeconds * 1e6;
+        var p99Micros = percentile(solveTimes, 0.99) / 1000.0;
+
+        System.out.printf(
+                "Joint pose solver benchmark (%d solves over %d scenarios)%n", kMeasuredSolves, kScenarioCount);
+        System.out.printf("  Solve time p50: %.1f us%n", percentile(solveTimes, 0.50) / 1000.0);
+        System.out.printf("  Solve time p99: %.1f us%n", p99Micros);
+        System.out.printf("  Solve time max: %.1f us%n", solveTimes[solveTimes.length - 1] / 1000.0);
+        System.out.printf("  Budget: %.1f us, exceeded %d times%n", budgetMicros, budgetExceededCount);
+        System.out.printf("  Failed solves: %d%n", failedCount);
+        if (validErrors.length > 0) {
+            System.out.printf(
+                    "  Translation error p50: %.4f m, p95: %.4f m%n",
+                    validErrors[validErrors.length / 2], validErrors[(int) (validErrors.length * 0.95)]);
+        }
+
+        if (p99Micros > budgetMicros) {
+            System.out.println("FAILED: p99 solve time exceeds the per-cycle budget");
+            System.exit(1);
+        }
+    }
+
+    private static Optional<JointPoseSolver.Result> runSolve(
+            JointPoseSolver solver, Scenario scenario, double[] cameraMatrix) {
+        solver.reset();
+        var targets = scenario.targets();
+        for (var i = 0; i < targets.size(); i++) {
+            for (var target : targets.get(i)) {
+                solver.addTarget(i, cameraMatrix, target);
+            }
+        }
+
+        return solver.solve(scenario.initialGuess());
+    }
+
+    private static long percentile(long[] sortedValues, double percentile) {
+        return sortedValues[Math.min(sortedValues.length - 1, (int) (sortedValues.length * percentile))];
+    }
+
+    private static Scenario createScenario(
+            AprilTagFieldGeometry fieldGeometry, Transform3d[] robotToCameraPoses, Random random) {
+        var fieldLayout = fieldGeometry.getFieldLayout();
+        var truePose = new Pose2d(
+                1.0 + random.nextDouble() * (fieldLayout.getFieldLength() - 2.0),
+                1.0 + random.nextDouble() * (fieldLayout.getFieldWidth() - 2.0),
+                Rotation2d.fromRadians((random.nextDouble() * 2.0 - 1.0) * Math.PI));
+        var initialGuess = new Pose2d(
+                truePose.getX() + random.nextGaussian() * 0.2,
+                truePose.getY() + random.nextGaussian() * 0.2,
+                truePose.getRotation().plus(Rotation2d.fromDegrees(random.nextGaussian() * 5.0)));
+
+        var robotPose = new Pose3d(truePose);
+        var cornerPoint = new double[3];
+        var targets = new ArrayList<List<PhotonTrackedTarget>>();
+        for (var robotToCamera : robotToCameraPoses) {
+            var cameraPose = robotPose.plus(robotToCamera);
+            var cameraTargets = new ArrayList<PhotonTrackedTarget>();
+
+            for (var t = 0; t < fieldGeometry.getTagCount(); t++) {
+                var id = fieldGeometry.getTagId(t);
+                var tagPose = fieldGeometry.getTagPose(id);
+
+                // Skip tags that are too far away or facing away from the camera
+                var tagToCamera = cameraPose.relativeTo(tagPose);
+                if (tagToCamera.getTranslation().getNorm() > kMaxTagDistanceMeters || tagToCamera.getX() <= 0) {
+                    continue;
+                }
+
+                var corners = new ArrayList<TargetCorner>(AprilTagFieldGeometry.kCornersPerTag);
+                for (var i = 0; i < AprilTagFieldGeometry.kCornersPerTag; i++) {
+                    fieldGeometry.copyCorner(id, i, cornerPoint, 0);
+                    var corner = new Translation3d(cornerPoint[0], cornerPoint[1], cornerPoint[2]);
+                    var cameraPoint = new Pose3d(corner, tagPose.getRotation())
+                            .relativeTo(cameraPose)
+                            .getTranslation();
+                    if (cameraPoint.getX() < 0.1) {
+                        break;
+                    }
+
+                    var u = kImageWidth / 2.0 - kFocalLengthPixels * cameraPoint.getY() / cameraPoint.getX();
+                    var v = kImageHeight / 2.0 - kFocalLengthPixels * cameraPoint.getZ() / cameraPoint.getX();
+                    if (u < 0 || u > kImageWidth || v < 0 || v > kImageHeight) {
+                        break;
+                    }
+
+                    corners.add(new TargetCorner(
+                            u + random.nextGaussian() * kPixelNoiseStdDev,
+                            v + random.nextGaussian() * kPixelNoiseStdDev));
+                }
+
+                if (corners.size() == AprilTagFieldGeometry.kCornersPerTag) {
+                    cameraTargets.add(new PhotonTrackedTarget(
+                            0, 0, 0, 0, id, new Transform3d(), new Transform3d(), 0, corners, corners));
+                }
+            }
+
+            targets.add(cameraTargets);
+        }
+
+        return new Scenario(truePose, initialGuess, targets);
+    }
+}
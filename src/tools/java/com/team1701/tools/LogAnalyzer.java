@@ -0,0 +1,423 @@
+package com.team1701.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.team1701.lib.logging.MappedWPILOGReader;
+import com.team1701.robot.Constants;
+
+/**
+ * Summarizes a match log for post-match review: loop timing, disagreement between vision estimates and the pose
+ * estimate, fresh camera frame rates, dropped odometry samples, loop overruns and command events. The log is read in a
+ * single pass in file order, with each entry of interest bound to a handler up front so unrelated records are never
+ * decoded. All statistics are aggregated incrementally, with percentiles taken from fixed-width histograms.
+ *
+ * <p>Run with {@code ./gradlew analyzeLog --args="<log>"}.
+ */
+public final class LogAnalyzer {
+    private static final String[] kOutputPrefixes = new String[] {"RealOutputs/", "ReplayOutputs/"};
+    private static final double kNominalPeriodMs = 20.0;
+    private static final double kSlowCycleMs = 25.0;
+    private static final int kMaxReportedCommands = 10;
+
+    private final MappedWPILOGReader mReader;
+    private final Distribution mCycleTime = new Distribution(0.1, 1000);
+    private final Distribution mCyclePeriod = new Distribution(0.1, 1000);
+    private final Map<String, VisionSource> mVisionSources = new TreeMap<>();
+    private final Map<String, CameraFrames> mCameras = new TreeMap<>();
+    private final List<SampleSource> mSampleSources = new ArrayList<>();
+    private final Map<String, LoopStats> mLoops = new TreeMap<>();
+    private final Map<String, CommandStats> mCommands = new TreeMap<>();
+
+    private long mFirstTimestamp = -1;
+    private long mLastTimestamp = -1;
+    private int mCycleCount = 0;
+    private double mExpectedSamples = 0.0;
+    private double mEstimateX = Double.NaN;
+    private double mEstimateY = Double.NaN;
+    private double mEstimateTheta = Double.NaN;
+
+    @FunctionalInterface
+    private interface RecordHandler {
+        void accept(int record);
+    }
+
+    private LogAnalyzer(MappedWPILOGReader reader) {
+        mReader = reader;
+    }
+
+    public static void main(String... args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("Usage: LogAnalyzer <log>");
+            System.exit(2);
+        }
+
+        var start = System.nanoTime();
+        var analyzer = new LogAnalyzer(new MappedWPILOGReader(Path.of(args[0])));
+        analyzer.run();
+        analyzer.printReport(args[0]);
+        System.out.printf("%nAnalyzed in %.2f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private void run() {
+        var entries = mReader.getEntries();
+        var handlers = new RecordHandler[entries.size()];
+        for (var entry : entries) {
+            handlers[entry.getIndex()] = createHandler(normalizeKey(entry.getName()), entry.getType());
+        }
+
+        var recordCount = mReader.getRecordCount();
+        for (var record = 0; record < recordCount; record++) {
+            var entryIndex = mReader.getRecordEntryIndex(record);
+            if (entryIndex >= 0 && handlers[entryIndex] != null) {
+                handlers[entryIndex].accept(record);
+            }
+        }
+
+        finishCycle();
+    }
+
+    private static String normalizeKey(String name) {
+        var key = name.startsWith("/") ? name.substring(1) : name;
+        for (var prefix : kOutputPrefixes) {
+            if (key.startsWith(prefix)) {
+                return key.substring(prefix.length());
+            }
+        }
+
+        return key;
+    }
+
+    private RecordHandler createHandler(String key, String type) {
+        if (key.equals("Timestamp")) {
+            return this::handleTimestamp;
+        }
+
+        if (key.equals("LoopProfiler/CycleMs")) {
+            return record -> mCycleTime.add(mReader.getDouble(record));
+        }
+
+        if (key.equals("PoseEstimator/Pose2d") && type.equals("struct:Pose2d")) {
+            return this::handleEstimate;
+        }
+
+        if (key.equals("Command/Events")) {
+            return this::handleCommandEvents;
+        }
+
+        if (key.equals("Vision/JointSolver/RobotPose")
+                || (key.startsWith("Camera/") && key.endsWith("/FilteredRobotPose"))) {
+            var source = mVisionSources.computeIfAbsent(key, k -> new VisionSource());
+            if (type.equals("struct:Pose2d")) {
+                return record -> source.add(mReader.getPayload(record), false);
+            } else if (type.equals("struct:Pose3d")) {
+                return record -> source.add(mReader.getPayload(record), true);
+            }
+
+            return null;
+        }
+
+        if (key.startsWith("Camera/") && key.endsWith("/Timestamp") && type.equals("double")) {
+            var camera = mCameras.computeIfAbsent(key.split("/")[1], k -> new CameraFrames());
+            return record -> camera.add(mReader.getDouble(record));
+        }
+
+        if ((key.startsWith("Drive/Module/") && key.endsWith("/PositionRadiansSamples"))
+                || key.equals("Drive/Gyro/YawSamples")) {
+            // Samples are double arrays, or Rotation2d structs of one double each
+            var source = new SampleSource(key);
+            mSampleSources.add(source);
+            return record -> source.mLength = mReader.getPayload(record).remaining() / Double.BYTES;
+        }
+
+        if (key.startsWith("Looper/") && key.endsWith("/OverrunCount")) {
+            var loop = mLoops.computeIfAbsent(key.substring(0, key.lastIndexOf('/')), k -> new LoopStats());
+            return record -> loop.mOverrunCount = mReader.getInteger(record);
+        }
+
+        if (key.startsWith("Looper/") && key.endsWith("/MaxExecutionTimeSec")) {
+            var loop = mLoops.computeIfAbsent(key.substring(0, key.lastIndexOf('/')), k -> new LoopStats());
+            return record -> loop.mMaxExecutionMs = Math.max(loop.mMaxExecutionMs, mReader.getDouble(record) * 1000.0);
+        }
+
+        return null;
+    }
+
+    private void handleTimestamp(int record) {
+        var timestamp = mReader.getInteger(record);
+        if (mLastTimestamp >= 0) {
+            finishCycle();
+            var periodMs = (timestamp - mLastTimestamp) / 1000.0;
+            mCyclePeriod.add(periodMs);
+            mExpectedSamples += periodMs / 1000.0 * Constants.Drive.kOdometryFrequency;
+        } else {
+            mFirstTimestamp = timestamp;
+        }
+
+        mLastTimestamp = timestamp;
+        mCycleCount++;
+    }
+
+    // Unchanged values are not logged again, so each source's last logged length holds for the finished cycle
+    private void finishCycle() {
+        if (mCycleCount < 2) {
+            return;
+        }
+
+        for (var source : mSampleSources) {
+            source.mReceived += source.mLength;
+            if (source.mLength == 0) {
+                source.mEmptyCycles++;
+            }
+        }
+    }
+
+    private void handleEstimate(int record) {
+        var payload = mReader.getPayload(record);
+        mEstimateX = payload.getDouble(0);
+        mEstimateY = payload.getDouble(8);
+        mEstimateTheta = payload.getDouble(16);
+    }
+
+    private void handleCommandEvents(int record) {
+        for (var event : mReader.getStringArray(record)) {
+            // Events are formatted as <name>_<hash>_<event>
+            var eventStart = event.lastIndexOf('_');
+            var hashStart = eventStart > 0 ? event.lastIndexOf('_', eventStart - 1) : -1;
+            if (hashStart <= 0) {
+                continue;
+            }
+
+            var stats = mCommands.computeIfAbsent(event.substring(0, hashStart), k -> new CommandStats());
+            switch (event.substring(eventStart + 1)) {
+                case "Initialized":
+                    stats.mInitialized++;
+                    break;
+                case "Finished":
+                    stats.mFinished++;
+                    break;
+                case "Interrupted":
+                    stats.mInterrupted++;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void printReport(String path) {
+        var durationSeconds = Math.max(0, mLastTimestamp - mFirstTimestamp) / 1e6;
+        System.out.printf("Log: %s%n", path);
+        System.out.printf("Duration: %.1f s, %d cycles%n", durationSeconds, mCycleCount);
+
+        System.out.println();
+        System.out.println("Loop timing (ms)");
+        mCycleTime.print("  Cycle time  ", kNominalPeriodMs);
+        mCyclePeriod.print("  Cycle period", kSlowCycleMs);
+
+        System.out.println();
+        System.out.println("Vision vs. pose estimate (translation m, rotation deg)");
+        if (mVisionSources.isEmpty()) {
+            System.out.println("  No vision estimates logged");
+        }
+
+        mVisionSources.forEach((key, source) -> System.out.printf(
+                "  %-40s n=%-6d p50 %.3f m / %.1f deg  p95 %.3f m / %.1f deg  max %.3f m%n",
+                key,
+                source.mTranslationError.mCount,
+                source.mTranslationError.percentile(0.5),
+                source.mRotationError.percentile(0.5),
+                source.mTranslationError.percentile(0.95),
+                source.mRotationError.percentile(0.95),
+                source.mTranslationError.mMax));
+
+        System.out.println();
+        System.out.println("Camera fresh frames");
+        if (mCameras.isEmpty()) {
+            System.out.println("  No camera inputs logged");
+        }
+
+        mCameras.forEach((name, camera) -> System.out.printf(
+                "  %-20s %6d frames  %5.1f Hz  longest gap %.2f s%n",
+                name,
+                camera.mFrameCount,
+                durationSeconds > 0 ? camera.mFrameCount / durationSeconds : 0.0,
+                camera.mLongestGapSeconds));
+
+        System.out.println();
+        System.out.printf("Odometry samples (%.0f expected per source)%n", mExpectedSamples);
+        for (var source : mSampleSources) {
+            var dropped = Math.max(0.0, mExpectedSamples - source.mReceived);
+            System.out.printf(
+                    "  %-45s %8d received  %5.1f%% dropped  %d empty cycles%n",
+                    source.mKey,
+                    source.mReceived,
+                    mExpectedSamples > 0 ? dropped / mExpectedSamples * 100.0 : 0.0,
+                    source.mEmptyCycles);
+        }
+
+        System.out.println();
+        System.out.println("Loops");
+        mLoops.forEach((key, loop) -> System.out.printf(
+                "  %-45s %6d overruns  max %.2f ms%n", key, loop.mOverrunCount, loop.mMaxExecutionMs));
+
+        System.out.println();
+        System.out.println("Commands (most interrupted first)");
+        mCommands.entrySet().stream()
+                .sorted((a, b) -> b.getValue().mInterrupted != a.getValue().mInterrupted
+                        ? Integer.compare(b.getValue().mInterrupted, a.getValue().mInterrupted)
+                        : Integer.compare(b.getValue().mInitialized, a.getValue().mInitialized))
+                .limit(kMaxReportedCommands)
+                .forEach(entry -> System.out.printf(
+                        "  %-40s %5d started  %5d finished  %5d interrupted%n",
+                        entry.getKey(),
+                        entry.getValue().mInitialized,
+                        entry.getValue().mFinished,
+                        entry.getValue().mInterrupted));
+    }
+
+    /** Fixed-width histogram with exact count, mean and extremes. Values past the last bin share an overflow bin. */
+    private static class Distribution {
+        private final double mBinWidth;
+        private final long[] mBins;
+        private long mCount = 0;
+        private double mSum = 0.0;
+        private double mMax = Double.NEGATIVE_INFINITY;
+
+        private Distribution(double binWidth, int binCount) {
+            mBinWidth = binWidth;
+            mBins = new long[binCount + 1];
+        }
+
+        private void add(double value) {
+            if (!Double.isFinite(value)) {
+                return;
+            }
+
+            var bin = (int) Math.min(mBins.length - 1, Math.max(0, value / mBinWidth));
+            mBins[bin]++;
+            mCount++;
+            mSum += value;
+            mMax = Math.max(mMax, value);
+        }
+
+        private long countAbove(double threshold) {
+            var count = 0L;
+            for (var i = (int) Math.ceil(threshold / mBinWidth); i < mBins.length; i++) {
+                count += mBins[i];
+            }
+
+            return count;
+        }
+
+        private double percentile(double percentile) {
+            if (mCount == 0) {
+                return Double.NaN;
+            }
+
+            var target = (long) Math.ceil(mCount * percentile);
+            var cumulative = 0L;
+            for (var i = 0; i < mBins.length; i++) {
+                cumulative += mBins[i];
+                if (cumulative >= target) {
+                    return Math.min(mMax, (i + 1) * mBinWidth);
+                }
+            }
+
+            return mMax;
+        }
+
+        private void print(String label, double threshold) {
+            if (mCount == 0) {
+                System.out.println(label + "  not logged");
+                return;
+            }
+
+            System.out.printf(
+                    "%s  mean %.2f  p50 %.2f  p95 %.2f  p99 %.2f  max %.2f  >%.0f: %d (%.2f%%)%n",
+                    label,
+                    mSum / mCount,
+                    percentile(0.5),
+                    percentile(0.95),
+                    percentile(0.99),
+                    mMax,
+                    threshold,
+                    countAbove(threshold),
+                    countAbove(threshold) * 100.0 / mCount);
+        }
+    }
+
+    private class VisionSource {
+        private final Distribution mTranslationError = new Distribution(0.01, 1000);
+        private final Distribution mRotationError = new Distribution(0.1, 1800);
+
+        private void add(ByteBuffer pose, boolean is3d) {
+            if (Double.isNaN(mEstimateX)) {
+                return;
+            }
+
+            var x = pose.getDouble(0);
+            var y = pose.getDouble(8);
+            double theta;
+            if (is3d) {
+                // Yaw from the rotation quaternion (w, x, y, z) that follows the translation
+                var qw = pose.getDouble(24);
+                var qx = pose.getDouble(32);
+                var qy = pose.getDouble(40);
+                var qz = pose.getDouble(48);
+                theta = Math.atan2(2.0 * (qw * qz + qx * qy), 1.0 - 2.0 * (qy * qy + qz * qz));
+            } else {
+                theta = pose.getDouble(16);
+            }
+
+            mTranslationError.add(Math.hypot(x - mEstimateX, y - mEstimateY));
+            mRotationError.add(Math.abs(Math.toDegrees(Math.IEEEremainder(theta - mEstimateTheta, 2.0 * Math.PI))));
+        }
+    }
+
+    private static class CameraFrames {
+        private long mFrameCount = 0;
+        private double mLastTimestamp = Double.NaN;
+        private double mLongestGapSeconds = 0.0;
+
+        private void add(double timestamp) {
+            if (timestamp <= 0.0 || timestamp == mLastTimestamp) {
+                return;
+            }
+
+            if (!Double.isNaN(mLastTimestamp)) {
+                mLongestGapSeconds = Math.max(mLongestGapSeconds, timestamp - mLastTimestamp);
+            }
+
+            mLastTimestamp = timestamp;
+            mFrameCount++;
+        }
+    }
+
+    private static class SampleSource {
+        private final String mKey;
+        private int mLength = 0;
+        private long mReceived = 0;
+        private long mEmptyCycles = 0;
+
+        private SampleSource(String key) {
+            mKey = key;
+        }
+    }
+
+    private static class LoopStats {
+        private long mOverrunCount = 0;
+        private double mMaxExecutionMs = 0.0;
+    }
+
+    private static class CommandStats {
+        private int mInitialized = 0;
+        private int mFinished = 0;
+        private int mInterrupted = 0;
+    }
+}
@@ -0,0 +1,235 @@
+package com.team1701.tools;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import com.team1701.robot.Configuration.SimulationParameters;
+import com.team1701.robot.HeadlessSimulation;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+
+/**
+ * Runs the default autonomous routine many times in headless simulations with randomized wheel friction, sensor noise,
+ * camera calibration error and latency, and error in where the robot is placed, and reports the distributions of
+ * completion time and final pose estimation error.
+ *
+ * <p>Each trial runs in its own JVM, since the robot code relies on static state (the command scheduler, the HAL and
+ * the tunable numbers) that cannot be shared between simulations, and up to one JVM per core runs at a time. A
+ * trial's parameters are derived from its seed, so any trial can be rerun alone with {@code --trial <seed>}.
+ *
+ * <p>Run with {@code ./gradlew simulateAutonomousMonteCarlo --args="[--trials N] [--jobs N] [--seed S] [--timeout
+ * S]"}.
+ */
+public final class MonteCarloAutonomous {
+    private static final String kResultPrefix = "TRIAL ";
+    private static final long kTrialTimeoutMinutes = 5;
+    private static final int kWorstTrialCount = 5;
+
+    private static final double kPlacementStdDevMeters = 0.05;
+    private static final double kPlacementStdDevDegrees = 2.0;
+
+    private record Trial(long seed, SimulationParameters parameters, Transform2d placementError) {
+        static Trial fromSeed(long seed) {
+            var random = new Random(seed);
+            var parameters = new SimulationParameters(
+                    true,
+                    uniform(random, 0.2, 0.8),
+                    uniform(random, 0.05, 0.25),
+                    uniform(random, 30.0, 70.0),
+                    uniform(random, 5.0, 20.0),
+                    uniform(random, 0.9, 1.3),
+                    uniform(random, 0.0, 0.01),
+                    uniform(random, 0.0, 0.002),
+                    seed);
+            var placementError = new Transform2d(
+                    random.nextGaussian() * kPlacementStdDevMeters,
+                    random.nextGaussian() * kPlacementStdDevMeters,
+                    Rotation2d.fromDegrees(random.nextGaussian() * kPlacementStdDevDegrees));
+            return new Trial(seed, parameters, placementError);
+        }
+
+        private static double uniform(Random random, double min, double max) {
+            return min + random.nextDouble() * (max - min);
+        }
+    }
+
+    private record TrialResult(
+            long seed, boolean completed, double durationSeconds, double translationError, double rotationDegrees) {}
+
+    private MonteCarloAutonomous() {}
+
+    public static void main(String... args) throws InterruptedException {
+        var trialCount = 200;
+        var jobs = Runtime.getRuntime().availableProcessors();
+        var seed = 0L;
+        var timeoutSeconds = 15.0;
+        Optional<Long> singleTrial = Optional.empty();
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--trials":
+                    trialCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--jobs":
+                    jobs = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--timeout":
+                    timeoutSeconds = Double.parseDouble(args[++i]);
+                    break;
+                case "--trial":
+                    singleTrial = Optional.of(Long.parseLong(args[++i]));
+                    break;
+                default:
+                    System.out.println("Usage: MonteCarloAutonomous [--trials N] [--jobs N] [--seed S] [--timeout S]");
+                    System.exit(2);
+            }
+        }
+
+        if (singleTrial.isPresent()) {
+            runTrial(Trial.fromSeed(singleTrial.get()), timeoutSeconds);
+
+            // Notifier and loop threads are not daemons
+            System.exit(0);
+        }
+
+        System.out.printf("Running %d trials with %d jobs%n", trialCount, jobs);
+        var start = System.nanoTime();
+        var results = runAll(seed, trialCount, jobs, timeoutSeconds);
+        System.out.printf(
+                "Ran %d trials in %.1f s, %d failed to run%n",
+                trialCount, (System.nanoTime() - start) / 1e9, trialCount - results.size());
+        report(results);
+    }
+
+    private static void runTrial(Trial trial, double timeoutSeconds) {
+        try (var simulation = HeadlessSimulation.start(trial.parameters())) {
+            var result = simulation.runAutonomous(timeoutSeconds, trial.placementError());
+            System.out.printf(
+                    "%s%d %b %.4f %.6f %.6f%n",
+                    kResultPrefix,
+                    trial.seed(),
+                    result.completed(),
+                    result.durationSeconds(),
+                    result.translationErrorMeters(),
+                    Math.toDegrees(result.rotationErrorRadians()));
+        }
+    }
+
+    private static List<TrialResult> runAll(long seed, int trialCount, int jobs, double timeoutSeconds)
+            throws InterruptedException {
+        var executor = Executors.newFixedThreadPool(jobs);
+        var futures = new ArrayList<Future<Optional<TrialResult>>>();
+        for (var i = 0; i < trialCount; i++) {
+            var trialSeed = seed + i;
+            futures.add(executor.submit(() -> runTrialProcess(trialSeed, timeoutSeconds)));
+        }
+
+        var results = new ArrayList<TrialResult>();
+        try {
+            for (var i = 0; i < trialCount; i++) {
+                try {
+                    futures.get(i).get().ifPresent(results::add);
+                } catch (ExecutionException e) {
+                    System.out.println("Failed to run trial " + (seed + i) + ": " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return results;
+    }
+
+    private static Optional<TrialResult> runTrialProcess(long seed, double timeoutSeconds)
+            throws IOException, InterruptedException {
+        var result = ChildJvm.runForResult(
+                ChildJvm.processBuilder(
+                        MonteCarloAutonomous.class,
+                        "--trial",
+                        Long.toString(seed),
+                        "--timeout",
+                        Double.toString(timeoutSeconds)),
+                kResultPrefix,
+                kTrialTimeoutMinutes,
+                "Trial " + seed);
+        if (result.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var fields = result.get().split(" ");
+        return Optional.of(new TrialResult(
+                Long.parseLong(fields[0]),
+                Boolean.parseBoolean(fields[1]),
+                Double.parseDouble(fields[2]),
+                Double.parseDouble(fields[3]),
+                Double.parseDouble(fields[4])));
+    }
+
+    private static void report(List<TrialResult> results) {
+        if (results.isEmpty()) {
+            return;
+        }
+
+        var completed = results.stream().filter(TrialResult::completed).collect(Collectors.toList());
+        System.out.printf("Completed: %d of %d%n", completed.size(), results.size());
+        System.out.println("                             mean      p50      p95      max");
+        printDistribution(
+                "Completion time (s)",
+                completed.stream().mapToDouble(TrialResult::durationSeconds).toArray());
+        printDistribution(
+                "Translation error (m)",
+                results.stream().mapToDouble(TrialResult::translationError).toArray());
+        printDistribution(
+                "Rotation error (deg)",
+                results.stream().mapToDouble(TrialResult::rotationDegrees).toArray());
+
+        System.out.println("Worst trials by translation error:");
+        results.stream()
+                .sorted(Comparator.comparingDouble(TrialResult::translationError).reversed())
+                .limit(kWorstTrialCount)
+                .forEach(result -> {
+                    var parameters = Trial.fromSeed(result.seed()).parameters();
+                    System.out.printf(
+                            "  --trial %-6d %.3f m, %.2f deg, friction %.2f, calibration error %.2f px,"
+                                    + " latency %.0f ms%n",
+                            result.seed(),
+                            result.translationError(),
+                            result.rotationDegrees(),
+                            parameters.wheelCoefficientOfFriction(),
+                            parameters.cameraCalibrationErrorPixels(),
+                            parameters.cameraLatencyMs());
+                });
+    }
+
+    private static void printDistribution(String name, double[] values) {
+        if (values.length == 0) {
+            System.out.printf("  %-24s no data%n", name);
+            return;
+        }
+
+        var sorted = values.clone();
+        Arrays.sort(sorted);
+        System.out.printf(
+                "  %-24s %8.3f %8.3f %8.3f %8.3f%n",
+                name,
+                Arrays.stream(sorted).average().orElse(0.0),
+                percentile(sorted, 0.5),
+                percentile(sorted, 0.95),
+                sorted[sorted.length - 1]);
+    }
+
+    private static double percentile(double[] sortedValues, double percentile) {
+        return sortedValues[Math.min(sortedValues.length - 1, (int) (sortedValues.length * percentile))];
+    }
+}
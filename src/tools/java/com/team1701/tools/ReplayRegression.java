@@ -0,0 +1,255 @@
+package com.team1701.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.team1701.lib.logging.MappedWPILOGReader;
+import com.team1701.robot.Configuration.RobotType;
+
+/**
+ * Replays short checked-in logs and compares selected outputs against golden replay outputs, to show that a refactor
+ * of the drive, pose estimation or vision code leaves behavior unchanged. For each compared key, the value at every
+ * golden cycle is compared element by element with the value at the same cycle of the new output, and the maximum
+ * error is checked against the key's tolerance. Only the outputs recomputed by the replay, under
+ * {@code /ReplayOutputs}, are compared, since the outputs recorded in the original run are copied into every replay
+ * output unchanged. The replay cycle time is reported next to the golden output's, but does not fail the check, since
+ * the golden output may have been recorded on a different machine.
+ *
+ * <p>Logs are read from {@code src/tools/regression}, with the golden output of {@code <name>.wpilog} stored as
+ * {@code <name>_golden.wpilog}. The logs are recorded from the headless simulation with cameras enabled, so that the
+ * vision outputs are compared too, with {@code ./gradlew recordRegressionLog} or for example
+ * {@code ./gradlew simulateAutonomous --args="--cameras --log src/tools/regression/autonomous.wpilog 5"}, and are
+ * replayed as the simulation robot. Run with {@code ./gradlew replayRegression}, or with
+ * {@code --args="--update-golden"} to create the golden outputs of new logs or replace them after an intended behavior
+ * change. Exits with a non-zero status if any check fails.
+ */
+public final class ReplayRegression {
+    private static final Path kLogDirectory = Path.of("src", "tools", "regression");
+    private static final String kLogExtension = ".wpilog";
+    private static final String kGoldenSuffix = "_golden";
+    private static final String kOutputPrefix = "/ReplayOutputs/";
+    private static final String kTimestampKey = "/Timestamp";
+    private static final String kCycleTimeKey = kOutputPrefix + "LoopProfiler/CycleMs";
+
+    private static final List<KeyRule> kKeyRules = List.of(
+            new KeyRule("Drive/DesiredStates", "", 1e-6),
+            new KeyRule("PoseEstimator/", "", 1e-6),
+            new KeyRule("Camera/", "/FilteredRobotPose", 1e-6));
+
+    private record KeyRule(String prefix, String suffix, double tolerance) {
+        boolean matches(String key) {
+            return key.startsWith(prefix) && key.endsWith(suffix) && key.length() >= prefix.length() + suffix.length();
+        }
+    }
+
+    private record KeyResult(String key, double maxError, long maxErrorTimestamp, double tolerance) {
+        boolean passed() {
+            return maxError <= tolerance;
+        }
+    }
+
+    private ReplayRegression() {}
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        var updateGolden = Arrays.asList(args).contains("--update-golden");
+        var logs = ReplayRunner.findLogs(kLogDirectory).stream()
+                .filter(log -> !log.getFileName().toString().contains(kGoldenSuffix))
+                .collect(Collectors.toList());
+        if (logs.isEmpty()) {
+            System.out.println("No regression logs found in " + kLogDirectory
+                    + ", record one with ./gradlew recordRegressionLog and create its golden output with"
+                    + " ./gradlew replayRegression --args=\"--update-golden\"");
+            System.exit(2);
+        }
+
+        var results =
+                ReplayRunner.replayAll(logs, Runtime.getRuntime().availableProcessors(), RobotType.SIMULATION_BOT);
+        var failed = false;
+        for (var result : results) {
+            var log = result.log();
+            System.out.printf("%s (replayed in %.1f s)%n", log.getFileName(), result.seconds());
+            if (!result.passed()) {
+                System.out.println(
+                        result.exitCode() != 0
+                                ? "  FAILED: replay exited with status " + result.exitCode()
+                                : "  FAILED: replay wrote no output");
+                failed = true;
+                continue;
+            }
+
+            var output = ReplayRunner.getReplayOutput(log);
+            var golden = getGoldenOutput(log);
+            if (updateGolden) {
+                Files.move(output, golden, StandardCopyOption.REPLACE_EXISTING);
+                System.out.println("  Updated " + golden.getFileName());
+                continue;
+            }
+
+            if (!Files.exists(golden)) {
+                System.out.println("  FAILED: no golden output, run with --update-golden to create it");
+                failed = true;
+                continue;
+            }
+
+            failed |= !compare(new MappedWPILOGReader(golden), new MappedWPILOGReader(output));
+        }
+
+        if (failed) {
+            System.out.println("FAILED: replay outputs differ from the golden outputs");
+            System.exit(1);
+        }
+    }
+
+    private static Path getGoldenOutput(Path log) {
+        var logName = log.getFileName().toString();
+        return log.resolveSibling(
+                logName.substring(0, logName.length() - kLogExtension.length()) + kGoldenSuffix + kLogExtension);
+    }
+
+    private static boolean compare(MappedWPILOGReader golden, MappedWPILOGReader output) {
+        var cycleTimestamps = getCycleTimestamps(golden);
+        var passed = true;
+        for (var goldenEntry : golden.getEntries()) {
+            var name = goldenEntry.getName();
+            if (!name.startsWith(kOutputPrefix)) {
+                continue;
+            }
+
+            var key = name.substring(kOutputPrefix.length());
+            var rule = kKeyRules.stream().filter(r -> r.matches(key)).findFirst();
+            if (rule.isEmpty()) {
+                continue;
+            }
+
+            var tolerance = rule.get().tolerance();
+            var outputEntry = output.getEntry(name);
+            var result = outputEntry.isPresent()
+                    ? compareEntry(key, golden, goldenEntry, output, outputEntry.get(), cycleTimestamps, tolerance)
+                    : new KeyResult(key, Double.POSITIVE_INFINITY, 0, tolerance);
+
+            passed &= result.passed();
+            System.out.printf(
+                    "  %-6s %-50s max error %.3g (tolerance %.1g) at %.3f s%n",
+                    result.passed() ? "OK" : "FAILED",
+                    key,
+                    result.maxError(),
+                    result.tolerance(),
+                    result.maxErrorTimestamp() / 1e6);
+        }
+
+        var goldenCycleTime = getCycleTimes(golden);
+        var outputCycleTime = getCycleTimes(output);
+        if (goldenCycleTime.length > 0 && outputCycleTime.length > 0) {
+            System.out.printf(
+                    "  %-6s cycle time p50 %.3f ms (golden %.3f), p95 %.3f ms (golden %.3f), max %.3f ms%n",
+                    "INFO",
+                    percentile(outputCycleTime, 0.5),
+                    percentile(goldenCycleTime, 0.5),
+                    percentile(outputCycleTime, 0.95),
+                    percentile(goldenCycleTime, 0.95),
+                    outputCycleTime[outputCycleTime.length - 1]);
+        }
+
+        return passed;
+    }
+
+    private static KeyResult compareEntry(
+            String key,
+            MappedWPILOGReader golden,
+            MappedWPILOGReader.Entry goldenEntry,
+            MappedWPILOGReader output,
+            MappedWPILOGReader.Entry outputEntry,
+            long[] cycleTimestamps,
+            double tolerance) {
+        if (!goldenEntry.getType().equals(outputEntry.getType())) {
+            return new KeyResult(key, Double.POSITIVE_INFINITY, 0, tolerance);
+        }
+
+        var maxError = 0.0;
+        var maxErrorTimestamp = 0L;
+        for (var timestamp : cycleTimestamps) {
+            var goldenIndex = goldenEntry.findRecord(timestamp);
+            var outputIndex = outputEntry.findRecord(timestamp);
+            double error;
+            if (goldenIndex < 0 || outputIndex < 0) {
+                error = goldenIndex == outputIndex ? 0.0 : Double.POSITIVE_INFINITY;
+            } else {
+                error = getError(
+                        golden.getPayload(goldenEntry.getRecord(goldenIndex)),
+                        output.getPayload(outputEntry.getRecord(outputIndex)),
+                        goldenEntry.getType());
+            }
+
+            if (error > maxError) {
+                maxError = error;
+                maxErrorTimestamp = timestamp;
+            }
+        }
+
+        return new KeyResult(key, maxError, maxErrorTimestamp, tolerance);
+    }
+
+    // Compared outputs are doubles, double arrays or structs made of doubles; anything else must match exactly
+    private static double getError(ByteBuffer expected, ByteBuffer actual, String type) {
+        if (expected.remaining() != actual.remaining()) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        var isDoubles = type.equals("double") || type.equals("double[]") || type.startsWith("struct:");
+        if (!isDoubles || expected.remaining() % Double.BYTES != 0) {
+            return expected.equals(actual) ? 0.0 : Double.POSITIVE_INFINITY;
+        }
+
+        var maxError = 0.0;
+        for (var i = 0; i < expected.remaining(); i += Double.BYTES) {
+            var error = Math.abs(expected.getDouble(i) - actual.getDouble(i));
+            if (Double.isNaN(error)) {
+                error = Double.isNaN(expected.getDouble(i)) == Double.isNaN(actual.getDouble(i))
+                        ? 0.0
+                        : Double.POSITIVE_INFINITY;
+            }
+
+            maxError = Math.max(maxError, error);
+        }
+
+        return maxError;
+    }
+
+    private static long[] getCycleTimestamps(MappedWPILOGReader reader) {
+        return reader.getEntry(kTimestampKey)
+                .map(entry -> {
+                    var timestamps = new long[entry.getRecordCount()];
+                    for (var i = 0; i < timestamps.length; i++) {
+                        timestamps[i] = reader.getInteger(entry.getRecord(i));
+                    }
+
+                    return timestamps;
+                })
+                .orElse(new long[] {});
+    }
+
+    /** Returns the sorted cycle times of the replay in milliseconds, excluding those of the original run. */
+    private static double[] getCycleTimes(MappedWPILOGReader reader) {
+        return reader.getEntry(kCycleTimeKey)
+                .map(entry -> {
+                    var cycleTimes = new double[entry.getRecordCount()];
+                    for (var i = 0; i < cycleTimes.length; i++) {
+                        cycleTimes[i] = reader.getDouble(entry.getRecord(i));
+                    }
+
+                    Arrays.sort(cycleTimes);
+                    return cycleTimes;
+                })
+                .orElse(new double[] {});
+    }
+
+    private static double percentile(double[] sortedValues, double percentile) {
+        return sortedValues[Math.min(sortedValues.length - 1, (int) (sortedValues.length * percentile))];
+    }
+}
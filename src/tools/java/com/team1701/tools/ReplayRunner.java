@@ -0,0 +1,174 @@
+package com.team1701.tools;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.team1701.robot.Configuration;
+import com.team1701.robot.Configuration.RobotType;
+import com.team1701.robot.Main;
+
+/**
+ * Replays logs headlessly as fast as the CPU allows, writing a {@code _sim} log next to each input. Each log is
+ * replayed in its own JVM, since the robot code relies on static state (the logger, the command scheduler and the HAL)
+ * that cannot be shared between replays, and up to one JVM per core runs at a time. Console output from each replay
+ * is written to a {@code _replay.txt} file next to its log.
+ *
+ * <p>Run with {@code ./gradlew replayLogs --args="<log or directory> [--jobs N] [--robot SWERVE_BOT]"}. Exits with a
+ * non-zero status if any replay fails or writes no output.
+ */
+public final class ReplayRunner {
+    private static final String kLogExtension = ".wpilog";
+    private static final String kReplayLogSuffix = "_sim";
+    private static final String kLogPathVariable = "AKIT_LOG_PATH";
+    private static final long kTimeoutMinutes = 10;
+
+    record Result(Path log, int exitCode, boolean outputWritten, double seconds) {
+        boolean passed() {
+            return exitCode == 0 && outputWritten;
+        }
+    }
+
+    private ReplayRunner() {}
+
+    public static void main(String... args) throws IOException, InterruptedException {
+        Path input = null;
+        var jobs = Runtime.getRuntime().availableProcessors();
+        var robot = RobotType.SWERVE_BOT;
+        for (var i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--jobs":
+                    jobs = Integer.parseInt(args[++i]);
+                    break;
+                case "--robot":
+                    robot = RobotType.valueOf(args[++i]);
+                    break;
+                default:
+                    input = Paths.get(args[i]);
+                    break;
+            }
+        }
+
+        if (input == null) {
+            System.out.println("Usage: ReplayRunner <log or directory> [--jobs N] [--robot SWERVE_BOT]");
+            System.exit(2);
+        }
+
+        var logs = findLogs(input);
+        if (logs.isEmpty()) {
+            System.out.println("No logs found in " + input);
+            System.exit(2);
+        }
+
+        System.out.printf("Replaying %d logs with %d jobs%n", logs.size(), jobs);
+        var start = System.nanoTime();
+        var failedCount = 0;
+        for (var result : replayAll(logs, jobs, robot)) {
+            var passed = result.passed();
+            if (!passed) {
+                failedCount++;
+            }
+
+            System.out.printf(
+                    "  %-6s %6.1f s  %s%n", passed ? "OK" : "FAILED", result.seconds(), result.log().getFileName());
+        }
+
+        System.out.printf(
+                "Replayed %d logs in %.1f s, %d failed%n",
+                logs.size(), (System.nanoTime() - start) / 1e9, failedCount);
+        if (failedCount > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays the logs in parallel, each in its own JVM
+     *
+     * @return Results in the order of the logs
+     */
+    static List<Result> replayAll(List<Path> logs, int jobs, RobotType robot) throws InterruptedException {
+        var executor = Executors.newFixedThreadPool(jobs);
+        var futures = new ArrayList<Future<Result>>();
+        for (var log : logs) {
+            futures.add(executor.submit(() -> replay(log, robot)));
+        }
+
+        var results = new ArrayList<Result>();
+        try {
+            for (var i = 0; i < logs.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    System.out.println("Failed to replay " + logs.get(i) + ": " + e.getCause());
+                    results.add(new Result(logs.get(i), -1, false, 0.0));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        return results;
+    }
+
+    /** Returns the path of the log written by replaying the log. */
+    static Path getReplayOutput(Path log) {
+        var logName = log.getFileName().toString();
+        return log.resolveSibling(
+                logName.substring(0, logName.length() - kLogExtension.length()) + kReplayLogSuffix + kLogExtension);
+    }
+
+    static List<Path> findLogs(Path input) throws IOException {
+        if (!Files.isDirectory(input)) {
+            return List.of(input);
+        }
+
+        // Skip the outputs of earlier replays
+        try (var files = Files.list(input)) {
+            return files.filter(file -> {
+                        var name = file.getFileName().toString();
+                        return name.endsWith(kLogExtension) && !name.contains(kReplayLogSuffix);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static Result replay(Path log, RobotType robot) throws IOException, InterruptedException {
+        var logName = log.getFileName().toString();
+        var outputFile = log.resolveSibling(
+                logName.substring(0, logName.length() - kLogExtension.length()) + "_replay.txt");
+
+        // Remove the output of an earlier replay so that it is not mistaken for this one
+        Files.deleteIfExists(getReplayOutput(log));
+
+        var processBuilder = ChildJvm.processBuilder(
+                        List.of(
+                                "-D" + Configuration.kReplayProperty + "=true",
+                                "-D" + Configuration.kRobotProperty + "=" + robot.name()),
+                        Main.class)
+                .redirectErrorStream(true)
+                .redirectOutput(outputFile.toFile());
+        processBuilder.environment().put(kLogPathVariable, log.toAbsolutePath().toString());
+
+        var start = System.nanoTime();
+        var process = processBuilder.start();
+        if (!process.waitFor(kTimeoutMinutes, TimeUnit.MINUTES)) {
+            process.destroyForcibly();
+            return new Result(log, -1, false, (System.nanoTime() - start) / 1e9);
+        }
+
+        // A replay that never reached the log, such as one whose source failed to open, can still exit cleanly
+        var seconds = (System.nanoTime() - start) / 1e9;
+        var output = getReplayOutput(log);
+        var outputWritten = Files.exists(output) && Files.size(output) > 0;
+        return new Result(log, process.exitValue(), outputWritten, seconds);
+    }
+}